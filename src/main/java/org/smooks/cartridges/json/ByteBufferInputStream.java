@@ -0,0 +1,200 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link InputStream} over the remaining bytes of one or more (heap or direct) {@link ByteBuffer}s, e.g. as
+ * received from a network stack.
+ * <p/>
+ * The {@link JSONReader} recognizes the stream and parses UTF-8 JSON straight from the buffers, without copying them
+ * into a byte array first:
+ * <pre>
+ * smooks.filterSource(executionContext, new StreamSource(new ByteBufferInputStream(buffer)), result);</pre>
+ * Any other consumer reads it as a regular stream. The positions of the buffers passed in are left untouched, but the
+ * buffer contents must not change while the stream is read.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private static final ByteBuffer MESSAGE_SEPARATOR = ByteBuffer.wrap(new byte[]{'\n'}).asReadOnlyBuffer();
+
+    private final ByteBuffer[] buffers;
+    private final int[] startPositions;
+    private int current;
+    private int markBuffer;
+    private int markPosition;
+
+    public ByteBufferInputStream(ByteBuffer... buffers) {
+        this(Arrays.asList(buffers));
+    }
+
+    public ByteBufferInputStream(List<ByteBuffer> buffers) {
+        this.buffers = new ByteBuffer[buffers.size()];
+        this.startPositions = new int[buffers.size()];
+        for (int i = 0; i < this.buffers.length; i++) {
+            ByteBuffer buffer = buffers.get(i);
+            if (buffer == null) {
+                throw new IllegalArgumentException("null buffer at index " + i + ".");
+            }
+            this.buffers[i] = buffer.duplicate();
+            this.startPositions[i] = buffer.position();
+        }
+        this.markPosition = (this.buffers.length > 0 ? startPositions[0] : 0);
+    }
+
+    /**
+     * Create a stream over a batch of JSON messages, e.g. the records of a consumer poll, with a new line between
+     * consecutive messages. The messages aren't copied. Read with the <code>rootValueSequence</code> option, the
+     * {@link JSONReader} filters the whole batch in a single execution, producing a record element per message.
+     *
+     * @param messages The messages, each holding one JSON value.
+     * @return the batch stream
+     */
+    public static ByteBufferInputStream ofMessages(List<ByteBuffer> messages) {
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(messages.size() * 2);
+        for (ByteBuffer message : messages) {
+            if (!buffers.isEmpty()) {
+                buffers.add(MESSAGE_SEPARATOR);
+            }
+            buffers.add(message);
+        }
+        return new ByteBufferInputStream(buffers);
+    }
+
+    @Override
+    public int read() {
+        ByteBuffer buffer = nextRemainingBuffer();
+        return (buffer != null ? buffer.get() & 0xFF : -1);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = nextRemainingBuffer();
+        if (buffer == null) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = 0;
+        ByteBuffer buffer;
+        while (skipped < n && (buffer = nextRemainingBuffer()) != null) {
+            int count = (int) Math.min(n - skipped, buffer.remaining());
+            // Called through Buffer, since JDK 9+ compiles ByteBuffer.position(int) to a method Java 8 doesn't have...
+            ((Buffer) buffer).position(buffer.position() + count);
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        long available = 0;
+        for (int i = current; i < buffers.length; i++) {
+            available += buffers[i].remaining();
+        }
+        return (int) Math.min(available, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        markBuffer = current;
+        markPosition = (current < buffers.length ? buffers[current].position() : 0);
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (int i = markBuffer + 1; i <= current && i < buffers.length; i++) {
+            ((Buffer) buffers[i]).position(startPositions[i]);
+        }
+        current = markBuffer;
+        if (current < buffers.length) {
+            ((Buffer) buffers[current]).position(markPosition);
+        }
+    }
+
+    /**
+     * Hand the remaining bytes over as buffers, without copying them. The stream is at its end afterwards.
+     *
+     * @return read-only views of the remaining bytes of the buffers, skipping empty buffers
+     */
+    List<ByteBuffer> takeRemainingBuffers() {
+        List<ByteBuffer> remainingBuffers = new ArrayList<ByteBuffer>(buffers.length - current);
+        for (; current < buffers.length; current++) {
+            ByteBuffer buffer = buffers[current];
+            if (buffer.hasRemaining()) {
+                remainingBuffers.add(buffer.slice().asReadOnlyBuffer());
+                ((Buffer) buffer).position(buffer.limit());
+            }
+        }
+        return remainingBuffers;
+    }
+
+    private ByteBuffer nextRemainingBuffer() {
+        while (current < buffers.length) {
+            if (buffers[current].hasRemaining()) {
+                return buffers[current];
+            }
+            current++;
+        }
+        return null;
+    }
+}
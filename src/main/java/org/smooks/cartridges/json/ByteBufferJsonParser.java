@@ -0,0 +1,149 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Parses UTF-8 JSON straight from {@link ByteBuffer}s, heap or direct, by feeding them one by one to Jackson's
+ * non-blocking parser. The bytes are read in place, so the buffers aren't copied.
+ * <p/>
+ * The non-blocking parser reports {@link JsonToken#NOT_AVAILABLE} when it has consumed the buffer it was fed. This
+ * parser hides that by feeding the next buffer, so that it can be used like a regular blocking parser. It also
+ * enforces the document and number length limits, which the non-blocking parser doesn't check.
+ */
+final class ByteBufferJsonParser extends JsonParserDelegate {
+
+    private final ByteBufferFeeder feeder;
+    private final List<ByteBuffer> buffers;
+    private int nextBuffer;
+    private long fedLength;
+
+    private ByteBufferJsonParser(JsonParser nonBlockingParser, List<ByteBuffer> buffers) {
+        super(nonBlockingParser);
+        this.feeder = (ByteBufferFeeder) nonBlockingParser.getNonBlockingInputFeeder();
+        this.buffers = buffers;
+    }
+
+    static ByteBufferJsonParser create(JsonFactory jsonFactory, List<ByteBuffer> buffers) throws IOException {
+        return new ByteBufferJsonParser(jsonFactory.createNonBlockingByteBufferParser(), buffers);
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        JsonToken token = delegate.nextToken();
+        while (token == JsonToken.NOT_AVAILABLE) {
+            if (nextBuffer < buffers.size()) {
+                ByteBuffer buffer = buffers.get(nextBuffer++);
+                // The non-blocking parser doesn't check the document length itself...
+                fedLength += buffer.remaining();
+                delegate.streamReadConstraints().validateDocumentLength(fedLength);
+                feeder.feedInput(buffer);
+            } else {
+                feeder.endOfInput();
+            }
+            token = delegate.nextToken();
+        }
+        if ((token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) && delegate.getTextLength() > delegate.streamReadConstraints().getMaxNumberLength()) {
+            validateNumberLength(token);
+        }
+        return token;
+    }
+
+    /**
+     * The non-blocking parser doesn't check the number length itself. Like the blocking parsers, only the digits count.
+     */
+    private void validateNumberLength(JsonToken token) throws IOException {
+        char[] text = delegate.getTextCharacters();
+        int end = delegate.getTextOffset() + delegate.getTextLength();
+        int digitCount = 0;
+        for (int i = delegate.getTextOffset(); i < end; i++) {
+            if (text[i] >= '0' && text[i] <= '9') {
+                digitCount++;
+            }
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            delegate.streamReadConstraints().validateIntegerLength(digitCount);
+        } else {
+            delegate.streamReadConstraints().validateFPLength(digitCount);
+        }
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+        JsonToken token = nextToken();
+        if (token == JsonToken.FIELD_NAME) {
+            token = nextToken();
+        }
+        return token;
+    }
+
+    @Override
+    public JsonParser skipChildren() throws IOException {
+        JsonToken token = delegate.currentToken();
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            return this;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            token = nextToken();
+            if (token == null) {
+                return this;
+            }
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+        }
+        return this;
+    }
+}
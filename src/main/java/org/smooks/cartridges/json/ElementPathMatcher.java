@@ -0,0 +1,92 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+/**
+ * Matches the element paths of JSON values against a list of path patterns.
+ * <p/>
+ * The patterns are comma separated. A pattern is made of the element names below the root element, separated by
+ * '/', e.g. <code>order/metadata</code> or <code>element/payload</code>. A '*' matches any element name.
+ */
+final class ElementPathMatcher {
+
+    private final String[][] paths;
+
+    ElementPathMatcher(String commaSeparatedPaths) {
+        String[] patterns = commaSeparatedPaths.split(",");
+        paths = new String[patterns.length][];
+        for (int i = 0; i < patterns.length; i++) {
+            String path = patterns[i].trim();
+            if (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            paths[i] = path.split("/");
+        }
+    }
+
+    /**
+     * @param depth          The depth of the value, 1 for the values in the root container.
+     * @param elementName    The element name of the value.
+     * @param containerNames The element names of the enclosing containers, by depth.
+     * @return true if the path of the value matches one of the patterns
+     */
+    boolean matches(int depth, String elementName, String[] containerNames) {
+        for (String[] path : paths) {
+            if (path.length != depth || !matchesPathSegment(path[depth - 1], elementName)) {
+                continue;
+            }
+            int i = depth - 1;
+            while (i > 0 && matchesPathSegment(path[i - 1], containerNames[i])) {
+                i--;
+            }
+            if (i == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesPathSegment(String pathSegment, String elementName) {
+        return pathSegment.equals("*") || pathSegment.equals(elementName);
+    }
+}
@@ -0,0 +1,265 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable recording of the SAX events produced for a JSON document, which can be replayed to any number of
+ * {@link ContentHandler ContentHandlers}, concurrently.
+ * <p/>
+ * The events are stored as an opcode array with int operands. Element names are stored once per tape in a name
+ * table and character data back to back in a single character array.
+ */
+final class EventTape {
+
+    private static final byte START_DOCUMENT = 0;
+    private static final byte END_DOCUMENT = 1;
+    private static final byte START_ELEMENT = 2;
+    private static final byte END_ELEMENT = 3;
+    private static final byte CHARACTERS = 4;
+
+    private static final Attributes EMPTY_ATTRIBUTES = new AttributesImpl();
+
+    private final byte[] opcodes;
+    private final int[] operands;
+    private final String[] names;
+    private final Attributes[] attributes;
+    private final char[] text;
+
+    private EventTape(Recorder recorder) {
+        opcodes = Arrays.copyOf(recorder.opcodes, recorder.opcodeCount);
+        operands = Arrays.copyOf(recorder.operands, recorder.operandCount);
+        names = new String[recorder.nameTable.size()];
+        for (Map.Entry<String, Integer> name : recorder.nameTable.entrySet()) {
+            names[name.getValue()] = name.getKey();
+        }
+        attributes = Arrays.copyOf(recorder.attributes, recorder.attributeCount);
+        text = Arrays.copyOf(recorder.text, recorder.textLength);
+    }
+
+    /**
+     * Send the recorded events to a content handler.
+     */
+    void replay(ContentHandler contentHandler) throws SAXException {
+        int operand = 0;
+        for (byte opcode : opcodes) {
+            switch (opcode) {
+                case START_DOCUMENT:
+                    contentHandler.startDocument();
+                    break;
+                case END_DOCUMENT:
+                    contentHandler.endDocument();
+                    break;
+                case START_ELEMENT:
+                    int attributesIndex = operands[operand + 3];
+                    contentHandler.startElement(names[operands[operand]], names[operands[operand + 1]], names[operands[operand + 2]],
+                            (attributesIndex < 0 ? EMPTY_ATTRIBUTES : attributes[attributesIndex]));
+                    operand += 4;
+                    break;
+                case END_ELEMENT:
+                    contentHandler.endElement(names[operands[operand]], names[operands[operand + 1]], names[operands[operand + 2]]);
+                    operand += 3;
+                    break;
+                default:
+                    contentHandler.characters(text, operands[operand], operands[operand + 1]);
+                    operand += 2;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the approximate heap size of the tape, in bytes
+     */
+    long getWeight() {
+        return opcodes.length + 4L * operands.length + 2L * text.length + 48L * names.length + 64L * attributes.length;
+    }
+
+    /**
+     * Forwards SAX events to a content handler while recording them.
+     */
+    static final class Recorder implements ContentHandler {
+
+        private final ContentHandler contentHandler;
+        private byte[] opcodes = new byte[256];
+        private int opcodeCount;
+        private int[] operands = new int[1024];
+        private int operandCount;
+        private final Map<String, Integer> nameTable = new HashMap<String, Integer>();
+        private Attributes[] attributes = new Attributes[0];
+        private int attributeCount;
+        private char[] text = new char[1024];
+        private int textLength;
+        private boolean replayable = true;
+
+        Recorder(ContentHandler contentHandler) {
+            this.contentHandler = contentHandler;
+        }
+
+        /**
+         * @return the tape, or null if events were forwarded that can't be recorded
+         */
+        EventTape toTape() {
+            return (replayable ? new EventTape(this) : null);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            contentHandler.startDocument();
+            addOpcode(START_DOCUMENT);
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            contentHandler.endDocument();
+            addOpcode(END_DOCUMENT);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            contentHandler.startElement(uri, localName, qName, atts);
+            addOpcode(START_ELEMENT);
+            addName(uri);
+            addName(localName);
+            addName(qName);
+            if (atts.getLength() == 0) {
+                addOperand(-1);
+            } else {
+                if (attributeCount == attributes.length) {
+                    attributes = Arrays.copyOf(attributes, Math.max(8, attributeCount * 2));
+                }
+                attributes[attributeCount] = new AttributesImpl(atts);
+                addOperand(attributeCount++);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            contentHandler.endElement(uri, localName, qName);
+            addOpcode(END_ELEMENT);
+            addName(uri);
+            addName(localName);
+            addName(qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            contentHandler.characters(ch, start, length);
+            addOpcode(CHARACTERS);
+            if (textLength + length > text.length) {
+                text = Arrays.copyOf(text, Math.max(textLength + length, text.length * 2));
+            }
+            System.arraycopy(ch, start, text, textLength, length);
+            addOperand(textLength);
+            addOperand(length);
+            textLength += length;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            contentHandler.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            replayable = false;
+            contentHandler.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            replayable = false;
+            contentHandler.endPrefixMapping(prefix);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            replayable = false;
+            contentHandler.ignorableWhitespace(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            replayable = false;
+            contentHandler.processingInstruction(target, data);
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            replayable = false;
+            contentHandler.skippedEntity(name);
+        }
+
+        private void addOpcode(byte opcode) {
+            if (opcodeCount == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, opcodeCount * 2);
+            }
+            opcodes[opcodeCount++] = opcode;
+        }
+
+        private void addName(String name) {
+            Integer index = nameTable.get(name);
+            if (index == null) {
+                index = nameTable.size();
+                nameTable.put(name, index);
+            }
+            addOperand(index);
+        }
+
+        private void addOperand(int operand) {
+            if (operandCount == operands.length) {
+                operands = Arrays.copyOf(operands, operandCount * 2);
+            }
+            operands[operandCount++] = operand;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded LRU cache of the SAX {@link EventTape event tapes} of JSON documents, keyed by the document bytes.
+ * <p/>
+ * Documents are looked up by a 64-bit hash of their bytes and confirmed with a byte-by-byte comparison, so a hit
+ * always replays the events of a byte-identical document. All the {@link JSONReader JSONReaders} of a reader
+ * configuration share the cache of their {@link JSONReaderProfile}, which is also available on the
+ * {@link org.smooks.api.ExecutionContext} under {@link JSONReader#EVENT_TAPE_CACHE_TYPED_KEY} after parsing, e.g. to
+ * report its hit and miss counts. The reader settings that shape its SAX output aren't part of the key, so changing
+ * one of them on a reader discards its profile, and with it the cache.
+ */
+public final class EventTapeCache {
+
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final long maxWeight;
+    private final LinkedHashMap<DocumentKey, EventTape> entries = new LinkedHashMap<DocumentKey, EventTape>(16, 0.75f, true);
+    private long weight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxWeight The maximum total size of the cached documents and their tapes, in bytes.
+     */
+    EventTapeCache(long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("'maxWeight' must be positive.");
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return the tape of the document, or null on a cache miss
+     */
+    synchronized EventTape get(byte[] document, int length, long hash) {
+        EventTape eventTape = entries.get(new DocumentKey(document, length, hash));
+        if (eventTape != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return eventTape;
+    }
+
+    /**
+     * Add the tape of a document, evicting the least recently used tapes when the cache is full. Tapes that are
+     * bigger than the whole cache aren't added.
+     *
+     * @param document The document bytes. The array is owned by the cache from now on.
+     */
+    synchronized void put(byte[] document, int length, long hash, EventTape eventTape) {
+        long entryWeight = length + eventTape.getWeight() + ENTRY_OVERHEAD;
+        if (entryWeight > maxWeight) {
+            return;
+        }
+
+        EventTape replaced = entries.put(new DocumentKey(document, length, hash), eventTape);
+        if (replaced != null) {
+            weight -= length + replaced.getWeight() + ENTRY_OVERHEAD;
+        }
+        weight += entryWeight;
+
+        Iterator<Map.Entry<DocumentKey, EventTape>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight) {
+            Map.Entry<DocumentKey, EventTape> entry = eldest.next();
+            weight -= entry.getKey().length + entry.getValue().getWeight() + ENTRY_OVERHEAD;
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * 64-bit hash of the first <code>length</code> bytes of a document, processed eight bytes at a time.
+     */
+    static long hash(byte[] document, int length) {
+        ByteBuffer words = ByteBuffer.wrap(document).order(ByteOrder.LITTLE_ENDIAN);
+        long hash = 0x9E3779B97F4A7C15L ^ length;
+        int wordsLength = length & ~7;
+        for (int i = 0; i < wordsLength; i += 8) {
+            hash = Long.rotateLeft(hash ^ (words.getLong(i) * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B97F4A7C15L;
+        }
+        for (int i = wordsLength; i < length; i++) {
+            hash = Long.rotateLeft(hash ^ ((document[i] & 0xFF) * 0x165667B19E3779F9L), 11) * 0x9E3779B97F4A7C15L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @return the number of lookups that found the tape of the document
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that didn't find the tape of the document
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of tapes evicted to make room for newer tapes
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of cached tapes
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the approximate total size of the cached documents and their tapes, in bytes
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the maximum total size of the cached documents and their tapes, in bytes
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Remove all tapes. The counters aren't reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EventTapeCache{size=" + entries.size() + ", weight=" + weight + ", maxWeight=" + maxWeight + ", hitCount=" + hitCount
+                + ", missCount=" + missCount + ", evictionCount=" + evictionCount + "}";
+    }
+
+    private static final class DocumentKey {
+
+        private final byte[] document;
+        private final int length;
+        private final long hash;
+
+        private DocumentKey(byte[] document, int length, long hash) {
+            this.document = document;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DocumentKey)) {
+                return false;
+            }
+            DocumentKey other = (DocumentKey) o;
+            if (hash != other.hash || length != other.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (document[i] != other.document[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.util.List;
+
+/**
+ * The progress, or the final result, of a {@link JSONFileIngest}.
+ */
+public class IngestReport {
+
+    private final int fileCount;
+    private final int completedFileCount;
+    private final int failedFileCount;
+    private final long completedBytes;
+    private final long elapsedNanos;
+    private final List<IngestedFile> failures;
+
+    /**
+     * @param fileCount          The number of files matched by the ingest.
+     * @param completedFileCount The number of files filtered so far, including the failed files.
+     * @param failedFileCount    The number of files that failed.
+     * @param completedBytes     The total size of the files filtered so far.
+     * @param elapsedNanos       The time since the ingest started.
+     * @param failures           The failed files, in path order.
+     */
+    public IngestReport(int fileCount, int completedFileCount, int failedFileCount, long completedBytes, long elapsedNanos, List<IngestedFile> failures) {
+        this.fileCount = fileCount;
+        this.completedFileCount = completedFileCount;
+        this.failedFileCount = failedFileCount;
+        this.completedBytes = completedBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.failures = failures;
+    }
+
+    /**
+     * @return the number of files matched by the ingest
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return the number of files filtered so far, including the failed files
+     */
+    public int getCompletedFileCount() {
+        return completedFileCount;
+    }
+
+    /**
+     * @return the number of files that failed
+     */
+    public int getFailedFileCount() {
+        return failedFileCount;
+    }
+
+    /**
+     * @return the number of files that weren't filtered because the ingest was aborted, or that are still to be
+     * filtered
+     */
+    public int getRemainingFileCount() {
+        return fileCount - completedFileCount;
+    }
+
+    /**
+     * @return the total size of the files filtered so far
+     */
+    public long getCompletedBytes() {
+        return completedBytes;
+    }
+
+    /**
+     * @return the time since the ingest started
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the throughput in bytes per second
+     */
+    public double getBytesPerSecond() {
+        return (elapsedNanos > 0 ? completedBytes * 1e9 / elapsedNanos : 0);
+    }
+
+    /**
+     * @return the failed files, in path order. Empty for a progress report.
+     */
+    public List<IngestedFile> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestReport{fileCount=" + fileCount + ", completedFileCount=" + completedFileCount + ", failedFileCount=" + failedFileCount
+                + ", completedBytes=" + completedBytes + ", elapsedNanos=" + elapsedNanos + "}";
+    }
+}
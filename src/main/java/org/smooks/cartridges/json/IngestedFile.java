@@ -0,0 +1,119 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of filtering one file of a {@link JSONFileIngest}.
+ */
+public class IngestedFile {
+
+    private final Path path;
+    private final int index;
+    private final long size;
+    private final long durationNanos;
+    private final Throwable error;
+
+    /**
+     * @param path          The file.
+     * @param index         The index of the file in the ingest, in path order.
+     * @param size          The size of the file in bytes.
+     * @param durationNanos The time it took to filter the file.
+     * @param error         The failure of the filtering, or null if the file was filtered successfully.
+     */
+    public IngestedFile(Path path, int index, long size, long durationNanos, Throwable error) {
+        this.path = path;
+        this.index = index;
+        this.size = size;
+        this.durationNanos = durationNanos;
+        this.error = error;
+    }
+
+    /**
+     * @return the file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the index of the file in the ingest, in path order
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the time it took to filter the file
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the failure of the filtering, or null if the file was filtered successfully
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the file was filtered successfully
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestedFile{path=" + path + ", index=" + index + ", size=" + size + ", durationNanos=" + durationNanos + ", error=" + error + "}";
+    }
+}
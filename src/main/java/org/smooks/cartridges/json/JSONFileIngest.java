@@ -0,0 +1,422 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Filters the JSON files of a directory concurrently, with a bounded number of workers.
+ * <p/>
+ * Each worker takes the next file (or group of files) from the list of matched files, reads it with NIO into a
+ * buffer that the worker reuses for all its files, and filters it through the {@link ByteBufferInputStream} path of
+ * the {@link JSONReader}. Files larger than {@link #setMaxBufferedFileSize(int)} are streamed from a
+ * {@link FileChannel} instead. The outcome of each file is reported to the {@link FileIngestListener}, and the ingest
+ * returns an {@link IngestReport} with the totals and the failed files:
+ * <pre>
+ * IngestReport report = new JSONFileIngest(smooks)
+ *         .setParallelism(8)
+ *         .setOrdered(true)
+ *         .setListener((file, progress) -&gt; ...)
+ *         .ingest(directory, "*.json");</pre>
+ * The ingest doesn't change the configuration of the {@link Smooks} instance. For the workers to reuse their readers
+ * instead of creating a reader for each file, configure a reader pool with a reader for each worker before the
+ * instance filters anything (see {@link org.smooks.FilterSettings#setReaderPoolSize(int)}).
+ */
+public class JSONFileIngest {
+
+    public static final int DEFAULT_MAX_BUFFERED_FILE_SIZE = 64 * 1024 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JSONFileIngest.class);
+
+    private final Smooks smooks;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private ExecutorService executor;
+    private boolean ordered;
+    private Function<Path, ?> groupBy;
+    private boolean failFast;
+    private int maxBufferedFileSize = DEFAULT_MAX_BUFFERED_FILE_SIZE;
+    private Function<Path, Result> resultFactory;
+    private FileIngestListener listener;
+
+    public JSONFileIngest(Smooks smooks) {
+        if (smooks == null) {
+            throw new IllegalArgumentException("null 'smooks' arg in method call.");
+        }
+        this.smooks = smooks;
+    }
+
+    /**
+     * @param parallelism The maximum number of files filtered at the same time. Default is the number of processors.
+     */
+    public JSONFileIngest setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("'parallelism' must be at least 1.");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param executor The executor that runs the workers, or null to run them on threads of the ingest. The executor
+     *                 isn't shut down by the ingest.
+     */
+    public JSONFileIngest setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * @param ordered Report the files to the listener in path order, rather than in order of completion.
+     */
+    public JSONFileIngest setOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * @param groupBy The group of a file, e.g. its parent directory. The files of a group are filtered one after the
+     *                other in path order, by the same worker, while the groups are filtered concurrently. Null to
+     *                filter all files concurrently.
+     */
+    public JSONFileIngest setGroupBy(Function<Path, ?> groupBy) {
+        this.groupBy = groupBy;
+        return this;
+    }
+
+    /**
+     * @param failFast Stop taking new files after the first failure. The files in progress are completed. By default,
+     *                 the failures are reported and the ingest continues.
+     */
+    public JSONFileIngest setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    /**
+     * @param maxBufferedFileSize The size in bytes up to which a file is read into the buffer of the worker. Larger
+     *                            files are streamed.
+     */
+    public JSONFileIngest setMaxBufferedFileSize(int maxBufferedFileSize) {
+        if (maxBufferedFileSize < 0) {
+            throw new IllegalArgumentException("'maxBufferedFileSize' must not be negative.");
+        }
+        this.maxBufferedFileSize = maxBufferedFileSize;
+        return this;
+    }
+
+    /**
+     * @param resultFactory Creates the result of each file, or null to filter without a result.
+     */
+    public JSONFileIngest setResultFactory(Function<Path, Result> resultFactory) {
+        this.resultFactory = resultFactory;
+        return this;
+    }
+
+    public JSONFileIngest setListener(FileIngestListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Filter the files of a directory tree that match a glob pattern. A pattern without a '/' is matched against the
+     * file names, e.g. "*.json" matches the JSON files in all the subdirectories. A pattern with a '/' is matched
+     * against the paths relative to the directory, e.g. "2024/&#42;&#42;/*.json".
+     */
+    public IngestReport ingest(Path directory, String glob) throws IOException, InterruptedException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        boolean matchFileName = (glob.indexOf('/') == -1);
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(matchFileName ? path.getFileName() : directory.relativize(path)))
+                    .collect(Collectors.toList());
+        }
+        return ingest(files);
+    }
+
+    /**
+     * Filter files.
+     *
+     * @param files The files. They are filtered, and reported when ordered, in path order.
+     */
+    public IngestReport ingest(List<Path> files) throws InterruptedException {
+        List<Path> sortedFiles = new ArrayList<Path>(files);
+        Collections.sort(sortedFiles);
+        List<List<Integer>> units = createUnits(sortedFiles);
+
+        Ingest ingest = new Ingest(sortedFiles);
+        int workerCount = Math.min(parallelism, units.size());
+        ExecutorService workerExecutor = (executor != null ? executor : Executors.newFixedThreadPool(Math.max(workerCount, 1), new WorkerThreadFactory()));
+        try {
+            AtomicInteger nextUnit = new AtomicInteger();
+            List<Future<?>> workers = new ArrayList<Future<?>>(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(workerExecutor.submit(() -> {
+                    Worker worker = new Worker(ingest);
+                    int unit;
+                    while (!ingest.aborted.get() && (unit = nextUnit.getAndIncrement()) < units.size()) {
+                        for (int fileIndex : units.get(unit)) {
+                            if (ingest.aborted.get()) {
+                                break;
+                            }
+                            worker.filter(fileIndex);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    // A listener failed...
+                    ingest.aborted.set(true);
+                    throw new IllegalStateException("JSON file ingest worker failed.", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            ingest.aborted.set(true);
+            throw e;
+        } finally {
+            if (executor == null) {
+                workerExecutor.shutdownNow();
+            }
+        }
+
+        ingest.reportPending();
+        return ingest.report(true);
+    }
+
+    /**
+     * @return the work units: the indexes of the files that a worker filters one after the other
+     */
+    private List<List<Integer>> createUnits(List<Path> sortedFiles) {
+        List<List<Integer>> units;
+        if (groupBy == null) {
+            units = new ArrayList<List<Integer>>(sortedFiles.size());
+            for (int i = 0; i < sortedFiles.size(); i++) {
+                units.add(Collections.singletonList(i));
+            }
+        } else {
+            Map<Object, List<Integer>> groups = new LinkedHashMap<Object, List<Integer>>();
+            for (int i = 0; i < sortedFiles.size(); i++) {
+                groups.computeIfAbsent(groupBy.apply(sortedFiles.get(i)), group -> new ArrayList<Integer>()).add(i);
+            }
+            units = new ArrayList<List<Integer>>(groups.values());
+        }
+        return units;
+    }
+
+    /**
+     * The state of an ingest run, shared by its workers.
+     */
+    private final class Ingest {
+
+        private final List<Path> files;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean aborted = new AtomicBoolean();
+        private final AtomicInteger completedFileCount = new AtomicInteger();
+        private final AtomicInteger failedFileCount = new AtomicInteger();
+        private final AtomicLong completedBytes = new AtomicLong();
+        private final Map<Integer, IngestedFile> failures = new TreeMap<Integer, IngestedFile>();
+        // The files completed ahead of the next file to report, when ordered...
+        private final Map<Integer, IngestedFile> pending = new TreeMap<Integer, IngestedFile>();
+        private int nextToReport;
+
+        private Ingest(List<Path> files) {
+            this.files = files;
+        }
+
+        private void complete(IngestedFile file) {
+            completedBytes.addAndGet(file.getSize());
+            if (!file.isSuccess()) {
+                failedFileCount.incrementAndGet();
+                synchronized (failures) {
+                    failures.put(file.getIndex(), file);
+                }
+                if (failFast) {
+                    aborted.set(true);
+                }
+            }
+            completedFileCount.incrementAndGet();
+
+            if (listener == null) {
+                return;
+            }
+            if (!ordered) {
+                listener.onFileCompleted(file, report(false));
+                return;
+            }
+            synchronized (pending) {
+                pending.put(file.getIndex(), file);
+                IngestedFile next;
+                while ((next = pending.remove(nextToReport)) != null) {
+                    listener.onFileCompleted(next, report(false));
+                    nextToReport++;
+                }
+            }
+        }
+
+        /**
+         * Report the files that are still waiting for a file in front of them, which was never filtered because the
+         * ingest was aborted.
+         */
+        private void reportPending() {
+            if (listener == null || !ordered) {
+                return;
+            }
+            synchronized (pending) {
+                for (IngestedFile file : pending.values()) {
+                    listener.onFileCompleted(file, report(false));
+                }
+                pending.clear();
+            }
+        }
+
+        private IngestReport report(boolean withFailures) {
+            List<IngestedFile> failureList = Collections.emptyList();
+            if (withFailures) {
+                synchronized (failures) {
+                    failureList = Collections.unmodifiableList(new ArrayList<IngestedFile>(failures.values()));
+                }
+            }
+            return new IngestReport(files.size(), completedFileCount.get(), failedFileCount.get(), completedBytes.get(), System.nanoTime() - startNanos, failureList);
+        }
+    }
+
+    /**
+     * Filters files on a worker thread, reusing the buffer that the files are read into.
+     */
+    private final class Worker {
+
+        private final Ingest ingest;
+        private ByteBuffer buffer;
+
+        private Worker(Ingest ingest) {
+            this.ingest = ingest;
+        }
+
+        private void filter(int fileIndex) {
+            Path file = ingest.files.get(fileIndex);
+            long startNanos = System.nanoTime();
+            long size = 0;
+            Throwable error = null;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                size = channel.size();
+                ExecutionContext executionContext = smooks.createExecutionContext();
+                if (listener != null) {
+                    listener.onFileStarted(file, executionContext);
+                }
+                Result result = (resultFactory != null ? resultFactory.apply(file) : null);
+                InputStream jsonStream = (size <= maxBufferedFileSize ? read(channel, (int) size) : Channels.newInputStream(channel));
+
+                smooks.filterSource(executionContext, new StreamSource(jsonStream), (result != null ? new Result[]{result} : new Result[0]));
+            } catch (IOException | RuntimeException e) {
+                error = e;
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Failed to filter JSON file '" + file + "'.", e);
+                }
+            }
+            ingest.complete(new IngestedFile(file, fileIndex, size, System.nanoTime() - startNanos, error));
+        }
+
+        private InputStream read(FileChannel channel, int size) throws IOException {
+            if (buffer == null || buffer.capacity() < size) {
+                int capacity = Math.min(Math.max(buffer != null ? buffer.capacity() * 2 : 64 * 1024, size), maxBufferedFileSize);
+                buffer = ByteBuffer.allocate(Math.max(capacity, size));
+            }
+            // Buffer's methods, since the ByteBuffer overrides a later JDK compiles to are missing on Java 8...
+            ((Buffer) buffer).clear().limit(size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading...
+            }
+            ((Buffer) buffer).flip();
+            return new ByteBufferInputStream(buffer);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "json-file-ingest-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
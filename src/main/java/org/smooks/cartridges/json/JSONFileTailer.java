@@ -0,0 +1,380 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Incrementally processes an append-only newline delimited JSON (NDJSON) file.
+ * <p/>
+ * Each {@link #poll(Result...)} only filters the complete lines that were appended since the last poll, so the cost of
+ * a run is proportional to the new data instead of to the size of the file. A trailing line without a terminating
+ * newline is considered to be still in the making and is left for a later poll. The position of the last processed
+ * record is persisted to an offset file next to the JSON file (see {@link #getSidecarPath(Path)}), so that a scheduled
+ * run picks up where the previous run stopped:
+ * <pre>
+ * Smooks smooks = new Smooks();
+ * smooks.setReaderConfig(new JSONReaderConfigurator().setRootValueSequence(true));
+ * new JSONFileTailer(smooks, logFile).poll();</pre>
+ * The JSON reader of the {@link Smooks} instance must read root value sequences (see
+ * {@link JSONReader#setRootValueSequence(boolean)}). The records keep their index in the file, so a
+ * {@link RecordCheckpointListener} receives checkpoints relative to the start of the file.
+ * <p/>
+ * When a poll fails, the position of the last record that was completed before the failure is persisted, and the next
+ * poll starts with the failing record. When the file shrinks below the persisted position, it is assumed to be
+ * truncated or replaced, and is processed from the start again.
+ * <p/>
+ * A tailer isn't thread-safe. Only one tailer should process a file at a time.
+ */
+public final class JSONFileTailer {
+
+    public static final String SIDECAR_SUFFIX = ".offset";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JSONFileTailer.class);
+
+    private static final int MAGIC = 0x4A544F46; // "JTOF"
+
+    private static final int VERSION = 1;
+
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private final Smooks smooks;
+    private final Path jsonFile;
+    private final Path offsetFile;
+    private RecordCheckpoint checkpoint;
+
+    /**
+     * Create a tailer that persists its position to the sidecar offset file of the JSON file.
+     */
+    public JSONFileTailer(Smooks smooks, Path jsonFile) throws IOException {
+        this(smooks, jsonFile, getSidecarPath(jsonFile));
+    }
+
+    /**
+     * @param smooks     The Smooks instance that filters the records. Its JSON reader must read root value sequences.
+     * @param jsonFile   The NDJSON file.
+     * @param offsetFile The file that persists the position of the last processed record.
+     */
+    public JSONFileTailer(Smooks smooks, Path jsonFile, Path offsetFile) throws IOException {
+        if (smooks == null) {
+            throw new IllegalArgumentException("null 'smooks' arg in method call.");
+        }
+        if (jsonFile == null) {
+            throw new IllegalArgumentException("null 'jsonFile' arg in method call.");
+        }
+        if (offsetFile == null) {
+            throw new IllegalArgumentException("null 'offsetFile' arg in method call.");
+        }
+        this.smooks = smooks;
+        this.jsonFile = jsonFile;
+        this.offsetFile = offsetFile;
+        this.checkpoint = readCheckpoint(offsetFile);
+    }
+
+    /**
+     * @return the path of the sidecar offset file of a JSON file
+     */
+    public static Path getSidecarPath(Path jsonFile) {
+        return jsonFile.resolveSibling(jsonFile.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * @return the position of the last processed record, or null if no record was processed yet
+     */
+    public RecordCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Filter the complete lines that were appended since the last poll.
+     *
+     * @param results The results of the filtering.
+     * @return the number of processed records
+     */
+    public long poll(Result... results) throws IOException {
+        return poll(smooks.createExecutionContext(), results);
+    }
+
+    /**
+     * Filter the complete lines that were appended since the last poll.
+     *
+     * @param executionContext The execution context of the filtering.
+     * @param results          The results of the filtering.
+     * @return the number of processed records
+     * @throws SmooksConfigException The JSON reader doesn't read root value sequences.
+     */
+    public long poll(ExecutionContext executionContext, Result... results) throws IOException {
+        long fileSize = Files.size(jsonFile);
+        if (checkpoint != null && fileSize < checkpoint.getByteOffset()) {
+            LOGGER.warn("JSON file '" + jsonFile + "' is smaller than the last processed offset " + checkpoint.getByteOffset() + ". Processing the file from the start.");
+            checkpoint = null;
+        }
+
+        long startOffset = (checkpoint != null ? checkpoint.getByteOffset() : 0);
+        long endOffset = findEndOfLastLine(startOffset, fileSize);
+        if (endOffset <= startOffset || isBlank(startOffset, endOffset)) {
+            // The checkpoint offset is in front of the newline of the last record, so an idle file still has a line
+            // end after it...
+            return 0;
+        }
+
+        RecordCheckpoint startCheckpoint = checkpoint;
+        RecordCheckpointListener checkpointListener = executionContext.get(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY);
+        RecordCheckpoint[] lastCheckpoint = new RecordCheckpoint[1];
+        executionContext.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, completedCheckpoint -> {
+            lastCheckpoint[0] = completedCheckpoint;
+            if (checkpointListener != null) {
+                checkpointListener.onCheckpoint(completedCheckpoint);
+            }
+        });
+        if (startCheckpoint != null) {
+            executionContext.put(JSONReader.RESUME_CHECKPOINT_TYPED_KEY, startCheckpoint);
+        }
+
+        try (InputStream jsonStream = new BoundedInputStream(Files.newInputStream(jsonFile), endOffset)) {
+            smooks.filterSource(executionContext, new StreamSource(jsonStream), results);
+        } finally {
+            if (lastCheckpoint[0] != null) {
+                checkpoint = lastCheckpoint[0];
+                writeCheckpoint(checkpoint, offsetFile);
+            }
+        }
+
+        if (lastCheckpoint[0] == null) {
+            // The new lines aren't blank, so a reader that reads root value sequences would have completed a record.
+            // Without a checkpoint the tailer would filter the same lines again on every poll...
+            throw new SmooksConfigException("Filtering the new lines of JSON file '" + jsonFile + "' produced no record checkpoint. The JSON reader must read root value sequences (see JSONReader.setRootValueSequence).");
+        }
+        return lastCheckpoint[0].getRecordCount() - (startCheckpoint != null ? startCheckpoint.getRecordCount() : 0);
+    }
+
+    /**
+     * Poll the file until the thread is interrupted.
+     *
+     * @param pollIntervalMillis The time to wait after a poll that found no new records.
+     */
+    public void follow(long pollIntervalMillis) throws IOException, InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            if (poll() == 0) {
+                Thread.sleep(pollIntervalMillis);
+            }
+        }
+        throw new InterruptedException();
+    }
+
+    /**
+     * Find the end of the last complete line by scanning backwards from the end of the file, so that only the tail of
+     * the file is read.
+     *
+     * @return the offset directly after the last newline at or after the start offset, or the start offset if there's
+     * no such newline
+     */
+    private long findEndOfLastLine(long startOffset, long fileSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(jsonFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long blockEnd = fileSize;
+            while (blockEnd > startOffset) {
+                long blockStart = Math.max(startOffset, blockEnd - SCAN_BUFFER_SIZE);
+                // Through Buffer, so that a build on a later JDK still links against the Java 8 methods...
+                ((Buffer) buffer).clear().limit((int) (blockEnd - blockStart));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, blockStart + buffer.position()) < 0) {
+                        // Truncated while scanning...
+                        return startOffset;
+                    }
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+            return startOffset;
+        }
+    }
+
+    /**
+     * @return true if the bytes between the offsets are all JSON whitespace. Stops at the first other byte, which is
+     * normally the first byte of a new record.
+     */
+    private boolean isBlank(long startOffset, long endOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(jsonFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SCAN_BUFFER_SIZE, endOffset - startOffset));
+            long blockStart = startOffset;
+            while (blockStart < endOffset) {
+                ((Buffer) buffer).clear().limit((int) Math.min(buffer.capacity(), endOffset - blockStart));
+                int count = channel.read(buffer, blockStart);
+                if (count < 0) {
+                    // Truncated while scanning...
+                    return true;
+                }
+                for (int i = 0; i < count; i++) {
+                    byte b = buffer.get(i);
+                    if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                        return false;
+                    }
+                }
+                blockStart += count;
+            }
+            return true;
+        }
+    }
+
+    private static RecordCheckpoint readCheckpoint(Path offsetFile) throws IOException {
+        if (!Files.exists(offsetFile)) {
+            return null;
+        }
+        try (DataInputStream dataInput = new DataInputStream(new BufferedInputStream(Files.newInputStream(offsetFile)))) {
+            if (dataInput.readInt() != MAGIC) {
+                throw new IOException("Not a JSON file offset file: " + offsetFile);
+            }
+            int version = dataInput.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported JSON file offset file version " + version + ".");
+            }
+            long recordCount = dataInput.readLong();
+            long byteOffset = dataInput.readLong();
+
+            return new RecordCheckpoint(recordCount, byteOffset, -1, "");
+        }
+    }
+
+    /**
+     * Write the checkpoint to a temporary file that replaces the offset file, so that a crash never leaves a partially
+     * written offset file behind.
+     */
+    private static void writeCheckpoint(RecordCheckpoint checkpoint, Path offsetFile) throws IOException {
+        Path tempFile = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+            DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(outputStream));
+            dataOutput.writeInt(MAGIC);
+            dataOutput.writeByte(VERSION);
+            dataOutput.writeLong(checkpoint.getRecordCount());
+            dataOutput.writeLong(checkpoint.getByteOffset());
+            dataOutput.flush();
+        }
+        try {
+            Files.move(tempFile, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, offsetFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Ends the stream at a byte offset, which hides the line that's still being appended from the reader.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private BoundedInputStream(InputStream inputStream, long length) {
+            super(inputStream);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = super.read(b, off, (int) Math.min(len, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cost profile of JSON input, broken down by JSON path.
+ * <p/>
+ * Put a profile on the {@link org.smooks.api.ExecutionContext} under {@link JSONReader#PATH_PROFILE_TYPED_KEY} to make
+ * the {@link JSONReader} attribute the bytes and tokens it parses, the SAX events it produces and the time spent in
+ * the downstream {@link org.xml.sax.ContentHandler} calls to the JSON path of each token, e.g.
+ * <code>$.orders[*].items[*].sku</code>:
+ * <pre>
+ * JSONPathProfile pathProfile = new JSONPathProfile(8, 1000);
+ * executionContext.put(JSONReader.PATH_PROFILE_TYPED_KEY, pathProfile);
+ * smooks.filterSource(executionContext, source, result);
+ * System.out.println(pathProfile.report(20));</pre>
+ * A profile accumulates over all the executions it is put on. It isn't thread-safe, so use one profile per thread.
+ * Profiling costs a location lookup per token and two clock reads per SAX event, so it is meant for diagnosing a
+ * feed, not for permanent use.
+ */
+public final class JSONPathProfile {
+
+    /**
+     * Path of the nodes that didn't fit in the profile because of its path limit.
+     */
+    public static final String OTHER_PATH = "(other)";
+
+    private static final String ARRAY_ITEM = "[*]";
+
+    private final int maxDepth;
+    private final int maxPaths;
+    private final PathStats root = new PathStats("$", 0, null);
+    private final PathStats other = new PathStats(OTHER_PATH, 0, null);
+    private int pathCount = 1;
+
+    /**
+     * @param maxDepth The deepest path that is profiled. The tokens below it are attributed to their ancestor at this
+     *                 depth. The root value has depth 0.
+     * @param maxPaths The maximum number of paths. Tokens of paths beyond the limit are attributed to
+     *                 {@link #OTHER_PATH}.
+     */
+    public JSONPathProfile(int maxDepth, int maxPaths) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("'maxDepth' must not be negative.");
+        }
+        if (maxPaths < 1) {
+            throw new IllegalArgumentException("'maxPaths' must be at least 1.");
+        }
+        this.maxDepth = maxDepth;
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * @return the stats of the root value, from which the stats of all the other paths can be reached
+     */
+    public PathStats getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the stats of the tokens beyond the path limit
+     */
+    public PathStats getOther() {
+        return other;
+    }
+
+    /**
+     * @return the stats of all the paths, including {@link #OTHER_PATH} when used, ranked by their total bytes
+     */
+    public List<PathStats> getPaths() {
+        List<PathStats> paths = new ArrayList<PathStats>(pathCount + 1);
+        collect(root, paths);
+        if (other.count > 0 || other.tokenCount > 0) {
+            paths.add(other);
+        }
+        Collections.sort(paths, Comparator.comparingLong(PathStats::getTotalBytes).reversed());
+        return paths;
+    }
+
+    /**
+     * Format the top paths as a table.
+     *
+     * @param limit The maximum number of paths to include.
+     * @return the report
+     */
+    public String report(int limit) {
+        Formatter formatter = new Formatter(new StringBuilder());
+        formatter.format("%-48s %10s %14s %14s %12s %12s %12s%n", "path", "count", "total bytes", "self bytes", "tokens", "SAX events", "handler ms");
+        List<PathStats> paths = getPaths();
+        for (PathStats path : paths.subList(0, Math.min(limit, paths.size()))) {
+            formatter.format("%-48s %10d %14d %14d %12d %12d %12.1f%n", path.getPath(), path.getCount(), path.getTotalBytes(), path.getBytes(),
+                    path.getTotalTokenCount(), path.getTotalSaxEventCount(), path.getTotalHandlerNanos() / 1e6);
+        }
+        return formatter.toString();
+    }
+
+    /**
+     * Clear all the stats.
+     */
+    public void reset() {
+        root.children.clear();
+        root.clear();
+        other.clear();
+        pathCount = 1;
+    }
+
+    /**
+     * @return the stats of a child path, created on first use
+     */
+    PathStats getChild(PathStats parent, String fieldName) {
+        if (parent == other || parent.depth == maxDepth) {
+            return parent;
+        }
+        String key = (fieldName != null ? fieldName : ARRAY_ITEM);
+        PathStats child = parent.children.get(key);
+        if (child == null) {
+            if (pathCount == maxPaths) {
+                return other;
+            }
+            child = new PathStats(parent.path + (fieldName != null ? "." + fieldName : ARRAY_ITEM), parent.depth + 1, parent);
+            parent.children.put(key, child);
+            pathCount++;
+        }
+        return child;
+    }
+
+    private static void collect(PathStats path, List<PathStats> paths) {
+        paths.add(path);
+        for (PathStats child : path.children.values()) {
+            collect(child, paths);
+        }
+    }
+
+    /**
+     * The stats of a JSON path. The "self" counters only cover the tokens of the path itself, the "total" counters
+     * also cover the paths below it.
+     */
+    public static final class PathStats {
+
+        private final String path;
+        private final int depth;
+        private final PathStats parent;
+        private final Map<String, PathStats> children = new HashMap<String, PathStats>();
+        long count;
+        long tokenCount;
+        long bytes;
+        long saxEventCount;
+        long handlerNanos;
+
+        private PathStats(String path, int depth, PathStats parent) {
+            this.path = path;
+            this.depth = depth;
+            this.parent = parent;
+        }
+
+        /**
+         * @return the JSON path, e.g. <code>$.orders[*].sku</code>
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the depth of the path, 0 for the root value
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the stats of the parent path, or null for the root value
+         */
+        public PathStats getParent() {
+            return parent;
+        }
+
+        /**
+         * @return the stats of the child paths
+         */
+        public List<PathStats> getChildren() {
+            return new ArrayList<PathStats>(children.values());
+        }
+
+        /**
+         * @return the number of values found at the path
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the number of tokens of the path itself
+         */
+        public long getTokenCount() {
+            return tokenCount;
+        }
+
+        /**
+         * @return the number of bytes (or characters, for character streams) of the tokens of the path itself,
+         * including the whitespace and separators in front of them
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the number of SAX events produced for the tokens of the path itself
+         */
+        public long getSaxEventCount() {
+            return saxEventCount;
+        }
+
+        /**
+         * @return the time spent in the downstream content handler for the tokens of the path itself, in nanoseconds
+         */
+        public long getHandlerNanos() {
+            return handlerNanos;
+        }
+
+        public long getTotalTokenCount() {
+            long total = tokenCount;
+            for (PathStats child : children.values()) {
+                total += child.getTotalTokenCount();
+            }
+            return total;
+        }
+
+        public long getTotalBytes() {
+            long total = bytes;
+            for (PathStats child : children.values()) {
+                total += child.getTotalBytes();
+            }
+            return total;
+        }
+
+        public long getTotalSaxEventCount() {
+            long total = saxEventCount;
+            for (PathStats child : children.values()) {
+                total += child.getTotalSaxEventCount();
+            }
+            return total;
+        }
+
+        public long getTotalHandlerNanos() {
+            long total = handlerNanos;
+            for (PathStats child : children.values()) {
+                total += child.getTotalHandlerNanos();
+            }
+            return total;
+        }
+
+        private void clear() {
+            count = 0;
+            tokenCount = 0;
+            bytes = 0;
+            saxEventCount = 0;
+            handlerNanos = 0;
+        }
+
+        @Override
+        public String toString() {
+            return "PathStats{path='" + path + "', count=" + count + ", tokenCount=" + tokenCount + ", bytes=" + bytes + ", saxEventCount=" + saxEventCount + ", handlerNanos=" + handlerNanos + "}";
+        }
+    }
+}
@@ -43,14 +43,21 @@
 package org.smooks.cartridges.json;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.TypedKey;
 import org.smooks.api.resource.config.Parameter;
 import org.smooks.api.resource.config.ResourceConfig;
 import org.smooks.api.resource.reader.SmooksXMLReader;
+import org.smooks.engine.resource.config.DefaultParameter;
 import org.w3c.dom.Element;
 import org.xml.sax.*;
 import org.xml.sax.helpers.AttributesImpl;
@@ -59,15 +66,27 @@ import jakarta.annotation.PostConstruct;
 
 import javax.inject.Inject;
 import javax.xml.XMLConstants;
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayWriter;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.PushbackReader;
 import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * JSON to SAX event reader.
@@ -115,6 +134,94 @@ import java.util.Stack;
  *      (Optional) The encoding of the input stream. Default of 'UTF-8'
  *  --&gt;
  *  &lt;param name="<b>encoding</b>"&gt;<i>&lt;encoding&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) Tokenize the JSON stream on a separate thread, so that parsing overlaps with the processing of the SAX events. Default of 'false'.
+ *  --&gt;
+ *  &lt;param name="<b>pipelined</b>"&gt;<i>&lt;true|false&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The number of JSON tokens handed from the parsing thread to the filtering thread at a time in pipelined mode. Default of '1024'.
+ *  --&gt;
+ *  &lt;param name="<b>pipelineBatchSize</b>"&gt;<i>&lt;batch-size&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The size in bytes of the cache of recorded SAX events of UTF-8 byte stream documents. Byte-identical documents are replayed from the cache instead of being parsed. Default of '0' (disabled).
+ *  --&gt;
+ *  &lt;param name="<b>eventTapeCacheSize</b>"&gt;<i>&lt;bytes&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The size in bytes of the biggest document that is cached. Default of '65536'.
+ *  --&gt;
+ *  &lt;param name="<b>eventTapeCacheMaxDocumentSize</b>"&gt;<i>&lt;bytes&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) Drop JSON null values, empty objects and empty arrays, instead of producing (empty) elements for them. Default of 'false'.
+ *  --&gt;
+ *  &lt;param name="<b>suppressEmptyValues</b>"&gt;<i>&lt;true|false&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) Collapse arrays of scalars into a single element holding the values separated by this delimiter, instead of producing an array element per value. An array with a value that holds the delimiter isn't collapsed. By default this is not defined, so that arrays aren't collapsed.
+ *  --&gt;
+ *  &lt;param name="<b>scalarArrayDelimiter</b>"&gt;<i>&lt;delimiter&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) Map the scalar fields of an object that come before its first object or array field to attributes of the object's element, instead of to child elements. Default of 'false'.
+ *  --&gt;
+ *  &lt;param name="<b>scalarFieldsAsAttributes</b>"&gt;<i>&lt;true|false&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) Comma separated paths of objects and arrays that are passed through as a single text node holding their JSON, instead of being converted to elements. A path is made of the element names below the root element, separated by '/', e.g. 'order/metadata'. A '*' matches any element name. By default this is not defined.
+ *  --&gt;
+ *  &lt;param name="<b>rawJsonPaths</b>"&gt;<i>&lt;paths&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The depth below which objects and arrays are passed through as a single text node holding their JSON. Containers in the root object or array have depth 1. Default of '-1' (disabled).
+ *  --&gt;
+ *  &lt;param name="<b>rawJsonDepth</b>"&gt;<i>&lt;depth&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) Read the stream as a sequence of root JSON values, e.g. newline delimited JSON or a batch of concatenated messages. Each root value becomes a record of an implicit root array, so that a whole batch is filtered in a single execution. Default of 'false'.
+ *  --&gt;
+ *  &lt;param name="<b>rootValueSequence</b>"&gt;<i>&lt;true|false&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) Skip the malformed top-level records of a UTF-8 byte stream and continue with the next record, instead of failing the whole stream. The skipped records are reported to the MalformedRecordListener of the execution context. Default of 'false'.
+ *  --&gt;
+ *  &lt;param name="<b>skipMalformedRecords</b>"&gt;<i>&lt;true|false&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The maximum length in bytes (characters for character streams) of a JSON document. The document is rejected as soon as the limit is exceeded. Default of '-1' (no limit).
+ *  --&gt;
+ *  &lt;param name="<b>maxDocumentLength</b>"&gt;<i>&lt;length&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The maximum length in characters of a JSON string value. Default of '20000000'.
+ *  --&gt;
+ *  &lt;param name="<b>maxStringLength</b>"&gt;<i>&lt;length&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The maximum length in characters of a JSON number value. Default of '1000'.
+ *  --&gt;
+ *  &lt;param name="<b>maxNumberLength</b>"&gt;<i>&lt;length&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The maximum nesting depth of JSON objects and arrays. Default of '1000'.
+ *  --&gt;
+ *  &lt;param name="<b>maxNestingDepth</b>"&gt;<i>&lt;depth&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The maximum length in characters of a JSON field name. Default of '50000'.
+ *  --&gt;
+ *  &lt;param name="<b>maxNameLength</b>"&gt;<i>&lt;length&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The maximum number of top-level records that are converted. Reading stops after the last of them. Default of '-1' (no limit).
+ *  --&gt;
+ *  &lt;param name="<b>limit</b>"&gt;<i>&lt;records&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The fraction of the top-level records that are converted, e.g. '0.01' for every 100th record. The other records are skipped without producing SAX events. Default of '1.0' (all records).
+ *  --&gt;
+ *  &lt;param name="<b>sampleRate</b>"&gt;<i>&lt;rate&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The location of a JSON Schema that the JSON stream is validated against while it is parsed. See {@link JSONSchema} for the supported keywords. Default of no validation.
+ *  --&gt;
+ *  &lt;param name="<b>schema</b>"&gt;<i>&lt;location&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The number of slots of the cache of canonical instances of repeated scalar values, used for the attribute values in scalarFieldsAsAttributes mode. A cache without scalarFieldsAsAttributes is rejected. See {@link JSONValueCache}. Default of '0' (disabled).
+ *  --&gt;
+ *  &lt;param name="<b>valueCacheSize</b>"&gt;<i>&lt;slots&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The length in characters of the longest value that is cached. Default of '32'.
+ *  --&gt;
+ *  &lt;param name="<b>valueCacheMaxValueLength</b>"&gt;<i>&lt;characters&gt;</i>&lt;/param&gt;
+ *  &lt;!--
+ *      (Optional) The number of cache misses of a field after which its values are considered high cardinality and are no longer cached. Default of '1024', '0' for no cap.
+ *  --&gt;
+ *  &lt;param name="<b>valueCacheMaxFieldCardinality</b>"&gt;<i>&lt;values&gt;</i>&lt;/param&gt;
  *
  * &lt;/resource-config&gt;
  * </pre>
@@ -170,14 +277,82 @@ public class JSONReader implements SmooksXMLReader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JSONReader.class);
 
+    private static final AtomicBoolean CHARACTER_STREAM_SKIPPING_WARNED = new AtomicBoolean();
+
     public static final String CONFIG_PARAM_KEY_MAP = "keyMap";
 
+    /**
+     * Reader {@link ResourceConfig} parameter holding the compiled {@link JSONReaderProfile} shared by the readers of the
+     * configuration.
+     */
+    public static final String CONFIG_PARAM_PROFILE = "jsonReaderProfile";
+
     public static final String XML_ROOT = "json";
 
     public static final String XML_ARRAY_ELEMENT_NAME = "element";
 
     public static final String DEFAULT_NULL_VALUE_REPLACEMENT = "";
 
+    public static final int DEFAULT_PIPELINE_BATCH_SIZE = 1024;
+
+    public static final int DEFAULT_EVENT_TAPE_CACHE_MAX_DOCUMENT_SIZE = 64 * 1024;
+
+    public static final int DEFAULT_VALUE_CACHE_MAX_VALUE_LENGTH = 32;
+
+    public static final int DEFAULT_VALUE_CACHE_MAX_FIELD_CARDINALITY = 1024;
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key of the {@link RecordCheckpointListener} that is notified after each
+     * completed top-level record.
+     */
+    public static final TypedKey<RecordCheckpointListener> RECORD_CHECKPOINT_LISTENER_TYPED_KEY = TypedKey.of();
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key of the {@link RecordCheckpoint} to resume parsing from.
+     */
+    public static final TypedKey<RecordCheckpoint> RESUME_CHECKPOINT_TYPED_KEY = TypedKey.of();
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key of the {@link RecordRange} to parse. The reader skips to the first
+     * record of the range and stops after its last record. A {@link #RESUME_CHECKPOINT_TYPED_KEY resume checkpoint}
+     * inside the range takes precedence over the start of the range.
+     */
+    public static final TypedKey<RecordRange> RECORD_RANGE_TYPED_KEY = TypedKey.of();
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key under which the reader publishes its {@link EventTapeCache}, when the
+     * cache is enabled.
+     */
+    public static final TypedKey<EventTapeCache> EVENT_TAPE_CACHE_TYPED_KEY = TypedKey.of();
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key under which the reader publishes its {@link JSONValueCache}, when the
+     * cache is enabled.
+     */
+    public static final TypedKey<JSONValueCache> VALUE_CACHE_TYPED_KEY = TypedKey.of();
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key of the {@link MalformedRecordListener} that receives the records
+     * skipped in <code>skipMalformedRecords</code> mode. Skipped records are logged when no listener is registered.
+     */
+    public static final TypedKey<MalformedRecordListener> MALFORMED_RECORD_LISTENER_TYPED_KEY = TypedKey.of();
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key of the {@link JSONPathProfile} that the reader attributes the cost of
+     * the parsed JSON to. Profiling is off when there is no profile.
+     */
+    public static final TypedKey<JSONPathProfile> PATH_PROFILE_TYPED_KEY = TypedKey.of();
+
+    /**
+     * {@link org.smooks.api.ExecutionContext} key of the {@link SchemaViolationListener} that receives the values that
+     * don't conform to the schema. The first violation fails the filtering when no listener is registered.
+     */
+    public static final TypedKey<SchemaViolationListener> SCHEMA_VIOLATION_LISTENER_TYPED_KEY = TypedKey.of();
+
+    private static final String ROOT_ARRAY_CONTEXT = "[";
+
+    private static final String ROOT_VALUE_SEQUENCE_CONTEXT = "";
+
     private static final Attributes EMPTY_ATTRIBS = new AttributesImpl();
 
     private static final JsonFactory jsonFactory = new JsonFactory();
@@ -194,13 +369,13 @@ public class JSONReader implements SmooksXMLReader {
     private String arrayElementName = XML_ARRAY_ELEMENT_NAME;
 
     @Inject
-    private Optional<String> keyWhitspaceReplacement;
+    private Optional<String> keyWhitspaceReplacement = Optional.empty();
 
     @Inject
-    private Optional<String> keyPrefixOnNumeric;
+    private Optional<String> keyPrefixOnNumeric = Optional.empty();
 
     @Inject
-    private Optional<String> illegalElementNameCharReplacement;
+    private Optional<String> illegalElementNameCharReplacement = Optional.empty();
 
     @Inject
     private String nullValueReplacement = DEFAULT_NULL_VALUE_REPLACEMENT;
@@ -211,32 +386,260 @@ public class JSONReader implements SmooksXMLReader {
     @Inject
     private Boolean indent = false;
 
+    @Inject
+    private Boolean pipelined = false;
+
+    @Inject
+    private Integer pipelineBatchSize = DEFAULT_PIPELINE_BATCH_SIZE;
+
+    @Inject
+    private Long eventTapeCacheSize = 0L;
+
+    @Inject
+    private Integer eventTapeCacheMaxDocumentSize = DEFAULT_EVENT_TAPE_CACHE_MAX_DOCUMENT_SIZE;
+
+    @Inject
+    private Boolean suppressEmptyValues = false;
+
+    @Inject
+    private Optional<String> scalarArrayDelimiter = Optional.empty();
+
+    @Inject
+    private Boolean scalarFieldsAsAttributes = false;
+
+    @Inject
+    private Optional<String> rawJsonPaths = Optional.empty();
+
+    @Inject
+    private Integer rawJsonDepth = -1;
+
+    @Inject
+    private Boolean rootValueSequence = false;
+
+    @Inject
+    private Boolean skipMalformedRecords = false;
+
+    @Inject
+    private Long maxDocumentLength = StreamReadConstraints.DEFAULT_MAX_DOC_LEN;
+
+    @Inject
+    private Integer maxStringLength = StreamReadConstraints.DEFAULT_MAX_STRING_LEN;
+
+    @Inject
+    private Integer maxNumberLength = StreamReadConstraints.DEFAULT_MAX_NUM_LEN;
+
+    @Inject
+    private Integer maxNestingDepth = StreamReadConstraints.DEFAULT_MAX_DEPTH;
+
+    @Inject
+    private Integer maxNameLength = StreamReadConstraints.DEFAULT_MAX_NAME_LEN;
+
+    @Inject
+    private Long limit = -1L;
+
+    @Inject
+    private Double sampleRate = 1.0;
+
+    @Inject
+    private Optional<String> schema = Optional.empty();
+
+    @Inject
+    private Integer valueCacheSize = 0;
+
+    @Inject
+    private Integer valueCacheMaxValueLength = DEFAULT_VALUE_CACHE_MAX_VALUE_LENGTH;
+
+    @Inject
+    private Integer valueCacheMaxFieldCardinality = DEFAULT_VALUE_CACHE_MAX_FIELD_CARDINALITY;
+
     @Inject
     private ResourceConfig resourceConfig;
 
-    private boolean doKeyReplacement = false;
+    private HashMap<String, String> keyMap;
+
+    private JSONReaderProfile profile;
+
+    private long offsetBase;
+
+    private long skippedRecordCount;
+
+    private String[] pendingElementNames = new String[16];
+
+    private int[] pendingElementIndents = new int[16];
+
+    private AttributesImpl[] pendingElementAttributes = new AttributesImpl[16];
+
+    private int pendingElementCount;
+
+    private int attributeDepth = -1;
 
-    private boolean doKeyWhitspaceReplacement = false;
+    private RawJsonWriter rawJsonWriter;
 
-    private boolean doPrefixOnNumericKey = false;
+    private JSONSchemaValidator schemaValidator;
 
-    private boolean doIllegalElementNameCharReplacement = false;
+    private JSONValueCache valueCache;
 
-    private HashMap<String, String> keyMap = new HashMap<String, String>();
+    private PipelinedJsonParser.Batches pipelineBatches;
+
+    private long completedRecordCount;
 
     private enum Type {
         OBJECT,
         ARRAY
     }
 
+    /**
+     * Buffers raw JSON text, giving access to the buffer so that it can be handed to the content handler without a copy.
+     */
+    private static final class RawJsonWriter extends CharArrayWriter {
+        private char[] getBuffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Collects the scalars of an array as delimited text, until the array ends or turns out to hold a container or a
+     * value holding the delimiter.
+     */
+    private static final class ScalarArrayCollector {
+        private final char[] delimiter;
+        private char[] text = new char[256];
+        private int textLength;
+        private int[] itemEnds = new int[16];
+        private int itemCount;
+        private int depth = -1;
+
+        private ScalarArrayCollector(String delimiter) {
+            this.delimiter = delimiter.toCharArray();
+        }
+
+        private boolean isCollecting(int depth) {
+            return this.depth == depth;
+        }
+
+        private void start(int depth) {
+            this.depth = depth;
+            textLength = 0;
+            itemCount = 0;
+        }
+
+        private void stop() {
+            depth = -1;
+        }
+
+        /**
+         * @return false if the value holds the delimiter, in which case it isn't added
+         */
+        private boolean add(char[] chars, int offset, int length) {
+            if (containsDelimiter(chars, offset, length)) {
+                return false;
+            }
+            int delimiterLength = (itemCount > 0 ? delimiter.length : 0);
+            if (textLength + delimiterLength + length > text.length) {
+                text = Arrays.copyOf(text, Math.max(textLength + delimiterLength + length, text.length * 2));
+            }
+            if (itemCount == itemEnds.length) {
+                itemEnds = Arrays.copyOf(itemEnds, itemCount * 2);
+            }
+            System.arraycopy(delimiter, 0, text, textLength, delimiterLength);
+            textLength += delimiterLength;
+            System.arraycopy(chars, offset, text, textLength, length);
+            textLength += length;
+            itemEnds[itemCount++] = textLength;
+            return true;
+        }
+
+        private boolean containsDelimiter(char[] chars, int offset, int length) {
+            if (delimiter.length == 0) {
+                return false;
+            }
+            int end = offset + length - delimiter.length;
+            for (int i = offset; i <= end; i++) {
+                int j = 0;
+                while (j < delimiter.length && chars[i + j] == delimiter[j]) {
+                    j++;
+                }
+                if (j == delimiter.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private char[] getText() {
+            return text;
+        }
+
+        private int getTextLength() {
+            return textLength;
+        }
+
+        private int getItemCount() {
+            return itemCount;
+        }
+
+        private int getItemStart(int item) {
+            return (item == 0 ? 0 : itemEnds[item - 1] + delimiter.length);
+        }
+
+        private int getItemEnd(int item) {
+            return itemEnds[item];
+        }
+    }
+
+    /**
+     * Look up the {@link JSONReaderProfile} of the reader configuration, compiling it if this is the first reader of
+     * the configuration.
+     */
     @PostConstruct
     public void initialize() {
-        initKeyMap();
+        if (valueCacheSize > 0 && !scalarFieldsAsAttributes) {
+            throw new SmooksConfigException("The value cache only holds attribute values, so 'valueCacheSize' requires 'scalarFieldsAsAttributes' to be enabled.");
+        }
+        profile = null;
+        if (resourceConfig == null) {
+            return;
+        }
+
+        synchronized (resourceConfig) {
+            Parameter<?> profileParam = resourceConfig.getParameter(CONFIG_PARAM_PROFILE, Object.class);
+            if (profileParam != null && profileParam.getValue() instanceof JSONReaderProfile) {
+                profile = (JSONReaderProfile) profileParam.getValue();
+                // Keep the configured key map so that a profile recompiled by a later setter still applies it.
+                keyMap = new HashMap<String, String>(profile.getKeyMap());
+            } else {
+                initKeyMap();
+                profile = compileProfile();
+                resourceConfig.setParameter(new DefaultParameter<>(CONFIG_PARAM_PROFILE, profile));
+            }
+        }
+    }
+
+    private JSONReaderProfile compileProfile() {
+        return new JSONReaderProfile(keyMap, keyWhitspaceReplacement.orElse(null), keyPrefixOnNumeric.orElse(null),
+                illegalElementNameCharReplacement.orElse(null), eventTapeCacheSize,
+                JSONReaderProfile.createStreamReadConstraints(maxDocumentLength, maxStringLength, maxNumberLength, maxNestingDepth, maxNameLength),
+                (schema.isPresent() ? loadSchema(schema.get()) : null),
+                (valueCacheSize > 0 ? new JSONValueCache(valueCacheSize, valueCacheMaxValueLength, valueCacheMaxFieldCardinality) : null));
+    }
+
+    static JSONSchema loadSchema(String location) {
+        try {
+            return JSONSchema.load(location);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SmooksConfigException("Failed to load JSON Schema '" + location + "'.", e);
+        }
+    }
 
-        doKeyReplacement = !keyMap.isEmpty();
-        doKeyWhitspaceReplacement = keyWhitspaceReplacement.isPresent();
-        doPrefixOnNumericKey = keyPrefixOnNumeric.isPresent();
-        doIllegalElementNameCharReplacement = illegalElementNameCharReplacement.isPresent();
+    /**
+     * @return the profile of the reader. A reader without a configuration, or whose naming rules were changed after
+     * initialization, gets a profile of its own.
+     */
+    public JSONReaderProfile getProfile() {
+        if (profile == null) {
+            profile = compileProfile();
+        }
+        return profile;
     }
 
 
@@ -260,143 +663,741 @@ public class JSONReader implements SmooksXMLReader {
             throw new IllegalStateException("Smooks container 'executionContext' not set.  Cannot parse JSON stream.");
         }
 
+        JSONReaderEvents readerEvents = JSONReaderEvents.begin(isUtf8ByteStream(csvInputSource) ? StandardCharsets.UTF_8.name()
+                : (csvInputSource.getCharacterStream() != null ? null : encoding.name()));
+        long startRecordCount = 0;
+        completedRecordCount = 0;
+        boolean replayed = false;
+        boolean completed = false;
         try {
-            // Get a reader for the JSON source...
-            Reader jsonStreamReader = csvInputSource.getCharacterStream();
-            if (jsonStreamReader == null) {
-                jsonStreamReader = new InputStreamReader(csvInputSource.getByteStream(), encoding);
+            RecordCheckpointListener checkpointListener = executionContext.get(RECORD_CHECKPOINT_LISTENER_TYPED_KEY);
+            RecordCheckpoint resumeCheckpoint = executionContext.get(RESUME_CHECKPOINT_TYPED_KEY);
+            RecordRange recordRange = executionContext.get(RECORD_RANGE_TYPED_KEY);
+            JSONPathProfile pathProfile = executionContext.get(PATH_PROFILE_TYPED_KEY);
+            long recordLimit = Long.MAX_VALUE;
+            if (recordRange != null) {
+                if (resumeCheckpoint == null) {
+                    resumeCheckpoint = new RecordCheckpoint(recordRange.getFromRecord(), recordRange.getStartOffset(), -1, getRecordContext());
+                }
+                recordLimit = recordRange.getToRecord();
             }
 
-            // Create the JSON parser...
-            JsonParser jp = null;
-            try {
+            long recordCount = (resumeCheckpoint != null ? resumeCheckpoint.getRecordCount() : 0);
 
+            JSONReaderProfile profile = getProfile();
+            EventTapeCache eventTapeCache = null;
+            skippedRecordCount = 0;
+            SchemaViolationListener schemaViolationListener = executionContext.get(SCHEMA_VIOLATION_LISTENER_TYPED_KEY);
+            if (profile.getEventTapeCache() != null && checkpointListener == null && resumeCheckpoint == null && !skipMalformedRecords && pathProfile == null
+                    && schemaViolationListener == null && isUtf8ByteStream(csvInputSource)) {
+                eventTapeCache = profile.getEventTapeCache();
+                executionContext.put(EVENT_TAPE_CACHE_TYPED_KEY, eventTapeCache);
+            }
+            if (readerEvents != null) {
+                checkpointListener = readerEvents.wrap(checkpointListener);
+            }
+            valueCache = profile.getValueCache();
+            if (valueCache != null) {
+                executionContext.put(VALUE_CACHE_TYPED_KEY, valueCache);
+            }
+
+            // Token locations are only tracked by the replaying parsers when they are asked for...
+            boolean recordLocations = (checkpointListener != null || pathProfile != null || profile.getSchema() != null || readerEvents != null);
+            JsonParser jp;
+            byte[] document = null;
+            long documentHash = 0;
+            EventTape.Recorder recorder = null;
+            if (eventTapeCache != null) {
+                InputStream byteStream = csvInputSource.getByteStream();
+                document = readPrefix(byteStream, eventTapeCacheMaxDocumentSize + 1);
+
+                if (document.length <= eventTapeCacheMaxDocumentSize) {
+                    documentHash = EventTapeCache.hash(document, document.length);
+                    EventTape eventTape = eventTapeCache.get(document, document.length, documentHash);
+                    if (eventTape != null) {
+                        eventTape.replay(contentHandler);
+                        replayed = true;
+                        completed = true;
+                        return;
+                    }
+                    recorder = new EventTape.Recorder(contentHandler);
+                    contentHandler = recorder;
+                    jp = createByteStreamParser(new ByteArrayInputStream(document));
+                } else {
+                    // Too big to cache...
+                    jp = createByteStreamParser(new SequenceInputStream(new ByteArrayInputStream(document), byteStream));
+                }
+            } else {
                 if (LOGGER.isTraceEnabled()) {
                     LOGGER.trace("Creating JSON parser");
                 }
+                jp = createParser(csvInputSource, resumeCheckpoint, recordLimit, recordLocations);
+            }
+            if (pipelined) {
+                if (skipMalformedRecords) {
+                    // The skipped records are counted on the filtering thread...
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Pipelining isn't supported when skipping malformed records. Parsing the JSON stream on the filtering thread.");
+                    }
+                } else {
+                    if (pipelineBatches == null || pipelineBatches.getBatchSize() != pipelineBatchSize) {
+                        pipelineBatches = new PipelinedJsonParser.Batches(pipelineBatchSize);
+                    }
+                    jp = new PipelinedJsonParser(jp, pipelineBatches, recordLocations);
+                }
+            }
+            if (pathProfile != null) {
+                ProfilingJsonParser profilingParser = new ProfilingJsonParser(jp, pathProfile);
+                contentHandler = new ProfilingContentHandler(contentHandler, profilingParser);
+                jp = profilingParser;
+            }
 
-                jp = jsonFactory.createJsonParser(jsonStreamReader);
+            if (readerEvents != null) {
+                jp = readerEvents.wrap(jp);
+            }
 
-                // Start the document and add the root "csv-set" element...
-                contentHandler.startDocument();
-                startElement(rootName, 0);
+            if (profile.getSchema() != null) {
+                schemaValidator = new JSONSchemaValidator(profile.getSchema(), rootValueSequence || skipMalformedRecords, rootValueSequence, schemaViolationListener, offsetBase);
+            }
 
-                if (LOGGER.isTraceEnabled()) {
-                    LOGGER.trace("Starting JSON parsing");
+            completedRecordCount = recordCount;
+            startRecordCount = recordCount;
+            parse(jp, profile, checkpointListener, recordCount, recordLimit);
+
+            if (recorder != null) {
+                EventTape eventTape = recorder.toTape();
+                if (eventTape != null) {
+                    eventTapeCache.put(document, document.length, documentHash, eventTape);
                 }
+            }
+            completed = true;
+        } finally {
+            if (readerEvents != null) {
+                readerEvents.end(completedRecordCount - startRecordCount, replayed, !completed);
+            }
+            // These properties need to be reset for every execution (e.g. when reader is pooled).
+            contentHandler = null;
+            executionContext = null;
+            schemaValidator = null;
+        }
+    }
+
+    /**
+     * Produce the SAX events for the tokens of the parser. The parser is closed when done. The number of completed
+     * records, including the records before the resume checkpoint, is left in {@link #completedRecordCount}.
+     */
+    private void parse(JsonParser jp, JSONReaderProfile profile, RecordCheckpointListener checkpointListener, long recordCount, long recordLimit) throws IOException, SAXException {
+        try {
+            pendingElementCount = 0;
+            attributeDepth = -1;
+
+            // Start the document and add the root "csv-set" element. The root element takes the scalar fields of a
+            // root object as attributes, so its start is deferred in attribute mode...
+            contentHandler.startDocument();
+            openElement(rootName, 0, scalarFieldsAsAttributes);
+
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("Starting JSON parsing");
+            }
+
+            boolean first = true;
+            char[] nullValue = nullValueReplacement.toCharArray();
+            ScalarArrayCollector scalarArrayCollector = (scalarArrayDelimiter.isPresent() ? new ScalarArrayCollector(scalarArrayDelimiter.get()) : null);
+            String fieldName = null;
+            boolean selectRecords = (limit >= 0 || sampleRate < 1.0);
+            long maxEmittedRecordCount = (limit >= 0 ? limit : Long.MAX_VALUE);
+            long emittedRecordCount = 0;
+            StreamReadConstraints streamReadConstraints = profile.getStreamReadConstraints();
+            ElementPathMatcher rawJsonPathMatcher = (rawJsonPaths.isPresent() ? new ElementPathMatcher(rawJsonPaths.get()) : null);
+            String[] containerNames = new String[16];
+            Stack<String> elementStack = new Stack<String>();
+            Stack<Type> typeStack = new Stack<Type>();
+            if (rootValueSequence || skipMalformedRecords) {
+                // The root values are the records of an implicit root array. When skipping malformed records, the
+                // parser returns the records of the root array as root values too...
+                typeStack.push(Type.ARRAY);
+                first = false;
+            }
+            JsonToken t;
+            // Once the limit is reached, stop as soon as the last record is complete, without reading any further...
+            while (recordCount < recordLimit && (emittedRecordCount < maxEmittedRecordCount || typeStack.size() > 1) && (t = jp.nextToken()) != null) {
 
-                boolean first = true;
-                Stack<String> elementStack = new Stack<String>();
-                Stack<Type> typeStack = new Stack<Type>();
-                JsonToken t;
-                while ((t = jp.nextToken()) != null) {
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Token: " + t.name());
+                }
 
-                    if (LOGGER.isTraceEnabled()) {
-                        LOGGER.trace("Token: " + t.name());
+                if (selectRecords && typeStack.size() == 1 && typeStack.peek() == Type.ARRAY && t != JsonToken.END_ARRAY) {
+                    // The start of a top-level record...
+                    if (!isSampled(recordCount, sampleRate)) {
+                        if (t.isStructStart()) {
+                            jp.skipChildren();
+                        }
+                        if (schemaValidator != null) {
+                            schemaValidator.skipValue();
+                        }
+                        recordCount++;
+                        if (checkpointListener != null) {
+                            publishCheckpoint(jp, recordCount, checkpointListener);
+                        }
+                        first = false;
+                        continue;
                     }
+                    emittedRecordCount++;
+                }
 
-                    switch (t) {
+                if (schemaValidator != null) {
+                    schemaValidator.validate(jp, t);
+                }
 
-                        case START_OBJECT:
-                        case START_ARRAY:
-                            if (!first) {
-                                if (!typeStack.empty() && typeStack.peek() == Type.ARRAY) {
-                                    startElement(arrayElementName, typeStack.size());
+                switch (t) {
+
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        if (scalarArrayCollector != null && scalarArrayCollector.isCollecting(typeStack.size())) {
+                            // Not an array of scalars after all...
+                            releaseScalarArray(scalarArrayCollector, typeStack.size());
+                        }
+                        endAttributes();
+
+                        String containerElementName = null;
+                        if (!first && !typeStack.empty()) {
+                            containerElementName = (typeStack.peek() == Type.ARRAY ? arrayElementName : fieldName);
+                        }
+
+                        if (containerElementName != null && isRawJson(typeStack.size(), containerElementName, containerNames, rawJsonPathMatcher)) {
+                            // Pass the whole container through as JSON text...
+                            openElement(containerElementName, typeStack.size(), false);
+                            flushPendingElements();
+                            copyRawJson(jp);
+                            contentHandler.characters(rawJsonWriter.getBuffer(), 0, rawJsonWriter.size());
+                            closeElement(containerElementName, -1);
+
+                            if (typeStack.size() == 1 && typeStack.peek() == Type.ARRAY) {
+                                recordCount++;
+                                if (checkpointListener != null) {
+                                    publishCheckpoint(jp, recordCount, checkpointListener);
                                 }
                             }
-                            typeStack.push(t == JsonToken.START_ARRAY ? Type.ARRAY : Type.OBJECT);
                             break;
+                        }
+
+                        // The element of an object is deferred in attribute mode, until its attributes are known...
+                        boolean deferElement = scalarFieldsAsAttributes && t == JsonToken.START_OBJECT;
+                        if (containerElementName != null) {
+                            openElement(containerElementName, typeStack.size(), deferElement);
+                            if (typeStack.peek() == Type.OBJECT) {
+                                elementStack.add(containerElementName);
+                            }
+                        }
+                        if (containerNames.length == typeStack.size()) {
+                            containerNames = Arrays.copyOf(containerNames, typeStack.size() * 2);
+                        }
+                        containerNames[typeStack.size()] = containerElementName;
+                        typeStack.push(t == JsonToken.START_ARRAY ? Type.ARRAY : Type.OBJECT);
+                        if (scalarArrayCollector != null && !first && t == JsonToken.START_ARRAY) {
+                            scalarArrayCollector.start(typeStack.size());
+                        }
+                        if (scalarFieldsAsAttributes && t == JsonToken.START_OBJECT) {
+                            attributeDepth = typeStack.size();
+                        }
+                        break;
+
+                    case END_OBJECT:
+                    case END_ARRAY:
+
+                        int endIndent = typeStack.size() - 1;
+                        if (scalarArrayCollector != null && scalarArrayCollector.isCollecting(typeStack.size())) {
+                            if (scalarArrayCollector.getItemCount() > 0) {
+                                flushPendingElements();
+                                contentHandler.characters(scalarArrayCollector.getText(), 0, scalarArrayCollector.getTextLength());
+                            }
+                            scalarArrayCollector.stop();
+                            endIndent = -1;
+                        }
+                        if (attributeDepth == typeStack.size()) {
+                            // An object with nothing but attributes...
+                            endAttributes();
+                            endIndent = -1;
+                        }
+
+                        typeStack.pop();
 
-                        case END_OBJECT:
-                        case END_ARRAY:
+                        boolean typeStackPeekIsArray = !typeStack.empty() && typeStack.peek() == Type.ARRAY;
 
-                            typeStack.pop();
+                        if (!elementStack.empty() && !typeStackPeekIsArray) {
+                            closeElement(elementStack.pop(), endIndent);
+                        }
 
-                            boolean typeStackPeekIsArray = !typeStack.empty() && typeStack.peek() == Type.ARRAY;
 
-                            if (!elementStack.empty() && !typeStackPeekIsArray) {
-                                endElement(elementStack.pop(), typeStack.size());
+                        if (typeStackPeekIsArray) {
+                            closeElement(arrayElementName, endIndent);
+
+                            if (typeStack.size() == 1) {
+                                recordCount++;
+                                if (checkpointListener != null) {
+                                    publishCheckpoint(jp, recordCount, checkpointListener);
+                                }
                             }
+                        }
+                        break;
+
+                    case FIELD_NAME:
+
+                        String text = jp.getText();
+
+                        if (LOGGER.isTraceEnabled()) {
+                            LOGGER.trace("Field name: " + text);
+                        }
+
+                        // The element of the field is opened by its value...
+                        fieldName = profile.getElementName(text);
+
+                        break;
 
+                    default:
 
-                            if (typeStackPeekIsArray) {
-                                endElement(arrayElementName, typeStack.size());
+                        // Jackson only checks the length of the strings that outgrow its text buffer, or that are
+                        // read with getText()...
+                        if (t == JsonToken.VALUE_STRING && jp.getTextLength() > streamReadConstraints.getMaxStringLength()) {
+                            streamReadConstraints.validateStringLength(jp.getTextLength());
+                        }
+
+                        if (scalarArrayCollector != null && scalarArrayCollector.isCollecting(typeStack.size())) {
+                            if (t != JsonToken.VALUE_NULL) {
+                                if (scalarArrayCollector.add(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength())) {
+                                    break;
+                                }
+                            } else if (suppressEmptyValues || scalarArrayCollector.add(nullValue, 0, nullValue.length)) {
+                                break;
+                            }
+                            // A value holding the delimiter can't be told apart in the delimited text...
+                            releaseScalarArray(scalarArrayCollector, typeStack.size());
+                        }
+
+                        boolean inArray = (typeStack.peek() == Type.ARRAY);
+
+                        if (!inArray && attributeDepth == typeStack.size() && pendingElementAttributes[pendingElementCount - 1].getIndex(fieldName) >= 0) {
+                            // A repeated key can't be a second attribute, so it and the rest of the fields are
+                            // child elements...
+                            endAttributes();
+                        }
+
+                        if (!inArray && attributeDepth == typeStack.size()) {
+                            if (t != JsonToken.VALUE_NULL) {
+                                addAttribute(fieldName, jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+                            } else if (!suppressEmptyValues) {
+                                addAttribute(fieldName, nullValue, 0, nullValue.length);
                             }
                             break;
+                        }
+
+                        String elementName = (inArray ? arrayElementName : fieldName);
+
+                        openElement(elementName, typeStack.size(), false);
 
-                        case FIELD_NAME:
+                        // Hand the parser's character buffer straight to the content handler, so that values
+                        // don't allocate...
+                        if (t != JsonToken.VALUE_NULL) {
+                            flushPendingElements();
+                            contentHandler.characters(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+                        } else if (!suppressEmptyValues) {
+                            contentHandler.characters(nullValue, 0, nullValue.length);
+                        }
 
-                            String text = jp.getText();
+                        closeElement(elementName, -1);
 
-                            if (LOGGER.isTraceEnabled()) {
-                                LOGGER.trace("Field name: " + text);
+                        if (inArray && typeStack.size() == 1) {
+                            recordCount++;
+                            if (checkpointListener != null) {
+                                publishCheckpoint(jp, recordCount, checkpointListener);
                             }
+                        }
 
-                            String name = getElementName(text);
+                        break;
 
-                            startElement(name, typeStack.size());
-                            elementStack.add(name);
 
+                }
 
-                            break;
+                first = false;
+            }
+            flushPendingElements();
+            endElement(rootName, 0);
+            contentHandler.endDocument();
+        } finally {
+            completedRecordCount = recordCount;
+            try {
+                jp.close();
+            } catch (Exception e) {
+            }
+        }
+    }
 
-                        default:
+    /**
+     * Systematic sampling: a record is selected each time the record index times the rate crosses an integer, so that
+     * the first record and then every (1 / rate)th record are selected. The selection only depends on the record
+     * index, so it is the same for the ranges of a split input and for a resumed input.
+     */
+    private static boolean isSampled(long recordIndex, double sampleRate) {
+        return sampleRate >= 1.0 || Math.floor(recordIndex * sampleRate) != Math.floor((recordIndex - 1) * sampleRate);
+    }
 
-                            String value;
+    /**
+     * @param depth              The depth of the container, 1 for the containers in the root container.
+     * @param elementName        The element name of the container.
+     * @param containerNames     The element names of the enclosing containers, by depth.
+     * @param rawJsonPathMatcher The matcher of the raw JSON paths, or null.
+     * @return true if the container is passed through as raw JSON
+     */
+    private boolean isRawJson(int depth, String elementName, String[] containerNames, ElementPathMatcher rawJsonPathMatcher) {
+        if (rawJsonDepth >= 0 && depth > rawJsonDepth) {
+            return true;
+        }
+        return rawJsonPathMatcher != null && rawJsonPathMatcher.matches(depth, elementName, containerNames);
+    }
 
-                            if (t == JsonToken.VALUE_NULL) {
-                                value = nullValueReplacement;
-                            } else {
-                                value = jp.getText();
-                            }
+    /**
+     * Write the container the parser is positioned on, up to and including its end token, to the
+     * {@link #rawJsonWriter}. The tokens are copied one by one, rather than with
+     * {@link JsonGenerator#copyCurrentStructure(JsonParser)}, so that numbers keep their exact text.
+     */
+    private void copyRawJson(JsonParser jp) throws IOException {
+        if (rawJsonWriter == null) {
+            rawJsonWriter = new RawJsonWriter();
+        }
+        rawJsonWriter.reset();
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(rawJsonWriter)) {
+            int depth = 0;
+            JsonToken t = jp.currentToken();
+            do {
+                if (schemaValidator != null && depth > 0) {
+                    // The start of the container was validated by the caller...
+                    schemaValidator.validate(jp, t);
+                }
+                switch (t) {
+                    case START_OBJECT:
+                        generator.writeStartObject();
+                        depth++;
+                        break;
+                    case START_ARRAY:
+                        generator.writeStartArray();
+                        depth++;
+                        break;
+                    case END_OBJECT:
+                        generator.writeEndObject();
+                        depth--;
+                        break;
+                    case END_ARRAY:
+                        generator.writeEndArray();
+                        depth--;
+                        break;
+                    case FIELD_NAME:
+                        generator.writeFieldName(jp.getText());
+                        break;
+                    case VALUE_STRING:
+                        if (jp.getTextLength() > getProfile().getStreamReadConstraints().getMaxStringLength()) {
+                            getProfile().getStreamReadConstraints().validateStringLength(jp.getTextLength());
+                        }
+                        generator.writeString(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+                        break;
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT:
+                        generator.writeNumber(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+                        break;
+                    case VALUE_TRUE:
+                    case VALUE_FALSE:
+                        generator.writeBoolean(t == JsonToken.VALUE_TRUE);
+                        break;
+                    case VALUE_NULL:
+                        generator.writeNull();
+                        break;
+                    default:
+                        throw new JsonParseException(jp, "Unexpected token " + t + " in raw JSON.");
+                }
+            } while (depth > 0 && (t = jp.nextToken()) != null);
 
-                            if (typeStack.peek() == Type.ARRAY) {
+            if (depth > 0) {
+                throw new JsonParseException(jp, "Unexpected end of input in raw JSON.");
+            }
+        }
+    }
 
-                                startElement(arrayElementName, typeStack.size());
-                            }
+    /**
+     * Emit the scalars collected for an array that turned out to hold a container, or a value holding the delimiter, as
+     * individual array elements.
+     */
+    private void releaseScalarArray(ScalarArrayCollector scalarArrayCollector, int indent) throws SAXException {
+        char[] text = scalarArrayCollector.getText();
+        for (int i = 0; i < scalarArrayCollector.getItemCount(); i++) {
+            int itemStart = scalarArrayCollector.getItemStart(i);
+
+            openElement(arrayElementName, indent, false);
+            flushPendingElements();
+            contentHandler.characters(text, itemStart, scalarArrayCollector.getItemEnd(i) - itemStart);
+            closeElement(arrayElementName, -1);
+        }
+        scalarArrayCollector.stop();
+    }
 
-                            contentHandler.characters(value.toCharArray(), 0, value.length());
+    /**
+     * Create the JSON parser for the supplied source.
+     * <p/>
+     * UTF-8 byte streams are handed to Jackson directly, so that no intermediate character decoding takes place and
+     * the parser reports byte offsets. When resuming from a checkpoint, the stream is first skipped to the checkpoint
+     * offset and the checkpoint context is pushed back in front of the remaining records.
+     */
+    private JsonParser createParser(InputSource inputSource, RecordCheckpoint resumeCheckpoint, long recordLimit, boolean recordLocations) throws IOException {
+        InputStream byteStream = inputSource.getByteStream();
+        Reader characterStream = inputSource.getCharacterStream();
+
+        offsetBase = 0;
+        if (isUtf8ByteStream(inputSource)) {
+            if (byteStream instanceof ByteBufferInputStream && !skipMalformedRecords) {
+                return createByteBufferParser((ByteBufferInputStream) byteStream, resumeCheckpoint);
+            }
+            if (resumeCheckpoint == null) {
+                return (skipMalformedRecords ? createRecordSkippingParser(byteStream, 0, recordLimit, recordLocations) : createByteStreamParser(byteStream));
+            }
+            if (resumeCheckpoint.getByteOffset() < 0) {
+                throw new IllegalArgumentException("Cannot resume a JSON byte stream from a character offset checkpoint: " + resumeCheckpoint);
+            }
 
-                            if (typeStack.peek() == Type.ARRAY) {
+            byte[] context = resumeCheckpoint.getContext().getBytes(StandardCharsets.UTF_8);
+            PushbackInputStream resumeStream = new PushbackInputStream(byteStream, context.length + 1);
 
-                                endElement(arrayElementName);
+            skipFully(resumeStream, resumeCheckpoint.getByteOffset());
+            long separatorLength = skipRecordSeparator(resumeStream);
+            resumeStream.unread(context);
+            offsetBase = resumeCheckpoint.getByteOffset() + separatorLength - context.length;
 
-                            } else {
+            if (skipMalformedRecords) {
+                return createRecordSkippingParser(resumeStream, resumeCheckpoint.getRecordCount(), recordLimit, recordLocations);
+            }
+            return createByteStreamParser(resumeStream);
+        } else {
+            if (skipMalformedRecords && CHARACTER_STREAM_SKIPPING_WARNED.compareAndSet(false, true)) {
+                LOGGER.warn("Skipping malformed records is only supported for UTF-8 byte streams. A malformed record fails a JSON character stream. This warning is only logged once.");
+            }
+
+            // Get a reader for the JSON source...
+            Reader jsonStreamReader = characterStream;
+            if (jsonStreamReader == null) {
+                jsonStreamReader = new InputStreamReader(byteStream, encoding);
+            }
+            if (resumeCheckpoint == null) {
+                return getProfile().getJsonFactory().createParser(jsonStreamReader);
+            }
+            if (resumeCheckpoint.getCharOffset() < 0) {
+                throw new IllegalArgumentException("Cannot resume a JSON character stream from a byte offset checkpoint: " + resumeCheckpoint);
+            }
+
+            char[] context = resumeCheckpoint.getContext().toCharArray();
+            PushbackReader resumeReader = new PushbackReader(jsonStreamReader, context.length + 1);
+
+            skipFully(resumeReader, resumeCheckpoint.getCharOffset());
+            long separatorLength = skipRecordSeparator(resumeReader);
+            resumeReader.unread(context);
+            offsetBase = resumeCheckpoint.getCharOffset() + separatorLength - context.length;
+
+            return getProfile().getJsonFactory().createParser(resumeReader);
+        }
+    }
+
+    /**
+     * Create a parser that reads the buffers of the stream in place. When resuming from a checkpoint, the buffers are
+     * skipped to the checkpoint offset and the checkpoint context is fed in front of the remaining records.
+     */
+    private JsonParser createByteBufferParser(ByteBufferInputStream byteBufferStream, RecordCheckpoint resumeCheckpoint) throws IOException {
+        if (resumeCheckpoint == null) {
+            return ByteBufferJsonParser.create(getProfile().getJsonFactory(), byteBufferStream.takeRemainingBuffers());
+        }
+        if (resumeCheckpoint.getByteOffset() < 0) {
+            throw new IllegalArgumentException("Cannot resume a JSON byte stream from a character offset checkpoint: " + resumeCheckpoint);
+        }
+
+        byte[] context = resumeCheckpoint.getContext().getBytes(StandardCharsets.UTF_8);
 
-                                endElement(elementStack.pop());
+        skipFully(byteBufferStream, resumeCheckpoint.getByteOffset());
+        long separatorLength = skipRecordSeparator(byteBufferStream);
+        offsetBase = resumeCheckpoint.getByteOffset() + separatorLength - context.length;
+
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        if (context.length > 0) {
+            buffers.add(ByteBuffer.wrap(context));
+        }
+        buffers.addAll(byteBufferStream.takeRemainingBuffers());
+
+        return ByteBufferJsonParser.create(getProfile().getJsonFactory(), buffers);
+    }
+
+    /**
+     * Create a parser that skips the malformed records of the stream. The skipped records are reported to the
+     * {@link MalformedRecordListener} of the execution context, or logged when there is none.
+     */
+    private JsonParser createRecordSkippingParser(InputStream byteStream, long firstRecordIndex, long recordLimit, boolean recordLocations) {
+        MalformedRecordListener malformedRecordListener = executionContext.get(MALFORMED_RECORD_LISTENER_TYPED_KEY);
+
+        return new RecordSkippingJsonParser(getProfile().getJsonFactory(), byteStream, rootValueSequence, offsetBase, firstRecordIndex, recordLimit, recordLocations, malformedRecord -> {
+            skippedRecordCount++;
+            if (malformedRecordListener != null) {
+                malformedRecordListener.onMalformedRecord(malformedRecord);
+            } else {
+                LOGGER.warn("Skipped malformed JSON record: " + malformedRecord);
+            }
+        });
+    }
+
+    /**
+     * @return true if the source is a UTF-8 byte stream, which is read without decoding it to characters first
+     */
+    private boolean isUtf8ByteStream(InputSource inputSource) {
+        Charset byteStreamEncoding = (inputSource.getCharacterStream() != null ? Charset.forName(executionContext.getContentEncoding()) : encoding);
+        return inputSource.getByteStream() != null && StandardCharsets.UTF_8.equals(byteStreamEncoding);
+    }
+
+    /**
+     * Read up to <code>limit</code> bytes from the stream.
+     *
+     * @return the bytes read, fewer than <code>limit</code> only if the end of the stream was reached
+     */
+    private static byte[] readPrefix(InputStream inputStream, int limit) throws IOException {
+        byte[] buffer = new byte[Math.min(limit, 8 * 1024)];
+        int length = 0;
+        int count;
+        while (length < limit && (count = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += count;
+            if (length == buffer.length && length < limit) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(limit, buffer.length * 2L));
+            }
+        }
+        return (length == buffer.length ? buffer : Arrays.copyOf(buffer, length));
+    }
 
-                            }
+    private JsonParser createByteStreamParser(InputStream byteStream) throws IOException {
+        return getProfile().getJsonFactory().createParser(byteStream);
+    }
 
-                            break;
+    private void publishCheckpoint(JsonParser jp, long recordCount, RecordCheckpointListener checkpointListener) {
+        JsonLocation location = jp.currentLocation();
+        long byteOffset = location.getByteOffset();
+        long charOffset = location.getCharOffset();
 
+        checkpointListener.onCheckpoint(new RecordCheckpoint(recordCount + skippedRecordCount,
+                (byteOffset < 0 ? -1 : offsetBase + byteOffset),
+                (charOffset < 0 ? -1 : offsetBase + charOffset),
+                getRecordContext()));
+    }
 
-                    }
+    /**
+     * @return the JSON text that reopens the container of the records
+     */
+    private String getRecordContext() {
+        return (rootValueSequence ? ROOT_VALUE_SEQUENCE_CONTEXT : ROOT_ARRAY_CONTEXT);
+    }
 
-                    first = false;
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                if (inputStream.read() == -1) {
+                    throw new EOFException("JSON stream ended before checkpoint offset " + count + ".");
                 }
-                endElement(rootName, 0);
-                contentHandler.endDocument();
-            } finally {
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
 
-                try {
-                    jp.close();
-                } catch (Exception e) {
+    private static void skipFully(Reader reader, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = reader.skip(remaining);
+            if (skipped <= 0) {
+                if (reader.read() == -1) {
+                    throw new EOFException("JSON stream ended before checkpoint offset " + count + ".");
                 }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
 
+    /**
+     * Skip the whitespace and the comma that separate the last completed record from the next one.
+     *
+     * @return the number of skipped bytes
+     */
+    private static long skipRecordSeparator(PushbackInputStream inputStream) throws IOException {
+        long skipped = 0;
+        int c;
+        while ((c = inputStream.read()) != -1) {
+            if (c == ',') {
+                return skipped + 1;
+            } else if (!isJsonWhitespace(c)) {
+                inputStream.unread(c);
+                return skipped;
+            }
+            skipped++;
+        }
+        return skipped;
+    }
 
+    /**
+     * Skip the whitespace and the comma that separate the last completed record from the next one.
+     *
+     * @return the number of skipped bytes
+     */
+    private static long skipRecordSeparator(ByteBufferInputStream inputStream) {
+        long skipped = 0;
+        int c;
+        inputStream.mark(1);
+        while ((c = inputStream.read()) != -1) {
+            if (c == ',') {
+                return skipped + 1;
+            } else if (!isJsonWhitespace(c)) {
+                inputStream.reset();
+                return skipped;
             }
-        } finally {
-            // These properties need to be reset for every execution (e.g. when reader is pooled).
-            contentHandler = null;
-            executionContext = null;
+            skipped++;
+            inputStream.mark(1);
+        }
+        return skipped;
+    }
+
+    /**
+     * Skip the whitespace and the comma that separate the last completed record from the next one.
+     *
+     * @return the number of skipped characters
+     */
+    private static long skipRecordSeparator(PushbackReader reader) throws IOException {
+        long skipped = 0;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == ',') {
+                return skipped + 1;
+            } else if (!isJsonWhitespace(c)) {
+                reader.unread(c);
+                return skipped;
+            }
+            skipped++;
         }
+        return skipped;
+    }
+
+    private static boolean isJsonWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
     }
 
     private static char[] INDENT = "\n\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t".toCharArray();
 
     private void startElement(String name, int indent) throws SAXException {
+        startElement(name, indent, EMPTY_ATTRIBS);
+    }
+
+    private void startElement(String name, int indent, Attributes attributes) throws SAXException {
         indent(indent);
-        contentHandler.startElement(XMLConstants.NULL_NS_URI, name, "", EMPTY_ATTRIBS);
+        contentHandler.startElement(XMLConstants.NULL_NS_URI, name, "", attributes);
     }
 
     private void endElement(String name, int indent) throws SAXException {
@@ -408,62 +1409,102 @@ public class JSONReader implements SmooksXMLReader {
         contentHandler.endElement(XMLConstants.NULL_NS_URI, name, "");
     }
 
-    private void indent(int indentAmount) throws SAXException {
-        if (indent) {
-            if (indentAmount > 0) {
-                contentHandler.characters(INDENT, 0, indentAmount + 1);
-            } else {
-                contentHandler.characters(INDENT, 0, 1);
-            }
+    /**
+     * Start an element. The start is deferred when empty values are suppressed, until the element turns out to hold a
+     * value, or when requested, until the attributes of the element are known.
+     */
+    private void openElement(String name, int indent, boolean defer) throws SAXException {
+        if (!suppressEmptyValues && !defer) {
+            flushPendingElements();
+            startElement(name, indent);
+            return;
         }
+        if (pendingElementCount == pendingElementNames.length) {
+            pendingElementNames = Arrays.copyOf(pendingElementNames, pendingElementCount * 2);
+            pendingElementIndents = Arrays.copyOf(pendingElementIndents, pendingElementCount * 2);
+            pendingElementAttributes = Arrays.copyOf(pendingElementAttributes, pendingElementCount * 2);
+        }
+        if (pendingElementAttributes[pendingElementCount] == null) {
+            pendingElementAttributes[pendingElementCount] = new AttributesImpl();
+        } else {
+            pendingElementAttributes[pendingElementCount].clear();
+        }
+        pendingElementNames[pendingElementCount] = name;
+        pendingElementIndents[pendingElementCount] = indent;
+        pendingElementCount++;
     }
 
     /**
-     * @param text
-     * @return
+     * End the innermost element. A deferred element is empty, so it's dropped.
+     *
+     * @param indent The indentation before the end of the element, or -1 for none.
      */
-    private String getElementName(String text) {
-
-        boolean replacedKey = false;
-        if (doKeyReplacement) {
-
-            String mappedKey = keyMap.get(text);
-
-            replacedKey = mappedKey != null;
-            if (replacedKey) {
-                text = mappedKey;
-            }
+    private void closeElement(String name, int indent) throws SAXException {
+        if (pendingElementCount > 0) {
+            pendingElementCount--;
+        } else if (indent >= 0) {
+            endElement(name, indent);
+        } else {
+            endElement(name);
+        }
+    }
 
+    /**
+     * Start the deferred elements enclosing a value.
+     */
+    private void flushPendingElements() throws SAXException {
+        for (int i = 0; i < pendingElementCount; i++) {
+            startElement(pendingElementNames[i], pendingElementIndents[i], pendingElementAttributes[i]);
         }
+        pendingElementCount = 0;
+    }
 
-        if (!replacedKey) {
-            if (doKeyWhitspaceReplacement) {
-                text = text.replace(" ", keyWhitspaceReplacement.get());
-            }
+    /**
+     * Add a scalar field as attribute to the deferred element of the current object.
+     */
+    private void addAttribute(String name, char[] value, int offset, int length) {
+        String attributeValue = (valueCache != null ? valueCache.get(name, value, offset, length) : new String(value, offset, length));
+        pendingElementAttributes[pendingElementCount - 1].addAttribute(XMLConstants.NULL_NS_URI, name, name, "CDATA", attributeValue);
+    }
 
-            if (doPrefixOnNumericKey && Character.isDigit(text.charAt(0))) {
-                text = keyPrefixOnNumeric.get() + text;
-            }
+    /**
+     * Stop collecting attributes for the current object and start its element, unless it's an empty element that is
+     * suppressed.
+     */
+    private void endAttributes() throws SAXException {
+        if (attributeDepth == -1) {
+            return;
+        }
+        attributeDepth = -1;
+        if (!suppressEmptyValues || pendingElementAttributes[pendingElementCount - 1].getLength() > 0) {
+            flushPendingElements();
+        }
+    }
 
-            if (doIllegalElementNameCharReplacement) {
-                text = text.replaceAll("^[.]|[^a-zA-Z0-9_.-]", illegalElementNameCharReplacement.get());
+    private void indent(int indentAmount) throws SAXException {
+        if (indent) {
+            if (indentAmount > 0) {
+                contentHandler.characters(INDENT, 0, indentAmount + 1);
+            } else {
+                contentHandler.characters(INDENT, 0, 1);
             }
         }
-        return text;
     }
 
-
     /**
      *
      */
     private void initKeyMap() {
+        if (resourceConfig == null) {
+            return;
+        }
         Parameter<?> keyMapParam = resourceConfig.getParameter(CONFIG_PARAM_KEY_MAP, Object.class);
 
         if (keyMapParam != null) {
             Object objValue = keyMapParam.getValue();
 
             if (objValue instanceof Map) {
-                keyMap = (HashMap<String, String>) objValue;
+                keyMap = new HashMap<String, String>((Map<String, String>) objValue);
             } else {
                 Element keyMapParamElement = keyMapParam.getXml();
 
@@ -488,17 +1529,24 @@ public class JSONReader implements SmooksXMLReader {
 
 
     /**
-     * @return the keyMap
+     * The key map is compiled into the reader {@link JSONReaderProfile}, so changing the returned map has no effect on
+     * the reader. Pass the changed map to {@link #setKeyMap(HashMap)} instead.
+     *
+     * @return a copy of the keyMap
      */
     public HashMap<String, String> getKeyMap() {
-        return keyMap;
+        if (keyMap == null) {
+            return new HashMap<String, String>(getProfile().getKeyMap());
+        }
+        return new HashMap<String, String>(keyMap);
     }
 
     /**
-     * @param keyMap the keyMap to set
+     * @param keyMap the keyMap to set. The map is copied when the reader profile is compiled.
      */
     public void setKeyMap(HashMap<String, String> keyMap) {
         this.keyMap = keyMap;
+        profile = null;
     }
 
 
@@ -515,6 +1563,7 @@ public class JSONReader implements SmooksXMLReader {
      */
     public void setRootName(String rootName) {
         this.rootName = rootName;
+        profile = null;
     }
 
 
@@ -531,6 +1580,7 @@ public class JSONReader implements SmooksXMLReader {
      */
     public void setArrayElementName(String arrayElementName) {
         this.arrayElementName = arrayElementName;
+        profile = null;
     }
 
 
@@ -547,6 +1597,7 @@ public class JSONReader implements SmooksXMLReader {
      */
     public void setKeyWhitspaceReplacement(String keyWhitspaceReplacement) {
         this.keyWhitspaceReplacement = Optional.ofNullable(keyWhitspaceReplacement);
+        profile = null;
     }
 
 
@@ -563,6 +1614,7 @@ public class JSONReader implements SmooksXMLReader {
      */
     public void setKeyPrefixOnNumeric(String keyPrefixOnNumeric) {
         this.keyPrefixOnNumeric = Optional.ofNullable(keyPrefixOnNumeric);
+        profile = null;
     }
 
 
@@ -580,6 +1632,7 @@ public class JSONReader implements SmooksXMLReader {
     public void setIllegalElementNameCharReplacement(
             String illegalElementNameCharReplacement) {
         this.illegalElementNameCharReplacement = Optional.ofNullable(illegalElementNameCharReplacement);
+        profile = null;
     }
 
 
@@ -596,6 +1649,7 @@ public class JSONReader implements SmooksXMLReader {
      */
     public void setNullValueReplacement(String nullValueReplacement) {
         this.nullValueReplacement = nullValueReplacement;
+        profile = null;
     }
 
 
@@ -612,10 +1666,348 @@ public class JSONReader implements SmooksXMLReader {
      */
     public void setEncoding(Charset encoding) {
         this.encoding = encoding;
+        profile = null;
     }
 
     public void setIndent(boolean indent) {
         this.indent = indent;
+        profile = null;
+    }
+
+    /**
+     * @return true if the JSON stream is tokenized on a separate thread
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * @param pipelined true to tokenize the JSON stream on a separate thread
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * @return the number of JSON tokens handed from the parsing thread to the filtering thread at a time
+     */
+    public int getPipelineBatchSize() {
+        return pipelineBatchSize;
+    }
+
+    /**
+     * @param pipelineBatchSize the number of JSON tokens handed from the parsing thread to the filtering thread at a time
+     */
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        this.pipelineBatchSize = pipelineBatchSize;
+    }
+
+    /**
+     * @return the size in bytes of the event tape cache, 0 if the cache is disabled
+     */
+    public long getEventTapeCacheSize() {
+        return eventTapeCacheSize;
+    }
+
+    /**
+     * @param eventTapeCacheSize the size in bytes of the event tape cache, 0 to disable the cache
+     */
+    public void setEventTapeCacheSize(long eventTapeCacheSize) {
+        this.eventTapeCacheSize = eventTapeCacheSize;
+        profile = null;
+    }
+
+    /**
+     * @return the size in bytes of the biggest document that is cached
+     */
+    public int getEventTapeCacheMaxDocumentSize() {
+        return eventTapeCacheMaxDocumentSize;
+    }
+
+    /**
+     * @param eventTapeCacheMaxDocumentSize the size in bytes of the biggest document that is cached
+     */
+    public void setEventTapeCacheMaxDocumentSize(int eventTapeCacheMaxDocumentSize) {
+        this.eventTapeCacheMaxDocumentSize = eventTapeCacheMaxDocumentSize;
+    }
+
+    /**
+     * @return true if JSON null values, empty objects and empty arrays are dropped
+     */
+    public boolean isSuppressEmptyValues() {
+        return suppressEmptyValues;
+    }
+
+    /**
+     * @param suppressEmptyValues true to drop JSON null values, empty objects and empty arrays
+     */
+    public void setSuppressEmptyValues(boolean suppressEmptyValues) {
+        this.suppressEmptyValues = suppressEmptyValues;
+        profile = null;
+    }
+
+    /**
+     * @return the delimiter of the values of collapsed scalar arrays, or null if arrays aren't collapsed
+     */
+    public String getScalarArrayDelimiter() {
+        return scalarArrayDelimiter.orElse(null);
+    }
+
+    /**
+     * @param scalarArrayDelimiter the delimiter of the values of collapsed scalar arrays, or null to not collapse arrays
+     */
+    public void setScalarArrayDelimiter(String scalarArrayDelimiter) {
+        this.scalarArrayDelimiter = Optional.ofNullable(scalarArrayDelimiter);
+        profile = null;
+    }
+
+    /**
+     * @return true if the leading scalar fields of objects are mapped to attributes
+     */
+    public boolean isScalarFieldsAsAttributes() {
+        return scalarFieldsAsAttributes;
+    }
+
+    /**
+     * @param scalarFieldsAsAttributes true to map the leading scalar fields of objects to attributes
+     */
+    public void setScalarFieldsAsAttributes(boolean scalarFieldsAsAttributes) {
+        this.scalarFieldsAsAttributes = scalarFieldsAsAttributes;
+        profile = null;
+    }
+
+    /**
+     * @return the comma separated paths of the objects and arrays that are passed through as raw JSON, or null
+     */
+    public String getRawJsonPaths() {
+        return rawJsonPaths.orElse(null);
+    }
+
+    /**
+     * @param rawJsonPaths the comma separated paths of the objects and arrays that are passed through as raw JSON,
+     *                     or null for none
+     */
+    public void setRawJsonPaths(String rawJsonPaths) {
+        this.rawJsonPaths = Optional.ofNullable(rawJsonPaths);
+        profile = null;
+    }
+
+    /**
+     * @return the depth below which objects and arrays are passed through as raw JSON, -1 if disabled
+     */
+    public int getRawJsonDepth() {
+        return rawJsonDepth;
+    }
+
+    /**
+     * @param rawJsonDepth the depth below which objects and arrays are passed through as raw JSON, -1 to disable
+     */
+    public void setRawJsonDepth(int rawJsonDepth) {
+        this.rawJsonDepth = rawJsonDepth;
+        profile = null;
+    }
+
+    /**
+     * @return true if the stream is read as a sequence of root JSON values
+     */
+    public boolean isRootValueSequence() {
+        return rootValueSequence;
+    }
+
+    /**
+     * @param rootValueSequence read the stream as a sequence of root JSON values, each of which becomes a record of an
+     *                          implicit root array
+     */
+    public void setRootValueSequence(boolean rootValueSequence) {
+        this.rootValueSequence = rootValueSequence;
+        profile = null;
+    }
+
+    /**
+     * @return true if malformed top-level records are skipped
+     */
+    public boolean isSkipMalformedRecords() {
+        return skipMalformedRecords;
+    }
+
+    /**
+     * @param skipMalformedRecords skip the malformed top-level records of UTF-8 byte streams, reporting them to the
+     *                             {@link MalformedRecordListener} of the execution context
+     */
+    public void setSkipMalformedRecords(boolean skipMalformedRecords) {
+        this.skipMalformedRecords = skipMalformedRecords;
+        profile = null;
+    }
+
+    /**
+     * @return the maximum length in bytes (or characters) of a JSON document, 0 or less for no limit
+     */
+    public long getMaxDocumentLength() {
+        return maxDocumentLength;
+    }
+
+    /**
+     * @param maxDocumentLength the maximum length in bytes (characters for character streams) of a JSON document, 0 or
+     *                          less for no limit
+     */
+    public void setMaxDocumentLength(long maxDocumentLength) {
+        this.maxDocumentLength = maxDocumentLength;
+        profile = null;
+    }
+
+    /**
+     * @return the maximum length in characters of a JSON string value
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * @param maxStringLength the maximum length in characters of a JSON string value
+     */
+    public void setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = maxStringLength;
+        profile = null;
+    }
+
+    /**
+     * @return the maximum length in characters of a JSON number value
+     */
+    public int getMaxNumberLength() {
+        return maxNumberLength;
+    }
+
+    /**
+     * @param maxNumberLength the maximum length in characters of a JSON number value
+     */
+    public void setMaxNumberLength(int maxNumberLength) {
+        this.maxNumberLength = maxNumberLength;
+        profile = null;
+    }
+
+    /**
+     * @return the maximum nesting depth of JSON objects and arrays
+     */
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    /**
+     * @param maxNestingDepth the maximum nesting depth of JSON objects and arrays
+     */
+    public void setMaxNestingDepth(int maxNestingDepth) {
+        this.maxNestingDepth = maxNestingDepth;
+        profile = null;
+    }
+
+    /**
+     * @return the maximum length in characters of a JSON field name
+     */
+    public int getMaxNameLength() {
+        return maxNameLength;
+    }
+
+    /**
+     * @param maxNameLength the maximum length in characters of a JSON field name
+     */
+    public void setMaxNameLength(int maxNameLength) {
+        this.maxNameLength = maxNameLength;
+        profile = null;
+    }
+
+    /**
+     * @return the maximum number of top-level records that are converted, -1 for no limit
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit the maximum number of top-level records that are converted, -1 for no limit. Reading stops after
+     *              the last of them.
+     */
+    public void setLimit(long limit) {
+        this.limit = limit;
+        profile = null;
+    }
+
+    /**
+     * @return the fraction of the top-level records that are converted
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate the fraction of the top-level records that are converted, e.g. 0.01 for every 100th record.
+     *                   The other records are skipped without producing SAX events.
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+        profile = null;
+    }
+
+    /**
+     * @return the location of the JSON Schema that the JSON stream is validated against, or null for no validation
+     */
+    public String getSchema() {
+        return schema.orElse(null);
+    }
+
+    /**
+     * @param schema the location of the JSON Schema that the JSON stream is validated against while it is parsed, or
+     *               null for no validation
+     */
+    public void setSchema(String schema) {
+        this.schema = Optional.ofNullable(schema);
+        profile = null;
+    }
+
+    /**
+     * @return the number of slots of the value cache, 0 if the cache is disabled
+     */
+    public int getValueCacheSize() {
+        return valueCacheSize;
+    }
+
+    /**
+     * @param valueCacheSize the number of slots of the value cache, 0 to disable the cache. Requires
+     *                       {@link #setScalarFieldsAsAttributes(boolean) scalar fields as attributes}.
+     */
+    public void setValueCacheSize(int valueCacheSize) {
+        this.valueCacheSize = valueCacheSize;
+        profile = null;
+    }
+
+    /**
+     * @return the length in characters of the longest value that is cached
+     */
+    public int getValueCacheMaxValueLength() {
+        return valueCacheMaxValueLength;
+    }
+
+    /**
+     * @param valueCacheMaxValueLength the length in characters of the longest value that is cached
+     */
+    public void setValueCacheMaxValueLength(int valueCacheMaxValueLength) {
+        this.valueCacheMaxValueLength = valueCacheMaxValueLength;
+        profile = null;
+    }
+
+    /**
+     * @return the number of cache misses of a field after which its values are no longer cached, 0 for no cap
+     */
+    public int getValueCacheMaxFieldCardinality() {
+        return valueCacheMaxFieldCardinality;
+    }
+
+    /**
+     * @param valueCacheMaxFieldCardinality the number of cache misses of a field after which its values are no longer
+     *                                      cached, 0 for no cap
+     */
+    public void setValueCacheMaxFieldCardinality(int valueCacheMaxFieldCardinality) {
+        this.valueCacheMaxFieldCardinality = valueCacheMaxFieldCardinality;
+        profile = null;
     }
 
     /****************************************************************************
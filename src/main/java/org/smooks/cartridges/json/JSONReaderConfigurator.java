@@ -42,6 +42,7 @@
  */
 package org.smooks.cartridges.json;
 
+import com.fasterxml.jackson.core.StreamReadConstraints;
 import org.smooks.api.resource.config.Parameter;
 import org.smooks.api.resource.config.ReaderConfigurator;
 import org.smooks.api.resource.config.ResourceConfig;
@@ -70,6 +71,28 @@ public class JSONReaderConfigurator implements ReaderConfigurator {
     private String nullValueReplacement = JSONReader.DEFAULT_NULL_VALUE_REPLACEMENT;
     private Charset encoding = Charset.forName("UTF-8");
     private Map<String, String> keyMap;
+    private boolean pipelined;
+    private int pipelineBatchSize = JSONReader.DEFAULT_PIPELINE_BATCH_SIZE;
+    private long eventTapeCacheSize;
+    private int eventTapeCacheMaxDocumentSize = JSONReader.DEFAULT_EVENT_TAPE_CACHE_MAX_DOCUMENT_SIZE;
+    private boolean suppressEmptyValues;
+    private String scalarArrayDelimiter;
+    private boolean scalarFieldsAsAttributes;
+    private String rawJsonPaths;
+    private int rawJsonDepth = -1;
+    private boolean rootValueSequence;
+    private boolean skipMalformedRecords;
+    private long maxDocumentLength = StreamReadConstraints.DEFAULT_MAX_DOC_LEN;
+    private int maxStringLength = StreamReadConstraints.DEFAULT_MAX_STRING_LEN;
+    private int maxNumberLength = StreamReadConstraints.DEFAULT_MAX_NUM_LEN;
+    private int maxNestingDepth = StreamReadConstraints.DEFAULT_MAX_DEPTH;
+    private int maxNameLength = StreamReadConstraints.DEFAULT_MAX_NAME_LEN;
+    private long limit = -1;
+    private double sampleRate = 1.0;
+    private String schema;
+    private int valueCacheSize;
+    private int valueCacheMaxValueLength = JSONReader.DEFAULT_VALUE_CACHE_MAX_VALUE_LENGTH;
+    private int valueCacheMaxFieldCardinality = JSONReader.DEFAULT_VALUE_CACHE_MAX_FIELD_CARDINALITY;
     private String targetProfile;
 
     public JSONReaderConfigurator setRootName(String rootName) {
@@ -120,12 +143,180 @@ public class JSONReaderConfigurator implements ReaderConfigurator {
         return this;
     }
 
+    public JSONReaderConfigurator setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+        return this;
+    }
+
+    public JSONReaderConfigurator setPipelineBatchSize(int pipelineBatchSize) {
+        if (pipelineBatchSize < 1) {
+            throw new IllegalArgumentException("'pipelineBatchSize' must be at least 1.");
+        }
+        this.pipelineBatchSize = pipelineBatchSize;
+        return this;
+    }
+
+    public JSONReaderConfigurator setEventTapeCacheSize(long eventTapeCacheSize) {
+        if (eventTapeCacheSize < 0) {
+            throw new IllegalArgumentException("'eventTapeCacheSize' must not be negative.");
+        }
+        this.eventTapeCacheSize = eventTapeCacheSize;
+        return this;
+    }
+
+    public JSONReaderConfigurator setEventTapeCacheMaxDocumentSize(int eventTapeCacheMaxDocumentSize) {
+        if (eventTapeCacheMaxDocumentSize < 0) {
+            throw new IllegalArgumentException("'eventTapeCacheMaxDocumentSize' must not be negative.");
+        }
+        this.eventTapeCacheMaxDocumentSize = eventTapeCacheMaxDocumentSize;
+        return this;
+    }
+
+    public JSONReaderConfigurator setSuppressEmptyValues(boolean suppressEmptyValues) {
+        this.suppressEmptyValues = suppressEmptyValues;
+        return this;
+    }
+
+    public JSONReaderConfigurator setScalarArrayDelimiter(String scalarArrayDelimiter) {
+        AssertArgument.isNotNull(scalarArrayDelimiter, "scalarArrayDelimiter");
+        this.scalarArrayDelimiter = scalarArrayDelimiter;
+        return this;
+    }
+
+    public JSONReaderConfigurator setScalarFieldsAsAttributes(boolean scalarFieldsAsAttributes) {
+        this.scalarFieldsAsAttributes = scalarFieldsAsAttributes;
+        return this;
+    }
+
+    public JSONReaderConfigurator setRawJsonPaths(String rawJsonPaths) {
+        AssertArgument.isNotNullAndNotEmpty(rawJsonPaths, "rawJsonPaths");
+        this.rawJsonPaths = rawJsonPaths;
+        return this;
+    }
+
+    public JSONReaderConfigurator setRawJsonDepth(int rawJsonDepth) {
+        if (rawJsonDepth < -1) {
+            throw new IllegalArgumentException("'rawJsonDepth' must be -1 (disabled) or more.");
+        }
+        this.rawJsonDepth = rawJsonDepth;
+        return this;
+    }
+
+    public JSONReaderConfigurator setRootValueSequence(boolean rootValueSequence) {
+        this.rootValueSequence = rootValueSequence;
+        return this;
+    }
+
+    public JSONReaderConfigurator setSkipMalformedRecords(boolean skipMalformedRecords) {
+        this.skipMalformedRecords = skipMalformedRecords;
+        return this;
+    }
+
+    public JSONReaderConfigurator setMaxDocumentLength(long maxDocumentLength) {
+        this.maxDocumentLength = maxDocumentLength;
+        return this;
+    }
+
+    public JSONReaderConfigurator setMaxStringLength(int maxStringLength) {
+        if (maxStringLength < 0) {
+            throw new IllegalArgumentException("'maxStringLength' must not be negative.");
+        }
+        this.maxStringLength = maxStringLength;
+        return this;
+    }
+
+    public JSONReaderConfigurator setMaxNumberLength(int maxNumberLength) {
+        if (maxNumberLength < 0) {
+            throw new IllegalArgumentException("'maxNumberLength' must not be negative.");
+        }
+        this.maxNumberLength = maxNumberLength;
+        return this;
+    }
+
+    public JSONReaderConfigurator setMaxNestingDepth(int maxNestingDepth) {
+        if (maxNestingDepth < 0) {
+            throw new IllegalArgumentException("'maxNestingDepth' must not be negative.");
+        }
+        this.maxNestingDepth = maxNestingDepth;
+        return this;
+    }
+
+    public JSONReaderConfigurator setMaxNameLength(int maxNameLength) {
+        if (maxNameLength < 0) {
+            throw new IllegalArgumentException("'maxNameLength' must not be negative.");
+        }
+        this.maxNameLength = maxNameLength;
+        return this;
+    }
+
+    public JSONReaderConfigurator setLimit(long limit) {
+        if (limit < -1) {
+            throw new IllegalArgumentException("'limit' must be -1 (no limit) or more.");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public JSONReaderConfigurator setSampleRate(double sampleRate) {
+        if (!(sampleRate > 0.0 && sampleRate <= 1.0)) {
+            throw new IllegalArgumentException("'sampleRate' must be more than 0 and at most 1.");
+        }
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public JSONReaderConfigurator setSchema(String schema) {
+        AssertArgument.isNotNullAndNotEmpty(schema, "schema");
+        this.schema = schema;
+        return this;
+    }
+
+    public JSONReaderConfigurator setValueCacheSize(int valueCacheSize) {
+        if (valueCacheSize < 0 || valueCacheSize > (1 << 30)) {
+            throw new IllegalArgumentException("'valueCacheSize' must be between 0 and 2^30.");
+        }
+        this.valueCacheSize = valueCacheSize;
+        return this;
+    }
+
+    public JSONReaderConfigurator setValueCacheMaxValueLength(int valueCacheMaxValueLength) {
+        if (valueCacheMaxValueLength < 0) {
+            throw new IllegalArgumentException("'valueCacheMaxValueLength' must not be negative.");
+        }
+        this.valueCacheMaxValueLength = valueCacheMaxValueLength;
+        return this;
+    }
+
+    public JSONReaderConfigurator setValueCacheMaxFieldCardinality(int valueCacheMaxFieldCardinality) {
+        if (valueCacheMaxFieldCardinality < 0) {
+            throw new IllegalArgumentException("'valueCacheMaxFieldCardinality' must not be negative.");
+        }
+        this.valueCacheMaxFieldCardinality = valueCacheMaxFieldCardinality;
+        return this;
+    }
+
     public JSONReaderConfigurator setTargetProfile(String targetProfile) {
         AssertArgument.isNotNullAndNotEmpty(targetProfile, "targetProfile");
         this.targetProfile = targetProfile;
         return this;
     }
 
+    /**
+     * Create a {@link JSONTransformer} that streams JSON to JSON with the key naming rules (including the key map),
+     * the array element name, the encoding, the empty value suppression, the null value replacement, the root value
+     * sequence setting and the input limits of this configuration. The default null value replacement (an empty
+     * string) keeps nulls as JSON null.
+     * <p/>
+     * The options that only shape SAX events or select records are ignored by the transformer: the root name, the
+     * indentation, the scalar array delimiter, scalar fields as attributes, the raw JSON paths and depth, malformed
+     * record skipping, the limit and sample rate, the schema, pipelining and the event tape and value caches.
+     */
+    public JSONTransformer toTransformer() {
+        JSONReaderProfile profile = new JSONReaderProfile(keyMap, keyWhitspaceReplacement, keyPrefixOnNumeric, illegalElementNameCharReplacement, 0, createStreamReadConstraints(), null, null);
+        return new JSONTransformer(profile, arrayElementName, encoding, suppressEmptyValues, rootValueSequence,
+                (nullValueReplacement.isEmpty() ? null : nullValueReplacement));
+    }
+
     public List<ResourceConfig> toConfig() {
         GenericReaderConfigurator configurator = new GenericReaderConfigurator(JSONReader.class);
 
@@ -142,6 +333,34 @@ public class JSONReaderConfigurator implements ReaderConfigurator {
         }
         configurator.getParameters().setProperty("nullValueReplacement", nullValueReplacement);
         configurator.getParameters().setProperty("encoding", encoding.name());
+        configurator.getParameters().setProperty("pipelined", Boolean.toString(pipelined));
+        configurator.getParameters().setProperty("pipelineBatchSize", Integer.toString(pipelineBatchSize));
+        configurator.getParameters().setProperty("eventTapeCacheSize", Long.toString(eventTapeCacheSize));
+        configurator.getParameters().setProperty("eventTapeCacheMaxDocumentSize", Integer.toString(eventTapeCacheMaxDocumentSize));
+        configurator.getParameters().setProperty("suppressEmptyValues", Boolean.toString(suppressEmptyValues));
+        if (scalarArrayDelimiter != null) {
+            configurator.getParameters().setProperty("scalarArrayDelimiter", scalarArrayDelimiter);
+        }
+        configurator.getParameters().setProperty("scalarFieldsAsAttributes", Boolean.toString(scalarFieldsAsAttributes));
+        if (rawJsonPaths != null) {
+            configurator.getParameters().setProperty("rawJsonPaths", rawJsonPaths);
+        }
+        configurator.getParameters().setProperty("rawJsonDepth", Integer.toString(rawJsonDepth));
+        configurator.getParameters().setProperty("rootValueSequence", Boolean.toString(rootValueSequence));
+        configurator.getParameters().setProperty("skipMalformedRecords", Boolean.toString(skipMalformedRecords));
+        configurator.getParameters().setProperty("maxDocumentLength", Long.toString(maxDocumentLength));
+        configurator.getParameters().setProperty("maxStringLength", Integer.toString(maxStringLength));
+        configurator.getParameters().setProperty("maxNumberLength", Integer.toString(maxNumberLength));
+        configurator.getParameters().setProperty("maxNestingDepth", Integer.toString(maxNestingDepth));
+        configurator.getParameters().setProperty("maxNameLength", Integer.toString(maxNameLength));
+        configurator.getParameters().setProperty("limit", Long.toString(limit));
+        configurator.getParameters().setProperty("sampleRate", Double.toString(sampleRate));
+        if (schema != null) {
+            configurator.getParameters().setProperty("schema", schema);
+        }
+        configurator.getParameters().setProperty("valueCacheSize", Integer.toString(valueCacheSize));
+        configurator.getParameters().setProperty("valueCacheMaxValueLength", Integer.toString(valueCacheMaxValueLength));
+        configurator.getParameters().setProperty("valueCacheMaxFieldCardinality", Integer.toString(valueCacheMaxFieldCardinality));
 
         List<ResourceConfig> configList = configurator.toConfig();
         ResourceConfig resourceConfig = configList.get(0);
@@ -151,8 +370,18 @@ public class JSONReaderConfigurator implements ReaderConfigurator {
             resourceConfig.setParameter(keyMapParam);
         }
 
+        // Compile the reader profile up front, so that the readers share it instead of each compiling their own...
+        JSONReaderProfile profile = new JSONReaderProfile(keyMap, keyWhitspaceReplacement, keyPrefixOnNumeric, illegalElementNameCharReplacement, eventTapeCacheSize, createStreamReadConstraints(),
+                (schema != null ? JSONReader.loadSchema(schema) : null),
+                (valueCacheSize > 0 ? new JSONValueCache(valueCacheSize, valueCacheMaxValueLength, valueCacheMaxFieldCardinality) : null));
+        resourceConfig.setParameter(new DefaultParameter<>(JSONReader.CONFIG_PARAM_PROFILE, profile));
+
         resourceConfig.setProfile(targetProfile);
 
         return configList;
     }
+
+    private StreamReadConstraints createStreamReadConstraints() {
+        return JSONReaderProfile.createStreamReadConstraints(maxDocumentLength, maxStringLength, maxNumberLength, maxNestingDepth, maxNameLength);
+    }
 }
@@ -0,0 +1,349 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.io.IOException;
+
+/**
+ * Java Flight Recorder events of the {@link JSONReader}:
+ * <ul>
+ *     <li><code>org.smooks.json.Parse</code>: a parse, with the encoding, the bytes (or characters), tokens and
+ *     records read, and the maximum nesting depth. Disabled by default.</li>
+ *     <li><code>org.smooks.json.SlowParse</code>: the same fields, for the parses that take longer than the threshold
+ *     of the event, 1 second by default. Enabled by default, so that continuous recordings catch slow parses without
+ *     recording every parse.</li>
+ *     <li><code>org.smooks.json.Record</code>: a completed top-level record, with its index and end offset, timed
+ *     from the end of the previous record. Disabled by default.</li>
+ * </ul>
+ * The events are enabled and given thresholds like the JDK events, e.g. in a <code>.jfc</code> settings file.
+ * <p/>
+ * The <code>jdk.jfr</code> module is optional. This class doesn't refer to it: the events are in the nested
+ * {@link FlightRecorderEvents} class, which is only loaded when <code>jdk.jfr</code> is available. When no recording
+ * has been started, or the events are disabled, {@link #begin(String)} returns null and a parse costs a couple of
+ * static checks.
+ */
+abstract class JSONReaderEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    /**
+     * Start the events of a parse.
+     *
+     * @param encoding The encoding of the JSON byte stream, or null for a character stream.
+     * @return the events of the parse, or null if JFR isn't available or the events are disabled
+     */
+    static JSONReaderEvents begin(String encoding) {
+        return (AVAILABLE ? FlightRecorderEvents.begin(encoding) : null);
+    }
+
+    /**
+     * @return the parser to read the tokens from, which counts the tokens and the nesting depth
+     */
+    abstract JsonParser wrap(JsonParser parser);
+
+    /**
+     * @return the checkpoint listener that records the top-level records, chained to <code>next</code>, or
+     * <code>next</code> itself if the record events are disabled
+     */
+    abstract RecordCheckpointListener wrap(RecordCheckpointListener next);
+
+    /**
+     * End and commit the events of the parse.
+     *
+     * @param recordCount The number of records completed by the parse.
+     * @param cached      The SAX events were replayed from the event tape cache.
+     * @param failed      The parse failed.
+     */
+    abstract void end(long recordCount, boolean cached, boolean failed);
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, JSONReaderEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * The events, in a holder class that is only loaded when <code>jdk.jfr</code> is available.
+     */
+    private static final class FlightRecorderEvents extends JSONReaderEvents {
+
+        private final ParseEvent parseEvent;
+        private final SlowParseEvent slowParseEvent;
+        private final boolean recordEventEnabled;
+        private final String encoding;
+        private CountingJsonParser countingParser;
+
+        private FlightRecorderEvents(ParseEvent parseEvent, SlowParseEvent slowParseEvent, boolean recordEventEnabled, String encoding) {
+            this.parseEvent = parseEvent;
+            this.slowParseEvent = slowParseEvent;
+            this.recordEventEnabled = recordEventEnabled;
+            this.encoding = encoding;
+        }
+
+        static JSONReaderEvents begin(String encoding) {
+            if (!FlightRecorder.isInitialized()) {
+                return null;
+            }
+            ParseEvent parseEvent = new ParseEvent();
+            SlowParseEvent slowParseEvent = new SlowParseEvent();
+            boolean recordEventEnabled = new RecordEvent().isEnabled();
+            if (!parseEvent.isEnabled() && !slowParseEvent.isEnabled() && !recordEventEnabled) {
+                return null;
+            }
+            parseEvent.begin();
+            slowParseEvent.begin();
+            return new FlightRecorderEvents(parseEvent, slowParseEvent, recordEventEnabled, encoding);
+        }
+
+        @Override
+        JsonParser wrap(JsonParser parser) {
+            if (!parseEvent.isEnabled() && !slowParseEvent.isEnabled()) {
+                return parser;
+            }
+            countingParser = new CountingJsonParser(parser);
+            return countingParser;
+        }
+
+        @Override
+        RecordCheckpointListener wrap(RecordCheckpointListener next) {
+            if (!recordEventEnabled) {
+                return next;
+            }
+            return new RecordEventListener(next);
+        }
+
+        @Override
+        void end(long recordCount, boolean cached, boolean failed) {
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                set(parseEvent, recordCount, cached, failed);
+                parseEvent.commit();
+            }
+            slowParseEvent.end();
+            if (slowParseEvent.shouldCommit()) {
+                set(slowParseEvent, recordCount, cached, failed);
+                slowParseEvent.commit();
+            }
+        }
+
+        private void set(AbstractParseEvent event, long recordCount, boolean cached, boolean failed) {
+            event.encoding = encoding;
+            event.recordCount = recordCount;
+            event.cached = cached;
+            event.failed = failed;
+            if (countingParser != null) {
+                event.tokenCount = countingParser.tokenCount;
+                event.maxDepth = countingParser.maxDepth;
+                JsonLocation location = countingParser.currentLocation();
+                event.bytes = location.getByteOffset();
+                event.characters = location.getCharOffset();
+            } else {
+                event.bytes = -1;
+                event.characters = -1;
+            }
+        }
+    }
+
+    /**
+     * Commits a record event for each checkpoint, timed from the previous checkpoint.
+     */
+    private static final class RecordEventListener implements RecordCheckpointListener {
+
+        private final RecordCheckpointListener next;
+        private RecordEvent recordEvent = new RecordEvent();
+
+        private RecordEventListener(RecordCheckpointListener next) {
+            this.next = next;
+            recordEvent.begin();
+        }
+
+        @Override
+        public void onCheckpoint(RecordCheckpoint checkpoint) {
+            recordEvent.end();
+            if (recordEvent.shouldCommit()) {
+                recordEvent.recordIndex = checkpoint.getRecordCount() - 1;
+                recordEvent.endOffset = (checkpoint.getByteOffset() >= 0 ? checkpoint.getByteOffset() : checkpoint.getCharOffset());
+                recordEvent.commit();
+            }
+            recordEvent = new RecordEvent();
+            recordEvent.begin();
+
+            if (next != null) {
+                next.onCheckpoint(checkpoint);
+            }
+        }
+    }
+
+    @Category({"Smooks", "JSON"})
+    @StackTrace(false)
+    abstract static class AbstractParseEvent extends Event {
+
+        @Label("Encoding")
+        @Description("The encoding of the JSON byte stream, null for a character stream")
+        String encoding;
+
+        @Label("Bytes")
+        @Description("The bytes read by the parser, -1 for a character stream")
+        @DataAmount(DataAmount.BYTES)
+        long bytes;
+
+        @Label("Characters")
+        @Description("The characters read by the parser, -1 for a byte stream")
+        long characters;
+
+        @Label("Tokens")
+        @Description("The JSON tokens read by the parser, not counting the tokens of skipped values")
+        long tokenCount;
+
+        @Label("Records")
+        @Description("The top-level records completed by the parse")
+        long recordCount;
+
+        @Label("Max Depth")
+        @Description("The maximum nesting depth of objects and arrays")
+        int maxDepth;
+
+        @Label("Cached")
+        @Description("The SAX events were replayed from the event tape cache instead of being parsed")
+        boolean cached;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("org.smooks.json.Parse")
+    @Label("JSON Parse")
+    @Description("A JSONReader parse")
+    @Enabled(false)
+    static final class ParseEvent extends AbstractParseEvent {
+    }
+
+    @Name("org.smooks.json.SlowParse")
+    @Label("Slow JSON Parse")
+    @Description("A JSONReader parse that took longer than the threshold")
+    @Threshold("1 s")
+    static final class SlowParseEvent extends AbstractParseEvent {
+    }
+
+    @Name("org.smooks.json.Record")
+    @Label("JSON Record")
+    @Description("A top-level JSON record, timed from the end of the previous record")
+    @Category({"Smooks", "JSON"})
+    @StackTrace(false)
+    @Enabled(false)
+    static final class RecordEvent extends Event {
+
+        @Label("Record Index")
+        long recordIndex;
+
+        @Label("End Offset")
+        @Description("The byte (or character) offset directly after the record")
+        long endOffset;
+    }
+
+    /**
+     * Counts the tokens of a parser and tracks the maximum nesting depth.
+     */
+    private static final class CountingJsonParser extends JsonParserDelegate {
+
+        private long tokenCount;
+        private int depth;
+        private int maxDepth;
+
+        CountingJsonParser(JsonParser parser) {
+            super(parser);
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            JsonToken token = delegate.nextToken();
+            if (token != null) {
+                tokenCount++;
+                if (token.isStructStart()) {
+                    if (++depth > maxDepth) {
+                        maxDepth = depth;
+                    }
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+            }
+            return token;
+        }
+
+        @Override
+        public JsonToken nextValue() throws IOException {
+            JsonToken token = nextToken();
+            if (token == JsonToken.FIELD_NAME) {
+                token = nextToken();
+            }
+            return token;
+        }
+
+        @Override
+        public JsonParser skipChildren() throws IOException {
+            if (delegate.currentToken() != null && delegate.currentToken().isStructStart()) {
+                delegate.skipChildren();
+                depth--;
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled, immutable configuration of a {@link JSONReader}: the element naming rules with the key map, the input
+ * limits, the JSON Schema, and the parser factory and caches (element names, event tapes and values) that are shared by
+ * all the readers of a reader configuration.
+ * <p/>
+ * A profile is compiled once per reader {@link org.smooks.api.resource.config.ResourceConfig} and stored on it under
+ * {@link JSONReader#CONFIG_PARAM_PROFILE}: eagerly by {@link JSONReaderConfigurator#toConfig()}, or by the first
+ * reader that is initialized for an XML configuration. The profile is thread-safe.
+ */
+public final class JSONReaderProfile {
+
+    static final int MAX_ELEMENT_NAME_CACHE_SIZE = 4096;
+
+    private static final Pattern ILLEGAL_ELEMENT_NAME_CHARS = Pattern.compile("^[.]|[^a-zA-Z0-9_.-]");
+
+    private final Map<String, String> keyMap;
+    private final String keyWhitspaceReplacement;
+    private final String keyPrefixOnNumeric;
+    private final String illegalElementNameCharReplacement;
+    private final ConcurrentHashMap<String, String> elementNameCache = new ConcurrentHashMap<String, String>();
+    private final EventTapeCache eventTapeCache;
+    private final StreamReadConstraints streamReadConstraints;
+    private final JsonFactory jsonFactory;
+    private final JSONSchema schema;
+    private final JSONValueCache valueCache;
+
+    /**
+     * @param keyMap                            The key replacements, or null.
+     * @param keyWhitspaceReplacement           The replacement of whitespaces in keys, or null.
+     * @param keyPrefixOnNumeric                The prefix of keys starting with a digit, or null.
+     * @param illegalElementNameCharReplacement The replacement of characters that are illegal in element names, or null.
+     * @param eventTapeCacheSize                The size in bytes of the event tape cache, 0 to disable the cache.
+     * @param streamReadConstraints             The input limits enforced by the parsers.
+     * @param schema                            The schema that the JSON is validated against, or null.
+     * @param valueCache                        The cache of canonical scalar values, or null to disable the cache.
+     */
+    JSONReaderProfile(Map<String, String> keyMap, String keyWhitspaceReplacement, String keyPrefixOnNumeric, String illegalElementNameCharReplacement, long eventTapeCacheSize,
+                      StreamReadConstraints streamReadConstraints, JSONSchema schema, JSONValueCache valueCache) {
+        this.keyMap = (keyMap == null || keyMap.isEmpty() ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new HashMap<String, String>(keyMap)));
+        this.keyWhitspaceReplacement = keyWhitspaceReplacement;
+        this.keyPrefixOnNumeric = keyPrefixOnNumeric;
+        this.illegalElementNameCharReplacement = illegalElementNameCharReplacement;
+        this.eventTapeCache = (eventTapeCacheSize > 0 ? new EventTapeCache(eventTapeCacheSize) : null);
+        this.streamReadConstraints = streamReadConstraints;
+        this.jsonFactory = JsonFactory.builder().streamReadConstraints(streamReadConstraints).build();
+        this.schema = schema;
+        this.valueCache = valueCache;
+    }
+
+    /**
+     * Create the input limits of a reader configuration.
+     *
+     * @param maxDocumentLength The maximum length in bytes (or characters) of a document, 0 or less for no limit.
+     * @param maxStringLength   The maximum length in characters of a string value.
+     * @param maxNumberLength   The maximum length in characters of a number value.
+     * @param maxNestingDepth   The maximum nesting depth of objects and arrays.
+     * @param maxNameLength     The maximum length in characters of a field name.
+     */
+    static StreamReadConstraints createStreamReadConstraints(long maxDocumentLength, int maxStringLength, int maxNumberLength, int maxNestingDepth, int maxNameLength) {
+        return StreamReadConstraints.builder()
+                .maxDocumentLength(maxDocumentLength)
+                .maxStringLength(maxStringLength)
+                .maxNumberLength(maxNumberLength)
+                .maxNestingDepth(maxNestingDepth)
+                .maxNameLength(maxNameLength)
+                .build();
+    }
+
+    /**
+     * Map a JSON key to an element name. Names are computed once and cached, up to
+     * {@link #MAX_ELEMENT_NAME_CACHE_SIZE} distinct keys.
+     */
+    String getElementName(String key) {
+        String elementName = elementNameCache.get(key);
+        if (elementName == null) {
+            elementName = toElementName(key);
+            if (elementNameCache.size() < MAX_ELEMENT_NAME_CACHE_SIZE) {
+                elementNameCache.put(key, elementName);
+            }
+        }
+        return elementName;
+    }
+
+    private String toElementName(String key) {
+        String mappedKey = keyMap.get(key);
+        if (mappedKey != null) {
+            return mappedKey;
+        }
+
+        String elementName = key;
+        if (keyWhitspaceReplacement != null) {
+            elementName = elementName.replace(" ", keyWhitspaceReplacement);
+        }
+        if (keyPrefixOnNumeric != null && !elementName.isEmpty() && Character.isDigit(elementName.charAt(0))) {
+            elementName = keyPrefixOnNumeric + elementName;
+        }
+        if (illegalElementNameCharReplacement != null) {
+            elementName = ILLEGAL_ELEMENT_NAME_CHARS.matcher(elementName).replaceAll(illegalElementNameCharReplacement);
+        }
+        return elementName;
+    }
+
+    /**
+     * @return the unmodifiable key replacements
+     */
+    public Map<String, String> getKeyMap() {
+        return keyMap;
+    }
+
+    /**
+     * @return the event tape cache shared by the readers of the profile, or null if the cache is disabled
+     */
+    public EventTapeCache getEventTapeCache() {
+        return eventTapeCache;
+    }
+
+    /**
+     * @return the input limits enforced by the parsers of the profile
+     */
+    public StreamReadConstraints getStreamReadConstraints() {
+        return streamReadConstraints;
+    }
+
+    /**
+     * @return the schema that the JSON is validated against, or null if the JSON isn't validated
+     */
+    public JSONSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the value cache shared by the readers of the profile, or null if the cache is disabled
+     */
+    public JSONValueCache getValueCache() {
+        return valueCache;
+    }
+
+    /**
+     * @return the factory of the Jackson parsers, configured with the input limits of the profile
+     */
+    JsonFactory getJsonFactory() {
+        return jsonFactory;
+    }
+}
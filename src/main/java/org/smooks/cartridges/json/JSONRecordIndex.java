@@ -0,0 +1,324 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte offset index of the top-level records (the elements of the root array) of a UTF-8 JSON file.
+ * <p/>
+ * The index is built in a single pass over the file and can be stored next to it as a compact sidecar file (see
+ * {@link #getSidecarPath(Path)}). With the index, a range of records can be processed without scanning the records
+ * in front of it, and a file can be split into chunks of roughly equal size for parallel workers:
+ * <pre>
+ * JSONRecordIndex index = JSONRecordIndex.read(JSONRecordIndex.getSidecarPath(file));
+ * for (RecordRange range : index.split(workers)) {
+ *     ExecutionContext executionContext = smooks.createExecutionContext();
+ *     executionContext.put(JSONReader.RECORD_RANGE_TYPED_KEY, range);
+ *     smooks.filterSource(executionContext, new StreamSource(new FileInputStream(file.toFile())), result);
+ * }</pre>
+ * The {@link JSONReader} skips to the start of the range with {@link InputStream#skip(long)}, which is a seek for
+ * {@link java.io.FileInputStream}.
+ * <p/>
+ * The sidecar can also be built from the command line:
+ * <pre>
+ * java -cp ... org.smooks.cartridges.json.JSONRecordIndex &lt;json-file&gt;...</pre>
+ */
+public final class JSONRecordIndex {
+
+    public static final String SIDECAR_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x4A524958; // "JRIX"
+
+    private static final int VERSION = 1;
+
+    private final long[] startOffsets;
+    private final long[] endOffsets;
+    private final int size;
+
+    private JSONRecordIndex(long[] startOffsets, long[] endOffsets, int size) {
+        this.startOffsets = startOffsets;
+        this.endOffsets = endOffsets;
+        this.size = size;
+    }
+
+    /**
+     * Build the index of a UTF-8 JSON array stream.
+     *
+     * @param jsonStream The JSON stream. The stream is read to the end of the root array but isn't closed.
+     * @return the index
+     */
+    public static JSONRecordIndex build(InputStream jsonStream) throws IOException {
+        JSONRecordScanner scanner = new JSONRecordScanner(jsonStream);
+        long[] startOffsets = new long[1024];
+        long[] endOffsets = new long[1024];
+        int size = 0;
+
+        while (scanner.next()) {
+            if (size == startOffsets.length) {
+                startOffsets = Arrays.copyOf(startOffsets, size * 2);
+                endOffsets = Arrays.copyOf(endOffsets, size * 2);
+            }
+            startOffsets[size] = scanner.getStartOffset();
+            endOffsets[size] = scanner.getEndOffset();
+            size++;
+        }
+
+        return new JSONRecordIndex(startOffsets, endOffsets, size);
+    }
+
+    /**
+     * Build the index of a UTF-8 JSON array file.
+     */
+    public static JSONRecordIndex build(Path jsonFile) throws IOException {
+        try (InputStream jsonStream = Files.newInputStream(jsonFile)) {
+            return build(jsonStream);
+        }
+    }
+
+    /**
+     * Read an index that was previously written with {@link #write(OutputStream)}.
+     */
+    public static JSONRecordIndex read(InputStream indexStream) throws IOException {
+        DataInputStream dataInput = new DataInputStream(new BufferedInputStream(indexStream));
+
+        if (dataInput.readInt() != MAGIC) {
+            throw new IOException("Not a JSON record index stream.");
+        }
+        int version = dataInput.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported JSON record index version " + version + ".");
+        }
+
+        int size = (int) readVarLong(dataInput);
+        long[] startOffsets = new long[size];
+        long[] endOffsets = new long[size];
+        long previousEndOffset = 0;
+        for (int i = 0; i < size; i++) {
+            startOffsets[i] = previousEndOffset + readVarLong(dataInput);
+            endOffsets[i] = startOffsets[i] + readVarLong(dataInput);
+            previousEndOffset = endOffsets[i];
+        }
+
+        return new JSONRecordIndex(startOffsets, endOffsets, size);
+    }
+
+    /**
+     * Read an index file.
+     */
+    public static JSONRecordIndex read(Path indexFile) throws IOException {
+        try (InputStream indexStream = Files.newInputStream(indexFile)) {
+            return read(indexStream);
+        }
+    }
+
+    /**
+     * Write the index. Offsets are delta encoded as variable length integers, so each record typically takes two or
+     * three bytes.
+     *
+     * @param indexStream The stream to write to. The stream is flushed but isn't closed.
+     */
+    public void write(OutputStream indexStream) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(indexStream));
+
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeByte(VERSION);
+        writeVarLong(dataOutput, size);
+        long previousEndOffset = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarLong(dataOutput, startOffsets[i] - previousEndOffset);
+            writeVarLong(dataOutput, endOffsets[i] - startOffsets[i]);
+            previousEndOffset = endOffsets[i];
+        }
+        dataOutput.flush();
+    }
+
+    /**
+     * Write the index to a file.
+     */
+    public void write(Path indexFile) throws IOException {
+        try (OutputStream indexStream = Files.newOutputStream(indexFile)) {
+            write(indexStream);
+        }
+    }
+
+    /**
+     * @return the path of the sidecar index file of a JSON file
+     */
+    public static Path getSidecarPath(Path jsonFile) {
+        return jsonFile.resolveSibling(jsonFile.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the byte offset of the first byte of a record
+     */
+    public long getStartOffset(int record) {
+        checkRecord(record);
+        return startOffsets[record];
+    }
+
+    /**
+     * @return the byte offset directly after the last byte of a record
+     */
+    public long getEndOffset(int record) {
+        checkRecord(record);
+        return endOffsets[record];
+    }
+
+    /**
+     * @param fromRecord The index of the first record (inclusive).
+     * @param toRecord   The index of the record following the range (exclusive).
+     * @return the record range
+     */
+    public RecordRange getRange(int fromRecord, int toRecord) {
+        if (fromRecord < 0 || toRecord > size || fromRecord >= toRecord) {
+            throw new IndexOutOfBoundsException("Invalid record range [" + fromRecord + ", " + toRecord + ") for index of " + size + " records.");
+        }
+        return new RecordRange(fromRecord, toRecord, startOffsets[fromRecord], endOffsets[toRecord - 1]);
+    }
+
+    /**
+     * Split the records into contiguous ranges holding roughly the same number of bytes.
+     *
+     * @param chunkCount The requested number of ranges.
+     * @return the ranges, in record order. Fewer ranges than requested are returned when there are fewer records.
+     */
+    public List<RecordRange> split(int chunkCount) {
+        if (chunkCount < 1) {
+            throw new IllegalArgumentException("'chunkCount' must be at least 1.");
+        }
+
+        List<RecordRange> ranges = new ArrayList<RecordRange>(chunkCount);
+        if (size == 0) {
+            return ranges;
+        }
+
+        long firstOffset = startOffsets[0];
+        long totalBytes = endOffsets[size - 1] - firstOffset;
+        int fromRecord = 0;
+        for (int chunk = 1; chunk < chunkCount && fromRecord < size; chunk++) {
+            long targetEndOffset = firstOffset + (totalBytes * chunk) / chunkCount;
+            int searchResult = Arrays.binarySearch(endOffsets, fromRecord, size, targetEndOffset);
+            int toRecord = (searchResult >= 0 ? searchResult + 1 : -searchResult);
+
+            toRecord = Math.max(toRecord, fromRecord + 1);
+            if (toRecord >= size) {
+                break;
+            }
+            ranges.add(getRange(fromRecord, toRecord));
+            fromRecord = toRecord;
+        }
+        if (fromRecord < size) {
+            ranges.add(getRange(fromRecord, size));
+        }
+
+        return ranges;
+    }
+
+    private void checkRecord(int record) {
+        if (record < 0 || record >= size) {
+            throw new IndexOutOfBoundsException("Record " + record + " is out of bounds for index of " + size + " records.");
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream dataOutput, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            dataOutput.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dataOutput.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream dataInput) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = dataInput.read();
+            if (b == -1) {
+                throw new EOFException("Truncated JSON record index stream.");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Build the sidecar index of each of the JSON files passed as arguments.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: " + JSONRecordIndex.class.getName() + " <json-file>...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            Path jsonFile = Paths.get(arg);
+            JSONRecordIndex index = build(jsonFile);
+            Path sidecarPath = getSidecarPath(jsonFile);
+
+            index.write(sidecarPath);
+            System.out.println(sidecarPath + ": " + index.size() + " records");
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Finds the byte offsets of the top-level records (the elements of the root array) in a UTF-8 JSON stream.
+ * <p/>
+ * The scanner only tracks container nesting and string boundaries. It doesn't tokenize or validate the records, which
+ * makes it much cheaper than running the stream through a JSON parser. For the same reason, it keeps finding the
+ * boundaries of the records that follow a malformed record, as long as the brackets and quotes of the malformed record
+ * are balanced.
+ * <p/>
+ * A JSON string can't hold a line break, so a string that runs into one isn't terminated. The scanner then
+ * resynchronizes: the malformed record extends to the next line that starts with an opening bracket (the start of the
+ * next record) or a closing bracket. As the nesting depth is lost from then on, a closing bracket only ends the root
+ * array when nothing but whitespace follows it.
+ * <p/>
+ * In line delimited mode, the records are the non-blank lines of the stream (newline delimited JSON) instead.
+ */
+class JSONRecordScanner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+    private final boolean lineDelimited;
+    private final long maxDocumentLength;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferLength;
+    private int bufferPosition;
+    private long bufferOffset;
+
+    private boolean inRootArray;
+    private boolean endOfRootArray;
+    private boolean resynchronized;
+    private long startOffset = -1;
+    private long endOffset = -1;
+
+    private byte[] record;
+    private int recordLength;
+    private int captureStart = -1;
+
+    JSONRecordScanner(InputStream inputStream) {
+        this(inputStream, false, false, 0);
+    }
+
+    /**
+     * @param inputStream       The JSON stream.
+     * @param lineDelimited     Find the lines of a newline delimited JSON stream, instead of the elements of a root array.
+     * @param capture           Capture the bytes of each record, see {@link #getRecord()}.
+     * @param maxDocumentLength The maximum number of bytes read from the stream, 0 or less for no limit. Bounds the
+     *                          size of a captured record.
+     */
+    JSONRecordScanner(InputStream inputStream, boolean lineDelimited, boolean capture, long maxDocumentLength) {
+        this.inputStream = inputStream;
+        this.lineDelimited = lineDelimited;
+        this.maxDocumentLength = maxDocumentLength;
+        this.record = (capture ? new byte[1024] : null);
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false when the end of the root array is reached
+     */
+    boolean next() throws IOException {
+        if (endOfRootArray) {
+            return false;
+        }
+        if (lineDelimited) {
+            return nextLine();
+        }
+        if (!inRootArray) {
+            skipRootArrayStart();
+        }
+
+        int c = skipSeparator();
+        if (c == ']') {
+            if (!resynchronized) {
+                endOfRootArray = true;
+                return false;
+            }
+            startRecord();
+            if (isEndOfStream()) {
+                captureStart = -1;
+                endOfRootArray = true;
+                return false;
+            }
+            // A closing bracket of a malformed record...
+            skipUnterminatedRecord();
+            endRecord();
+            return true;
+        }
+
+        startRecord();
+        boolean terminated = true;
+        if (c == '{' || c == '[') {
+            terminated = skipContainer();
+        } else if (c == '"') {
+            terminated = skipString();
+        } else {
+            skipScalar();
+        }
+        if (!terminated) {
+            skipUnterminatedRecord();
+        }
+        endRecord();
+
+        return true;
+    }
+
+    private boolean nextLine() throws IOException {
+        int c = read();
+        if (!inRootArray) {
+            if (c == 0xEF && read() == 0xBB && read() == 0xBF) {
+                // UTF-8 BOM...
+                c = read();
+            }
+            inRootArray = true;
+        }
+        while (isJsonWhitespace(c)) {
+            c = read();
+        }
+        if (c == -1) {
+            endOfRootArray = true;
+            return false;
+        }
+
+        startRecord();
+        while ((c = peek()) != -1 && c != '\n') {
+            bufferPosition++;
+        }
+        endRecord();
+
+        return true;
+    }
+
+    /**
+     * @return the offset of the first byte of the current record
+     */
+    long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @return the offset directly after the last byte of the current record
+     */
+    long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @return the bytes of the current record, when capturing. The array is reused for the next record. After an
+     * {@link EOFException}, it holds the bytes of the unterminated record.
+     */
+    byte[] getRecord() {
+        return record;
+    }
+
+    /**
+     * @return the length of the current record, when capturing
+     */
+    int getRecordLength() {
+        return recordLength;
+    }
+
+    /**
+     * Start the current record at the byte that was just read.
+     */
+    private void startRecord() {
+        startOffset = position() - 1;
+        endOffset = -1;
+        if (record != null) {
+            recordLength = 0;
+            captureStart = bufferPosition - 1;
+        }
+    }
+
+    private void endRecord() {
+        endOffset = position();
+        if (record != null) {
+            captureBuffer(bufferPosition);
+            captureStart = -1;
+        }
+    }
+
+    private void captureBuffer(int end) {
+        int length = end - captureStart;
+        if (recordLength + length > record.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + length));
+        }
+        System.arraycopy(buffer, captureStart, record, recordLength, length);
+        recordLength += length;
+    }
+
+    private void skipRootArrayStart() throws IOException {
+        int c = read();
+        if (c == 0xEF && read() == 0xBB && read() == 0xBF) {
+            // UTF-8 BOM...
+            c = read();
+        }
+        while (isJsonWhitespace(c)) {
+            c = read();
+        }
+        if (c != '[') {
+            throw new IOException("Expected a JSON array at offset " + (position() - 1) + " but found '" + (char) c + "'.");
+        }
+        inRootArray = true;
+    }
+
+    private int skipSeparator() throws IOException {
+        int c = read();
+        while (isJsonWhitespace(c) || c == ',') {
+            c = read();
+        }
+        if (c == -1) {
+            throw new EOFException("Unexpected end of JSON stream at offset " + position() + ". The root array isn't closed.");
+        }
+        return c;
+    }
+
+    /**
+     * @return false if the container holds a string that isn't terminated
+     */
+    private boolean skipContainer() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            switch (c) {
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case '"':
+                    if (!skipString()) {
+                        return false;
+                    }
+                    break;
+                case -1:
+                    throw new EOFException("Unexpected end of JSON stream at offset " + position() + ". Record starting at offset " + startOffset + " isn't closed.");
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the string runs into a line break, so that it isn't terminated
+     */
+    private boolean skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return true;
+            } else if (c == '\\') {
+                c = read();
+            }
+            if (c == '\n' || c == '\r') {
+                resynchronized = true;
+                return false;
+            } else if (c == -1) {
+                throw new EOFException("Unexpected end of JSON stream at offset " + position() + ". String starting at offset " + startOffset + " isn't closed.");
+            }
+        }
+    }
+
+    /**
+     * Skip the lines of a record with an unterminated string, up to the next line that starts with a bracket.
+     */
+    private void skipUnterminatedRecord() throws IOException {
+        while (true) {
+            int c = peek();
+            while (isJsonWhitespace(c)) {
+                bufferPosition++;
+                c = peek();
+            }
+            if (c == '{' || c == '[' || c == ']') {
+                return;
+            } else if (c == -1) {
+                throw new EOFException("Unexpected end of JSON stream at offset " + position() + ". Record starting at offset " + startOffset + " isn't closed.");
+            }
+            while (c != -1 && c != '\n') {
+                bufferPosition++;
+                c = peek();
+            }
+        }
+    }
+
+    /**
+     * @return true if only whitespace is left in the stream
+     */
+    private boolean isEndOfStream() throws IOException {
+        int c = peek();
+        while (isJsonWhitespace(c)) {
+            bufferPosition++;
+            c = peek();
+        }
+        return c == -1;
+    }
+
+    private void skipScalar() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == -1 || c == ',' || c == ']' || isJsonWhitespace(c)) {
+                return;
+            }
+            bufferPosition++;
+        }
+    }
+
+    private long position() {
+        return bufferOffset + bufferPosition;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            bufferPosition++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (bufferPosition == bufferLength) {
+            if (captureStart >= 0) {
+                captureBuffer(bufferLength);
+                captureStart = 0;
+            }
+            bufferOffset += bufferLength;
+            bufferPosition = 0;
+            bufferLength = 0;
+            int count = inputStream.read(buffer, 0, buffer.length);
+            if (count <= 0) {
+                return -1;
+            }
+            bufferLength = count;
+            if (maxDocumentLength > 0 && bufferOffset + count > maxDocumentLength) {
+                throw new StreamConstraintsException("Document length (" + (bufferOffset + count) + ") exceeds the maximum allowed (" + maxDocumentLength + ")");
+            }
+        }
+        return buffer[bufferPosition] & 0xFF;
+    }
+
+    private static boolean isJsonWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
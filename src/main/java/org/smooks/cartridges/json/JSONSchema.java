@@ -0,0 +1,421 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.resource.URIResourceLocator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled JSON Schema, validated by the {@link JSONReader} while it parses the JSON stream (see the
+ * <code>schema</code> option), instead of in a separate pass over the message.
+ * <p/>
+ * A practical subset of JSON Schema is supported:
+ * <ul>
+ *     <li><code>type</code> (a type name or an array of type names)</li>
+ *     <li><code>properties</code>, <code>required</code> and <code>additionalProperties</code> (a boolean or a schema)</li>
+ *     <li><code>items</code> (a single schema), <code>minItems</code> and <code>maxItems</code></li>
+ *     <li><code>enum</code> (of scalar values)</li>
+ *     <li><code>minimum</code>, <code>maximum</code>, <code>exclusiveMinimum</code> and <code>exclusiveMaximum</code> (numbers)</li>
+ *     <li><code>minLength</code>, <code>maxLength</code> and <code>pattern</code></li>
+ *     <li>the boolean schemas <code>true</code> and <code>false</code></li>
+ * </ul>
+ * Annotations like <code>title</code> and <code>description</code> are ignored. Other keywords, e.g.
+ * <code>$ref</code> or <code>oneOf</code>, are ignored with a warning. A compiled schema is immutable and thread-safe.
+ */
+public final class JSONSchema {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JSONSchema.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final Set<String> ANNOTATIONS = new HashSet<String>(Arrays.asList("$schema", "$id", "$comment", "title", "description", "default", "examples", "format", "deprecated", "readOnly", "writeOnly"));
+
+    static final int OBJECT = 1;
+    static final int ARRAY = 1 << 1;
+    static final int STRING = 1 << 2;
+    static final int NUMBER = 1 << 3;
+    static final int INTEGER = 1 << 4;
+    static final int BOOLEAN = 1 << 5;
+    static final int NULL = 1 << 6;
+
+    // The significant digits of the decimal numbers that a double holds exactly enough to order them...
+    static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+    static final int ANY = OBJECT | ARRAY | STRING | NUMBER | INTEGER | BOOLEAN | NULL;
+
+    private static final String[] TYPE_NAMES = {"object", "array", "string", "number", "integer", "boolean", "null"};
+
+    private final Node root;
+
+    private JSONSchema(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Load and compile a schema.
+     *
+     * @param location The location of the schema: a classpath resource, a file or a URI.
+     */
+    public static JSONSchema load(String location) throws IOException {
+        try (InputStream schemaStream = new URIResourceLocator().getResource(location)) {
+            if (schemaStream == null) {
+                throw new IOException("JSON Schema '" + location + "' not found.");
+            }
+            return compile(schemaStream);
+        }
+    }
+
+    /**
+     * Compile a schema.
+     *
+     * @param schemaStream The UTF-8 JSON text of the schema. The stream isn't closed.
+     * @throws IllegalArgumentException the schema is invalid
+     */
+    public static JSONSchema compile(InputStream schemaStream) throws IOException {
+        try (JsonParser jp = JSON_FACTORY.createParser(schemaStream)) {
+            jp.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            jp.nextToken();
+            return new JSONSchema(compileNode(jp, ""));
+        }
+    }
+
+    /**
+     * Compile a schema.
+     *
+     * @param schema The JSON text of the schema.
+     * @throws IllegalArgumentException the schema is invalid
+     */
+    public static JSONSchema compile(String schema) throws IOException {
+        try (JsonParser jp = JSON_FACTORY.createParser(schema)) {
+            jp.nextToken();
+            return new JSONSchema(compileNode(jp, ""));
+        }
+    }
+
+    Node getRoot() {
+        return root;
+    }
+
+    private static Node compileNode(JsonParser jp, String pointer) throws IOException {
+        JsonToken t = jp.currentToken();
+        if (t == JsonToken.VALUE_TRUE) {
+            return new Node();
+        } else if (t == JsonToken.VALUE_FALSE) {
+            Node node = new Node();
+            node.types = 0;
+            return node;
+        } else if (t != JsonToken.START_OBJECT) {
+            throw invalidSchema(pointer, "a schema must be an object or a boolean");
+        }
+
+        Node node = new Node();
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            String keyword = jp.currentName();
+            String keywordPointer = pointer + "/" + escapePointerSegment(keyword);
+            t = jp.nextToken();
+            switch (keyword) {
+                case "type":
+                    node.types = compileTypes(jp, keywordPointer);
+                    break;
+                case "properties":
+                    expect(jp, JsonToken.START_OBJECT, keywordPointer, "an object");
+                    node.properties = new HashMap<String, Node>();
+                    while (jp.nextToken() == JsonToken.FIELD_NAME) {
+                        String property = jp.currentName();
+                        jp.nextToken();
+                        node.properties.put(property, compileNode(jp, keywordPointer + "/" + escapePointerSegment(property)));
+                    }
+                    break;
+                case "required":
+                    List<String> required = readStrings(jp, keywordPointer);
+                    node.required = required.toArray(new String[0]);
+                    break;
+                case "additionalProperties":
+                    if (t == JsonToken.VALUE_FALSE) {
+                        node.additionalPropertiesAllowed = false;
+                    } else {
+                        node.additionalProperties = compileNode(jp, keywordPointer);
+                    }
+                    break;
+                case "items":
+                    if (t == JsonToken.START_ARRAY) {
+                        throw invalidSchema(keywordPointer, "tuple validation isn't supported");
+                    }
+                    node.items = compileNode(jp, keywordPointer);
+                    break;
+                case "enum":
+                    expect(jp, JsonToken.START_ARRAY, keywordPointer, "an array");
+                    node.enumValues = new HashSet<String>();
+                    while ((t = jp.nextToken()) != JsonToken.END_ARRAY) {
+                        if (t.isStructStart()) {
+                            throw invalidSchema(keywordPointer, "only scalar enum values are supported");
+                        }
+                        node.enumValues.add(enumKey(t, jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength()));
+                    }
+                    break;
+                case "minimum":
+                    node.minimumDecimal = readNumber(jp, keywordPointer);
+                    node.minimum = node.minimumDecimal.doubleValue();
+                    node.decimalBounds |= !isExactDouble(node.minimumDecimal);
+                    break;
+                case "maximum":
+                    node.maximumDecimal = readNumber(jp, keywordPointer);
+                    node.maximum = node.maximumDecimal.doubleValue();
+                    node.decimalBounds |= !isExactDouble(node.maximumDecimal);
+                    break;
+                case "exclusiveMinimum":
+                    node.exclusiveMinimumDecimal = readNumber(jp, keywordPointer);
+                    node.exclusiveMinimum = node.exclusiveMinimumDecimal.doubleValue();
+                    node.decimalBounds |= !isExactDouble(node.exclusiveMinimumDecimal);
+                    break;
+                case "exclusiveMaximum":
+                    node.exclusiveMaximumDecimal = readNumber(jp, keywordPointer);
+                    node.exclusiveMaximum = node.exclusiveMaximumDecimal.doubleValue();
+                    node.decimalBounds |= !isExactDouble(node.exclusiveMaximumDecimal);
+                    break;
+                case "minLength":
+                    node.minLength = readCount(jp, keywordPointer);
+                    break;
+                case "maxLength":
+                    node.maxLength = readCount(jp, keywordPointer);
+                    break;
+                case "pattern":
+                    expect(jp, JsonToken.VALUE_STRING, keywordPointer, "a string");
+                    try {
+                        node.pattern = Pattern.compile(jp.getText());
+                    } catch (PatternSyntaxException e) {
+                        throw invalidSchema(keywordPointer, e.getDescription());
+                    }
+                    break;
+                case "minItems":
+                    node.minItems = readCount(jp, keywordPointer);
+                    break;
+                case "maxItems":
+                    node.maxItems = readCount(jp, keywordPointer);
+                    break;
+                default:
+                    if (!ANNOTATIONS.contains(keyword)) {
+                        LOGGER.warn("Unsupported JSON Schema keyword '" + keyword + "' at '" + keywordPointer + "' is ignored.");
+                    }
+                    jp.skipChildren();
+                    break;
+            }
+        }
+
+        if (node.required != null && node.required.length > 0) {
+            node.requiredIndexes = new LinkedHashMap<String, Integer>();
+            for (String property : node.required) {
+                node.requiredIndexes.putIfAbsent(property, node.requiredIndexes.size());
+            }
+            node.required = node.requiredIndexes.keySet().toArray(new String[0]);
+        }
+        return node;
+    }
+
+    private static int compileTypes(JsonParser jp, String pointer) throws IOException {
+        if (jp.currentToken() == JsonToken.VALUE_STRING) {
+            return toType(jp.getText(), pointer);
+        }
+        int types = 0;
+        for (String typeName : readStrings(jp, pointer)) {
+            types |= toType(typeName, pointer);
+        }
+        return types;
+    }
+
+    private static int toType(String typeName, String pointer) {
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(typeName)) {
+                return 1 << i;
+            }
+        }
+        throw invalidSchema(pointer, "unknown type '" + typeName + "'");
+    }
+
+    private static List<String> readStrings(JsonParser jp, String pointer) throws IOException {
+        expect(jp, JsonToken.START_ARRAY, pointer, "an array of strings");
+        List<String> strings = new ArrayList<String>();
+        while (jp.nextToken() != JsonToken.END_ARRAY) {
+            expect(jp, JsonToken.VALUE_STRING, pointer, "an array of strings");
+            strings.add(jp.getText());
+        }
+        return strings;
+    }
+
+    private static BigDecimal readNumber(JsonParser jp, String pointer) throws IOException {
+        if (!jp.currentToken().isNumeric()) {
+            throw invalidSchema(pointer, "expected a number");
+        }
+        return jp.getDecimalValue();
+    }
+
+    /**
+     * @return true if a double holds the number exactly enough to compare it with the numbers of a JSON stream: it
+     * has no more than {@link #MAX_EXACT_DOUBLE_DIGITS} significant digits
+     */
+    static boolean isExactDouble(BigDecimal number) {
+        return number.stripTrailingZeros().precision() <= MAX_EXACT_DOUBLE_DIGITS && !Double.isInfinite(number.doubleValue());
+    }
+
+    private static long readCount(JsonParser jp, String pointer) throws IOException {
+        if (!jp.currentToken().isNumeric() || jp.getDoubleValue() < 0 || jp.getDoubleValue() != Math.rint(jp.getDoubleValue())) {
+            throw invalidSchema(pointer, "expected a non-negative integer");
+        }
+        return jp.getLongValue();
+    }
+
+    private static void expect(JsonParser jp, JsonToken expectedToken, String pointer, String expected) {
+        if (jp.currentToken() != expectedToken) {
+            throw invalidSchema(pointer, "expected " + expected);
+        }
+    }
+
+    private static IllegalArgumentException invalidSchema(String pointer, String message) {
+        return new IllegalArgumentException("Invalid JSON Schema at '" + pointer + "': " + message + ".");
+    }
+
+    /**
+     * @return the key of a scalar value in an enum set: the text of a string, the normalized text of a number, or the
+     * literal of the other scalars, prefixed with the kind of value
+     */
+    static String enumKey(JsonToken t, char[] text, int offset, int length) {
+        switch (t) {
+            case VALUE_STRING:
+                return "s" + new String(text, offset, length);
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                BigDecimal number = new BigDecimal(text, offset, length);
+                return "n" + (number.signum() == 0 ? "0" : number.stripTrailingZeros().toString());
+            default:
+                return "l" + t.asString();
+        }
+    }
+
+    static String escapePointerSegment(String segment) {
+        if (segment.indexOf('~') == -1 && segment.indexOf('/') == -1) {
+            return segment;
+        }
+        return segment.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * @return the names of the types of a type set
+     */
+    static String toTypeNames(int types) {
+        if (types == 0) {
+            return "nothing";
+        }
+        StringBuilder typeNames = new StringBuilder();
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if ((types & (1 << i)) != 0 && !(i == 4 && (types & NUMBER) != 0)) {
+                typeNames.append(typeNames.length() == 0 ? "" : " or ").append(TYPE_NAMES[i]);
+            }
+        }
+        return typeNames.toString();
+    }
+
+    /**
+     * The constraints of a schema.
+     */
+    static final class Node {
+
+        int types = ANY;
+        Map<String, Node> properties = Collections.emptyMap();
+        // The required properties without duplicates, in the order of their indexes...
+        String[] required;
+        Map<String, Integer> requiredIndexes;
+        boolean additionalPropertiesAllowed = true;
+        Node additionalProperties;
+        Node items;
+        Set<String> enumValues;
+        double minimum = Double.NaN;
+        double maximum = Double.NaN;
+        double exclusiveMinimum = Double.NaN;
+        double exclusiveMaximum = Double.NaN;
+        // The exact bounds, for the numbers that a double doesn't hold exactly...
+        BigDecimal minimumDecimal;
+        BigDecimal maximumDecimal;
+        BigDecimal exclusiveMinimumDecimal;
+        BigDecimal exclusiveMaximumDecimal;
+        boolean decimalBounds;
+        long minLength = -1;
+        long maxLength = -1;
+        Pattern pattern;
+        long minItems = -1;
+        long maxItems = -1;
+
+        /**
+         * @return the schema of a property, or null if the property is unconstrained
+         */
+        Node getPropertySchema(String property) {
+            Node propertySchema = properties.get(property);
+            return (propertySchema != null ? propertySchema : additionalProperties);
+        }
+
+        boolean hasNumberConstraints() {
+            return !Double.isNaN(minimum) || !Double.isNaN(maximum) || !Double.isNaN(exclusiveMinimum) || !Double.isNaN(exclusiveMaximum);
+        }
+
+        boolean hasStringConstraints() {
+            return minLength >= 0 || maxLength >= 0 || pattern != null;
+        }
+    }
+}
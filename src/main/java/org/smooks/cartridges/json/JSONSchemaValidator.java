@@ -0,0 +1,373 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Validates the tokens of a JSON stream against a {@link JSONSchema}, one token at a time, as the {@link JSONReader}
+ * consumes them.
+ * <p/>
+ * The validator keeps a frame for each open object and array: its schema, the count of its items and the required
+ * properties seen so far. Values without a schema, e.g. the properties of an object that aren't described by the
+ * schema, are only tracked for their nesting. The frames are reused, so validation doesn't allocate for containers and
+ * for the numbers that a double holds exactly. String values are only read as text when their schema constrains them.
+ */
+final class JSONSchemaValidator {
+
+    private final SchemaViolationListener violationListener;
+    private final long offsetBase;
+    private final JSONSchema.Node rootSchema;
+    private Frame[] frames = new Frame[16];
+    private int depth;
+
+    /**
+     * @param schema            The schema.
+     * @param records           The parser returns the records of an implicit root array as root values: the root
+     *                          values of a root value sequence, each of which is validated against the schema, or the
+     *                          elements of the root array when skipping malformed records, which are validated against
+     *                          the items schema.
+     * @param rootValueSequence The records are the root values of a root value sequence.
+     * @param violationListener The listener of the violations, or null to throw a {@link SchemaViolationException}.
+     * @param offsetBase        The offset of the parser input in the JSON stream.
+     */
+    JSONSchemaValidator(JSONSchema schema, boolean records, boolean rootValueSequence, SchemaViolationListener violationListener, long offsetBase) {
+        this.violationListener = violationListener;
+        this.offsetBase = offsetBase;
+        if (records) {
+            JSONSchema.Node recordsSchema = schema.getRoot();
+            if (rootValueSequence) {
+                recordsSchema = new JSONSchema.Node();
+                recordsSchema.items = schema.getRoot();
+            }
+            this.rootSchema = null;
+            push(recordsSchema, true);
+        } else {
+            this.rootSchema = schema.getRoot();
+        }
+    }
+
+    /**
+     * Validate the token the parser is positioned at.
+     */
+    void validate(JsonParser jp, JsonToken t) throws IOException {
+        switch (t) {
+            case FIELD_NAME:
+                field(jp);
+                break;
+            case END_OBJECT:
+                endObject(jp);
+                break;
+            case END_ARRAY:
+                endArray(jp);
+                break;
+            default:
+                value(jp, t);
+                break;
+        }
+    }
+
+    /**
+     * Count a value of the innermost array that the reader skipped without passing its tokens to the validator.
+     */
+    void skipValue() {
+        if (depth > 0) {
+            frames[depth - 1].itemCount++;
+        }
+    }
+
+    private void field(JsonParser jp) throws IOException {
+        Frame frame = frames[depth - 1];
+        frame.fieldName = jp.currentName();
+        JSONSchema.Node schema = frame.schema;
+        if (schema == null) {
+            frame.childSchema = null;
+            return;
+        }
+
+        frame.childSchema = schema.getPropertySchema(frame.fieldName);
+        if (frame.childSchema == null && !schema.additionalPropertiesAllowed && !schema.properties.containsKey(frame.fieldName)) {
+            violation(jp, "Property '" + frame.fieldName + "' is not allowed.", false);
+        }
+        if (schema.requiredIndexes != null) {
+            Integer requiredIndex = schema.requiredIndexes.get(frame.fieldName);
+            if (requiredIndex != null) {
+                frame.seenRequired[requiredIndex >>> 6] |= 1L << requiredIndex;
+            }
+        }
+    }
+
+    private void value(JsonParser jp, JsonToken t) throws IOException {
+        JSONSchema.Node schema;
+        if (depth == 0) {
+            schema = rootSchema;
+        } else {
+            Frame frame = frames[depth - 1];
+            if (frame.array) {
+                frame.itemCount++;
+                if (frame.schema == null) {
+                    schema = null;
+                } else {
+                    if (frame.schema.maxItems >= 0 && frame.itemCount == frame.schema.maxItems + 1) {
+                        violation(jp, "Array has more than " + frame.schema.maxItems + " items.", false);
+                    }
+                    schema = frame.schema.items;
+                }
+            } else {
+                schema = frame.childSchema;
+            }
+        }
+
+        if (schema != null && !validateValue(jp, t, schema)) {
+            // Don't report the content of a container of the wrong type...
+            schema = null;
+        }
+        if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) {
+            push(schema, t == JsonToken.START_ARRAY);
+        }
+    }
+
+    private void endObject(JsonParser jp) throws IOException {
+        Frame frame = frames[depth - 1];
+        JSONSchema.Node schema = frame.schema;
+        if (schema != null && schema.requiredIndexes != null) {
+            for (int i = 0; i < schema.requiredIndexes.size(); i++) {
+                if ((frame.seenRequired[i >>> 6] & (1L << i)) == 0) {
+                    violation(jp, "Required property '" + schema.required[i] + "' is missing.", true);
+                }
+            }
+        }
+        depth--;
+    }
+
+    private void endArray(JsonParser jp) throws IOException {
+        Frame frame = frames[depth - 1];
+        if (frame.schema != null && frame.schema.minItems > frame.itemCount) {
+            violation(jp, "Array has fewer than " + frame.schema.minItems + " items.", true);
+        }
+        depth--;
+    }
+
+    /**
+     * @return false if the value has the wrong type
+     */
+    private boolean validateValue(JsonParser jp, JsonToken t, JSONSchema.Node schema) throws IOException {
+        int type = getType(jp, t);
+        if ((schema.types & type) == 0) {
+            violation(jp, "Expected " + JSONSchema.toTypeNames(schema.types) + " but found " + JSONSchema.toTypeNames(type) + ".", false);
+            return false;
+        }
+
+        if (schema.enumValues != null && t.isScalarValue()
+                && !schema.enumValues.contains(JSONSchema.enumKey(t, jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength()))) {
+            violation(jp, "Value " + (t == JsonToken.VALUE_STRING ? "'" + jp.getText() + "'" : jp.getText()) + " isn't one of the enumerated values.", false);
+        }
+
+        if (t.isNumeric() && schema.hasNumberConstraints()) {
+            boolean exact = (!schema.decimalBounds && isExactDouble(jp, t));
+            double value = (exact ? jp.getDoubleValue() : Double.NaN);
+            BigDecimal decimalValue = (exact ? null : jp.getDecimalValue());
+            if (compare(value, decimalValue, schema.minimum, schema.minimumDecimal) < 0) {
+                violation(jp, "Value " + jp.getText() + " is less than the minimum " + toString(schema.minimumDecimal) + ".", false);
+            }
+            if (compare(value, decimalValue, schema.maximum, schema.maximumDecimal) > 0) {
+                violation(jp, "Value " + jp.getText() + " is greater than the maximum " + toString(schema.maximumDecimal) + ".", false);
+            }
+            if (compare(value, decimalValue, schema.exclusiveMinimum, schema.exclusiveMinimumDecimal) <= 0) {
+                violation(jp, "Value " + jp.getText() + " isn't greater than the exclusive minimum " + toString(schema.exclusiveMinimumDecimal) + ".", false);
+            }
+            if (compare(value, decimalValue, schema.exclusiveMaximum, schema.exclusiveMaximumDecimal) >= 0) {
+                violation(jp, "Value " + jp.getText() + " isn't less than the exclusive maximum " + toString(schema.exclusiveMaximumDecimal) + ".", false);
+            }
+        } else if (t == JsonToken.VALUE_STRING && schema.hasStringConstraints()) {
+            char[] text = jp.getTextCharacters();
+            int offset = jp.getTextOffset();
+            int length = jp.getTextLength();
+            if (schema.minLength >= 0 || schema.maxLength >= 0) {
+                int codePointCount = Character.codePointCount(text, offset, length);
+                if (codePointCount < schema.minLength) {
+                    violation(jp, "String is shorter than " + schema.minLength + " characters.", false);
+                }
+                if (schema.maxLength >= 0 && codePointCount > schema.maxLength) {
+                    violation(jp, "String is longer than " + schema.maxLength + " characters.", false);
+                }
+            }
+            if (schema.pattern != null && !schema.pattern.matcher(CharBuffer.wrap(text, offset, length)).find()) {
+                violation(jp, "String doesn't match the pattern '" + schema.pattern.pattern() + "'.", false);
+            }
+        }
+        return true;
+    }
+
+    private static int getType(JsonParser jp, JsonToken t) throws IOException {
+        switch (t) {
+            case START_OBJECT:
+                return JSONSchema.OBJECT;
+            case START_ARRAY:
+                return JSONSchema.ARRAY;
+            case VALUE_STRING:
+                return JSONSchema.STRING;
+            case VALUE_NUMBER_INT:
+                return JSONSchema.INTEGER | JSONSchema.NUMBER;
+            case VALUE_NUMBER_FLOAT:
+                // An integral number like 1.0 is an integer too...
+                if (!isExactDouble(jp, t)) {
+                    return (jp.getDecimalValue().stripTrailingZeros().scale() <= 0 ? JSONSchema.INTEGER | JSONSchema.NUMBER : JSONSchema.NUMBER);
+                }
+                double value = jp.getDoubleValue();
+                return (value == Math.rint(value) && !Double.isInfinite(value) ? JSONSchema.INTEGER | JSONSchema.NUMBER : JSONSchema.NUMBER);
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return JSONSchema.BOOLEAN;
+            case VALUE_NULL:
+                return JSONSchema.NULL;
+            default:
+                throw new IllegalStateException("Unexpected token " + t + ".");
+        }
+    }
+
+    private void push(JSONSchema.Node schema, boolean array) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = new Frame();
+            frames[depth] = frame;
+        }
+        frame.schema = schema;
+        frame.array = array;
+        frame.itemCount = 0;
+        frame.fieldName = null;
+        frame.childSchema = null;
+        if (schema != null && schema.requiredIndexes != null) {
+            int words = (schema.requiredIndexes.size() + 63) >>> 6;
+            if (frame.seenRequired.length < words) {
+                frame.seenRequired = new long[words];
+            } else {
+                Arrays.fill(frame.seenRequired, 0, words, 0L);
+            }
+        }
+        depth++;
+    }
+
+    /**
+     * @param container The violation is about the innermost container, rather than about its current value.
+     */
+    private void violation(JsonParser jp, String message, boolean container) throws IOException {
+        JsonLocation location = jp.currentTokenLocation();
+        long byteOffset = location.getByteOffset();
+        long charOffset = location.getCharOffset();
+        SchemaViolation violation = new SchemaViolation(getPointer(container), message, location.getLineNr(), location.getColumnNr(),
+                (byteOffset < 0 ? -1 : offsetBase + byteOffset), (charOffset < 0 ? -1 : offsetBase + charOffset));
+
+        if (violationListener == null) {
+            throw new SchemaViolationException(jp, violation);
+        }
+        violationListener.onSchemaViolation(violation);
+    }
+
+    /**
+     * @return the JSON Pointer of the current value, or of the innermost container
+     */
+    private String getPointer(boolean container) {
+        StringBuilder pointer = new StringBuilder();
+        int pathDepth = (container ? depth - 1 : depth);
+        for (int i = 0; i < pathDepth; i++) {
+            Frame frame = frames[i];
+            if (frame.array) {
+                if (frame.itemCount > 0) {
+                    pointer.append('/').append(frame.itemCount - 1);
+                }
+            } else if (frame.fieldName != null) {
+                pointer.append('/').append(JSONSchema.escapePointerSegment(frame.fieldName));
+            }
+        }
+        return pointer.toString();
+    }
+
+    /**
+     * @return true if the number is an int, or a float whose text is no longer than the significant digits that a double
+     * holds exactly. Longs and big numbers are compared as {@link BigDecimal}s instead.
+     */
+    private static boolean isExactDouble(JsonParser jp, JsonToken t) throws IOException {
+        if (t == JsonToken.VALUE_NUMBER_INT) {
+            return jp.getNumberType() == JsonParser.NumberType.INT;
+        }
+        return jp.getNumberType() != JsonParser.NumberType.BIG_DECIMAL && jp.getTextLength() <= JSONSchema.MAX_EXACT_DOUBLE_DIGITS;
+    }
+
+    /**
+     * Compare a number with a bound of the schema.
+     *
+     * @return the sign of the comparison, or NaN if the bound isn't set
+     */
+    private static double compare(double value, BigDecimal decimalValue, double bound, BigDecimal decimalBound) {
+        if (decimalBound == null) {
+            return Double.NaN;
+        } else if (decimalValue != null) {
+            return decimalValue.compareTo(decimalBound);
+        }
+        return (value < bound ? -1 : (value > bound ? 1 : 0));
+    }
+
+    private static String toString(BigDecimal number) {
+        return number.stripTrailingZeros().toPlainString();
+    }
+
+    private static final class Frame {
+        private JSONSchema.Node schema;
+        private boolean array;
+        private long itemCount;
+        private String fieldName;
+        private JSONSchema.Node childSchema;
+        private long[] seenRequired = new long[1];
+    }
+}
@@ -0,0 +1,310 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streams JSON to JSON, renaming and dropping keys token by token, without going through SAX events.
+ * <p/>
+ * For JSON in, JSON out pipelines that only rename and drop keys, the round trip through SAX events, visitors and a
+ * serializer is pure overhead. The transformer applies the same key naming rules as the {@link JSONReader} (the key
+ * map, and the whitespace, numeric prefix and illegal character replacements) straight between a Jackson
+ * {@link JsonParser} and {@link JsonGenerator}, in constant memory:
+ * <pre>
+ * JSONTransformer transformer = new JSONReaderConfigurator()
+ *         .setKeyMap(keyMap)
+ *         .setSuppressEmptyValues(true)
+ *         .toTransformer()
+ *         .setExcludedPaths("element/internal, element/audit");
+ *
+ * transformer.transform(inputStream, outputStream);</pre>
+ * Values are copied as they are: strings aren't re-decoded and numbers keep their exact text. Once configured, a
+ * transformer is thread-safe.
+ */
+public final class JSONTransformer {
+
+    private final JSONReaderProfile profile;
+    private final JsonFactory jsonFactory;
+    private final String arrayElementName;
+    private final Charset encoding;
+    private final boolean suppressEmptyValues;
+    private final boolean rootValueSequence;
+    private ElementPathMatcher excludedPathMatcher;
+    private String nullValueReplacement;
+
+    /**
+     * Use {@link JSONReaderConfigurator#toTransformer()}.
+     *
+     * @param nullValueReplacement The string that JSON null values are replaced with, or null to keep them as null.
+     */
+    JSONTransformer(JSONReaderProfile profile, String arrayElementName, Charset encoding, boolean suppressEmptyValues, boolean rootValueSequence, String nullValueReplacement) {
+        this.profile = profile;
+        this.jsonFactory = JsonFactory.builder()
+                .streamReadConstraints(profile.getStreamReadConstraints())
+                .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+                .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .build();
+        this.arrayElementName = arrayElementName;
+        this.encoding = encoding;
+        this.suppressEmptyValues = suppressEmptyValues;
+        this.rootValueSequence = rootValueSequence;
+        this.nullValueReplacement = nullValueReplacement;
+    }
+
+    /**
+     * @param excludedPaths Comma separated paths of the values that are dropped. The paths are made of the
+     *                      (renamed) element names that the {@link JSONReader} would produce below the root element,
+     *                      separated by '/', e.g. 'order/metadata' or 'element/payload'. A '*' matches any name.
+     * @return this transformer
+     */
+    public JSONTransformer setExcludedPaths(String excludedPaths) {
+        this.excludedPathMatcher = (excludedPaths != null ? new ElementPathMatcher(excludedPaths) : null);
+        return this;
+    }
+
+    /**
+     * @param nullValueReplacement The string that JSON null values are replaced with, or null to keep them as null.
+     *                             Nulls are dropped instead when empty values are suppressed.
+     * @return this transformer
+     */
+    public JSONTransformer setNullValueReplacement(String nullValueReplacement) {
+        this.nullValueReplacement = nullValueReplacement;
+        return this;
+    }
+
+    /**
+     * Transform a JSON stream in the configured encoding to a UTF-8 JSON stream. Neither stream is closed.
+     */
+    public void transform(InputStream jsonInput, OutputStream jsonOutput) throws IOException {
+        JsonParser parser = (StandardCharsets.UTF_8.equals(encoding) ? jsonFactory.createParser(jsonInput) : jsonFactory.createParser(new InputStreamReader(jsonInput, encoding)));
+        try (JsonParser closeableParser = parser; JsonGenerator generator = jsonFactory.createGenerator(jsonOutput, JsonEncoding.UTF8)) {
+            transform(closeableParser, generator);
+        }
+    }
+
+    /**
+     * Transform a JSON character stream. Neither stream is closed.
+     */
+    public void transform(Reader jsonInput, Writer jsonOutput) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(jsonInput); JsonGenerator generator = jsonFactory.createGenerator(jsonOutput)) {
+            transform(parser, generator);
+        }
+    }
+
+    /**
+     * Transform a JSON string.
+     */
+    public String transform(String json) throws IOException {
+        StringWriter jsonOutput = new StringWriter(json.length());
+        try (JsonParser parser = jsonFactory.createParser(json); JsonGenerator generator = jsonFactory.createGenerator(jsonOutput)) {
+            transform(parser, generator);
+        }
+        return jsonOutput.toString();
+    }
+
+    /**
+     * Copy the tokens of the parser to the generator, renaming the field names and dropping the excluded and (when
+     * suppressed) empty values. With suppression, the start of an object or array is deferred until it gets its first
+     * value, so that containers that end up empty are dropped as a whole.
+     */
+    private void transform(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (rootValueSequence) {
+            generator.setRootValueSeparator(null);
+        }
+
+        // The state of the open containers, by depth. The root container has depth 0...
+        String[] containerNames = new String[16];
+        String[] fieldNames = new String[16];
+        boolean[] arrays = new boolean[16];
+        int openCount = 0;
+        int firstPending = -1;
+        String fieldName = null;
+
+        JsonToken t;
+        while ((t = parser.nextToken()) != null) {
+            switch (t) {
+                case FIELD_NAME:
+                    fieldName = profile.getElementName(parser.currentName());
+                    break;
+
+                case START_OBJECT:
+                case START_ARRAY:
+                    String containerName = (openCount == 0 ? null : (arrays[openCount - 1] ? arrayElementName : fieldName));
+                    if (isExcluded(openCount, containerName, containerNames)) {
+                        parser.skipChildren();
+                        break;
+                    }
+                    if (openCount == containerNames.length) {
+                        containerNames = Arrays.copyOf(containerNames, openCount * 2);
+                        fieldNames = Arrays.copyOf(fieldNames, openCount * 2);
+                        arrays = Arrays.copyOf(arrays, openCount * 2);
+                    }
+                    containerNames[openCount] = containerName;
+                    fieldNames[openCount] = (openCount > 0 && !arrays[openCount - 1] ? fieldName : null);
+                    arrays[openCount] = (t == JsonToken.START_ARRAY);
+                    openCount++;
+
+                    if (suppressEmptyValues && openCount > 1) {
+                        if (firstPending < 0) {
+                            firstPending = openCount - 1;
+                        }
+                    } else {
+                        writeStart(generator, fieldNames[openCount - 1], arrays[openCount - 1]);
+                    }
+                    break;
+
+                case END_OBJECT:
+                case END_ARRAY:
+                    openCount--;
+                    if (firstPending >= 0) {
+                        // Empty, so dropped...
+                        if (firstPending == openCount) {
+                            firstPending = -1;
+                        }
+                    } else if (t == JsonToken.END_ARRAY) {
+                        generator.writeEndArray();
+                    } else {
+                        generator.writeEndObject();
+                    }
+                    if (openCount == 0) {
+                        endRootValue(generator);
+                    }
+                    break;
+
+                default:
+                    boolean inObject = (openCount > 0 && !arrays[openCount - 1]);
+                    String elementName = (openCount == 0 ? null : (inObject ? fieldName : arrayElementName));
+                    if (isExcluded(openCount, elementName, containerNames) || (t == JsonToken.VALUE_NULL && suppressEmptyValues)) {
+                        break;
+                    }
+
+                    if (firstPending >= 0) {
+                        for (int i = firstPending; i < openCount; i++) {
+                            writeStart(generator, fieldNames[i], arrays[i]);
+                        }
+                        firstPending = -1;
+                    }
+                    if (inObject) {
+                        generator.writeFieldName(fieldName);
+                    }
+                    writeValue(parser, generator, t);
+                    if (openCount == 0) {
+                        endRootValue(generator);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @param depth The depth of the value, 0 for a root value.
+     */
+    private boolean isExcluded(int depth, String elementName, String[] containerNames) {
+        return depth > 0 && excludedPathMatcher != null && excludedPathMatcher.matches(depth, elementName, containerNames);
+    }
+
+    private static void writeStart(JsonGenerator generator, String fieldName, boolean array) throws IOException {
+        if (fieldName != null) {
+            generator.writeFieldName(fieldName);
+        }
+        if (array) {
+            generator.writeStartArray();
+        } else {
+            generator.writeStartObject();
+        }
+    }
+
+    private void writeValue(JsonParser parser, JsonGenerator generator, JsonToken t) throws IOException {
+        switch (t) {
+            case VALUE_STRING:
+                // Jackson only checks the length of the strings that outgrow its text buffer...
+                if (parser.getTextLength() > jsonFactory.streamReadConstraints().getMaxStringLength()) {
+                    jsonFactory.streamReadConstraints().validateStringLength(parser.getTextLength());
+                }
+                generator.writeString(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                break;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                generator.writeNumber(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                generator.writeBoolean(t == JsonToken.VALUE_TRUE);
+                break;
+            case VALUE_NULL:
+                if (nullValueReplacement != null) {
+                    generator.writeString(nullValueReplacement);
+                } else {
+                    generator.writeNull();
+                }
+                break;
+            default:
+                generator.copyCurrentEvent(parser);
+                break;
+        }
+    }
+
+    private void endRootValue(JsonGenerator generator) throws IOException {
+        if (rootValueSequence) {
+            generator.writeRaw('\n');
+        }
+    }
+}
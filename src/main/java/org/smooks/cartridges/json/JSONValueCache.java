@@ -0,0 +1,283 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded cache of canonical {@link String} instances for repeated scalar JSON values, such as status codes,
+ * country codes and other enum-like strings.
+ * <p/>
+ * A value is looked up by its characters, so a hit returns the cached instance without allocating a new string. The
+ * cache is a direct-mapped table: each value has a single slot, and a value that hashes to an occupied slot evicts the
+ * value in it. Long values aren't cached, and a field whose values keep missing the cache (more than its cardinality
+ * cap) is considered high cardinality and bypasses the cache from then on, so that ids and timestamps don't evict the
+ * values that do repeat.
+ * <p/>
+ * All the {@link JSONReader JSONReaders} of a reader configuration share the cache of their {@link JSONReaderProfile},
+ * which is also available on the {@link org.smooks.api.ExecutionContext} under
+ * {@link JSONReader#VALUE_CACHE_TYPED_KEY} after parsing, e.g. to report its hit and miss counts. The cache is
+ * thread-safe without locking: the slots are read and written racily, which is safe because strings are immutable.
+ */
+public final class JSONValueCache {
+
+    static final int MAX_TRACKED_FIELD_COUNT = 4096;
+
+    private final String[] values;
+    private final int mask;
+    private final int maxValueLength;
+    private final int maxFieldCardinality;
+    private final ConcurrentHashMap<String, AtomicInteger> fieldMissCounts = new ConcurrentHashMap<String, AtomicInteger>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder bypassCount = new LongAdder();
+
+    /**
+     * @param size                The number of slots, rounded up to a power of two.
+     * @param maxValueLength      The length in characters of the longest value that is cached.
+     * @param maxFieldCardinality The number of cache misses of a field after which its values are no longer cached,
+     *                            0 for no cap.
+     */
+    JSONValueCache(int size, int maxValueLength, int maxFieldCardinality) {
+        if (size <= 0 || size > (1 << 30)) {
+            throw new IllegalArgumentException("'size' must be between 1 and 2^30.");
+        }
+        if (maxValueLength < 0) {
+            throw new IllegalArgumentException("'maxValueLength' must not be negative.");
+        }
+        if (maxFieldCardinality < 0) {
+            throw new IllegalArgumentException("'maxFieldCardinality' must not be negative.");
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.values = new String[capacity];
+        this.mask = capacity - 1;
+        this.maxValueLength = maxValueLength;
+        this.maxFieldCardinality = maxFieldCardinality;
+    }
+
+    /**
+     * @param field  The name of the field of the value, or null if the value isn't a field value.
+     * @param chars  The characters of the value.
+     * @param offset The offset of the value in <code>chars</code>.
+     * @param length The length of the value.
+     * @return the canonical instance of the value, or a new string if the value isn't cached
+     */
+    String get(String field, char[] chars, int offset, int length) {
+        if (length > maxValueLength) {
+            bypassCount.increment();
+            return new String(chars, offset, length);
+        }
+        AtomicInteger fieldMissCount = null;
+        if (maxFieldCardinality > 0 && field != null) {
+            fieldMissCount = getFieldMissCount(field);
+            if (fieldMissCount != null && fieldMissCount.get() > maxFieldCardinality) {
+                bypassCount.increment();
+                return new String(chars, offset, length);
+            }
+        }
+
+        int slot = hash(chars, offset, length) & mask;
+        String value = values[slot];
+        if (value != null && equals(value, chars, offset, length)) {
+            hitCount.increment();
+            return value;
+        }
+
+        missCount.increment();
+        if (fieldMissCount != null) {
+            fieldMissCount.incrementAndGet();
+        }
+        if (value != null) {
+            evictionCount.increment();
+        }
+        value = new String(chars, offset, length);
+        values[slot] = value;
+
+        return value;
+    }
+
+    /**
+     * Canonicalize a value that is already a string, e.g. in a visitor that binds values to beans.
+     *
+     * @return the canonical instance of the value, or the value itself if it isn't cached
+     */
+    public String get(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length() > maxValueLength) {
+            bypassCount.increment();
+            return value;
+        }
+
+        int slot = spread(value.hashCode()) & mask;
+        String cachedValue = values[slot];
+        if (value.equals(cachedValue)) {
+            hitCount.increment();
+            return cachedValue;
+        }
+
+        missCount.increment();
+        if (cachedValue != null) {
+            evictionCount.increment();
+        }
+        values[slot] = value;
+
+        return value;
+    }
+
+    private AtomicInteger getFieldMissCount(String field) {
+        AtomicInteger fieldMissCount = fieldMissCounts.get(field);
+        if (fieldMissCount == null && fieldMissCounts.size() < MAX_TRACKED_FIELD_COUNT) {
+            AtomicInteger newFieldMissCount = new AtomicInteger();
+            fieldMissCount = fieldMissCounts.putIfAbsent(field, newFieldMissCount);
+            if (fieldMissCount == null) {
+                fieldMissCount = newFieldMissCount;
+            }
+        }
+        return fieldMissCount;
+    }
+
+    /**
+     * Same as {@link String#hashCode()}, so that values in strings and in character arrays map to the same slot.
+     */
+    private static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return spread(hash);
+    }
+
+    /**
+     * Mix the high bits into the low bits, which are poorly distributed in the hash codes of short strings.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of lookups that returned a cached value
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of lookups that didn't find the value and cached it
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of values evicted by a value hashing to the same slot
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * @return the number of lookups that bypassed the cache, because the value was too long or its field exceeded
+     * its cardinality cap
+     */
+    public long getBypassCount() {
+        return bypassCount.sum();
+    }
+
+    /**
+     * @return the names of the fields that exceeded their cardinality cap and bypass the cache
+     */
+    public Set<String> getHighCardinalityFields() {
+        Set<String> fields = new TreeSet<String>();
+        for (Map.Entry<String, AtomicInteger> entry : fieldMissCounts.entrySet()) {
+            if (entry.getValue().get() > maxFieldCardinality) {
+                fields.add(entry.getKey());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Remove all values and forget the high cardinality fields. The counters aren't reset.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        fieldMissCounts.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "JSONValueCache{capacity=" + values.length + ", maxValueLength=" + maxValueLength + ", maxFieldCardinality=" + maxFieldCardinality
+                + ", hitCount=" + getHitCount() + ", missCount=" + getMissCount() + ", evictionCount=" + getEvictionCount() + ", bypassCount=" + getBypassCount() + "}";
+    }
+}
@@ -0,0 +1,114 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+/**
+ * A top-level JSON record that was skipped by the {@link JSONReader} because it is malformed.
+ * <p/>
+ * Only reported when the reader skips malformed records (see the <code>skipMalformedRecords</code> option). None of
+ * the SAX events of a malformed record are delivered.
+ */
+public class MalformedRecord {
+
+    private final long recordIndex;
+    private final long startOffset;
+    private final long endOffset;
+    private final String content;
+    private final Exception error;
+
+    /**
+     * @param recordIndex The index of the record in the stream, counting the malformed records as well.
+     * @param startOffset The byte offset of the first byte of the record.
+     * @param endOffset   The byte offset directly after the last byte of the record.
+     * @param content     The JSON text of the record, truncated to {@link JSONReader#MALFORMED_RECORD_CONTENT_LIMIT}
+     *                    bytes.
+     * @param error       The parse error.
+     */
+    public MalformedRecord(long recordIndex, long startOffset, long endOffset, String content, Exception error) {
+        this.recordIndex = recordIndex;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.content = content;
+        this.error = error;
+    }
+
+    /**
+     * @return the index of the record in the stream, counting the malformed records as well
+     */
+    public long getRecordIndex() {
+        return recordIndex;
+    }
+
+    /**
+     * @return the byte offset of the first byte of the record
+     */
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @return the byte offset directly after the last byte of the record
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @return the (possibly truncated) JSON text of the record
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * @return the parse error
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "MalformedRecord{recordIndex=" + recordIndex + ", startOffset=" + startOffset + ", endOffset=" + endOffset + ", error='" + error.getMessage() + "'}";
+    }
+}
@@ -0,0 +1,297 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a source {@link JsonParser} on a producer thread and hands its tokens to the consuming thread in batches.
+ * <p/>
+ * The producer records the tokens, field names, token text and (optionally) locations of the source parser into a
+ * fixed ring of preallocated {@link EventBatch event batches}. Full batches are passed to the consumer and handed back
+ * once replayed, so the producer blocks when it is {@link #BATCH_COUNT} batches ahead of the consumer and no memory is
+ * allocated per token once the text buffers have grown to the size of the largest batch. Parse errors are rethrown to
+ * the consumer after the tokens preceding them were replayed.
+ * <p/>
+ * The producers run on the daemon threads of a shared pool, and the {@link Batches ring of batches} is owned by the
+ * caller, so that a reader parsing one document after the other doesn't start a thread or allocate batches per
+ * document.
+ */
+final class PipelinedJsonParser extends TokenBatchJsonParser {
+
+    static final int BATCH_COUNT = 4;
+
+    private static final ExecutorService PRODUCER_EXECUTOR = Executors.newCachedThreadPool(new ProducerThreadFactory());
+
+    private final JsonParser source;
+    private final int batchSize;
+    private final boolean recordLocations;
+    private final BlockingQueue<EventBatch> freeBatches = new ArrayBlockingQueue<EventBatch>(BATCH_COUNT);
+    // One extra slot for the batch reporting a producer failure...
+    private final BlockingQueue<EventBatch> fullBatches = new ArrayBlockingQueue<EventBatch>(BATCH_COUNT + 1);
+    private final CountDownLatch produced = new CountDownLatch(1);
+    private final Object producerLock = new Object();
+    private Thread producer;
+    private volatile boolean closed;
+
+    /**
+     * @param source          The parser to run on the producer thread. It is closed by the producer thread.
+     * @param batches         The batches to record the tokens into. They can be reused for another parser once this
+     *                        parser is closed.
+     * @param recordLocations Record the location of every token. Costs a {@link JsonLocation} per token on the
+     *                        producer thread.
+     */
+    PipelinedJsonParser(JsonParser source, Batches batches, boolean recordLocations) {
+        super(source.getFeatureMask(), recordLocations);
+        this.source = source;
+        this.batchSize = batches.getBatchSize();
+        this.recordLocations = recordLocations;
+        freeBatches.addAll(Arrays.asList(batches.batches));
+
+        PRODUCER_EXECUTOR.execute(this::produce);
+    }
+
+    private void produce() {
+        synchronized (producerLock) {
+            producer = Thread.currentThread();
+        }
+        EventBatch producing = null;
+        try {
+            boolean end = false;
+            while (!end && !closed) {
+                producing = freeBatches.take();
+                producing.clear();
+                end = fill(producing);
+                fullBatches.put(producing);
+                producing = null;
+            }
+        } catch (Throwable t) {
+            if (producing == null) {
+                producing = new EventBatch(0);
+            }
+            producing.error = t;
+            producing.last = true;
+            fullBatches.add(producing);
+        } finally {
+            try {
+                source.close();
+            } catch (IOException e) {
+                // Nothing to report to...
+            }
+            synchronized (producerLock) {
+                producer = null;
+                // Don't leave an interrupt from close() to the next task of the pooled thread...
+                Thread.interrupted();
+            }
+            produced.countDown();
+        }
+    }
+
+    /**
+     * @return true if the end of the source was reached
+     */
+    private boolean fill(EventBatch producing) throws IOException {
+        while (producing.size < batchSize) {
+            if (closed) {
+                producing.last = true;
+                return true;
+            }
+
+            JsonToken token = source.nextToken();
+            if (token == null) {
+                producing.last = true;
+                return true;
+            }
+
+            producing.add(token, source, recordLocations);
+        }
+        return false;
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        if (closed) {
+            return null;
+        }
+        return super.nextToken();
+    }
+
+    @Override
+    EventBatch nextBatch(EventBatch replayed) throws IOException {
+        if (replayed != null) {
+            if (replayed.last) {
+                if (replayed.error != null) {
+                    throw rethrow(replayed.error);
+                }
+                return null;
+            }
+            freeBatches.add(replayed);
+        }
+        try {
+            return fullBatches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the JSON parser thread.");
+        }
+    }
+
+    private static IOException rethrow(Throwable error) {
+        if (error instanceof IOException) {
+            return (IOException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        return new IOException(error);
+    }
+
+    /**
+     * Stop the producer. A producer that is still running is interrupted and its source input is closed (unless the
+     * source parser doesn't auto-close it), so that it can't block in a read. Waits for the producer to finish, so
+     * that neither the source stream nor the batches are used anymore once the parser is closed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        // Hand all batches back, so that a producer waiting for a free batch wakes up and sees the parser is closed...
+        if (batch != null) {
+            freeBatches.offer(batch);
+            batch = null;
+        }
+        EventBatch fullBatch;
+        while ((fullBatch = fullBatches.poll()) != null) {
+            freeBatches.offer(fullBatch);
+        }
+        if (produced.getCount() > 0) {
+            synchronized (producerLock) {
+                if (producer != null) {
+                    producer.interrupt();
+                }
+            }
+            Object input = source.getInputSource();
+            if (input instanceof Closeable && source.isEnabled(Feature.AUTO_CLOSE_SOURCE)) {
+                try {
+                    ((Closeable) input).close();
+                } catch (IOException e) {
+                    // The producer reports the failures of its source...
+                }
+            }
+        }
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                produced.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * The ring of batches of a parser, which a reader keeps for the parsers of the documents it reads one after the
+     * other.
+     */
+    static final class Batches {
+
+        private final EventBatch[] batches = new EventBatch[BATCH_COUNT];
+        private final int batchSize;
+
+        /**
+         * @param batchSize The number of tokens per batch.
+         */
+        Batches(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("'batchSize' must be at least 1.");
+            }
+            this.batchSize = batchSize;
+            for (int i = 0; i < BATCH_COUNT; i++) {
+                batches[i] = new EventBatch(batchSize);
+            }
+        }
+
+        int getBatchSize() {
+            return batchSize;
+        }
+    }
+
+    private static final class ProducerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "json-reader-pipeline-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Attributes the SAX events sent to a content handler, and the time the handler spends on them, to the current path
+ * of a {@link ProfilingJsonParser}.
+ */
+final class ProfilingContentHandler implements ContentHandler {
+
+    private final ContentHandler contentHandler;
+    private final ProfilingJsonParser profilingParser;
+
+    ProfilingContentHandler(ContentHandler contentHandler, ProfilingJsonParser profilingParser) {
+        this.contentHandler = contentHandler;
+        this.profilingParser = profilingParser;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        contentHandler.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        long start = System.nanoTime();
+        contentHandler.startDocument();
+        record(start);
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        long start = System.nanoTime();
+        contentHandler.endDocument();
+        record(start);
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        contentHandler.startPrefixMapping(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        contentHandler.endPrefixMapping(prefix);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        long start = System.nanoTime();
+        contentHandler.startElement(uri, localName, qName, atts);
+        record(start);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        long start = System.nanoTime();
+        contentHandler.endElement(uri, localName, qName);
+        record(start);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        long startNanos = System.nanoTime();
+        contentHandler.characters(ch, start, length);
+        record(startNanos);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        long startNanos = System.nanoTime();
+        contentHandler.ignorableWhitespace(ch, start, length);
+        record(startNanos);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException {
+        contentHandler.processingInstruction(target, data);
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException {
+        contentHandler.skippedEntity(name);
+    }
+
+    private void record(long start) {
+        JSONPathProfile.PathStats path = profilingParser.getCurrentPath();
+        path.handlerNanos += System.nanoTime() - start;
+        path.saxEventCount++;
+    }
+}
@@ -0,0 +1,170 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Attributes the tokens of a parser, and the bytes they span, to their JSON path in a {@link JSONPathProfile}.
+ * <p/>
+ * The path of the last returned token is the {@link #getCurrentPath() current path}, to which the
+ * {@link ProfilingContentHandler} attributes the SAX events produced for the token.
+ */
+final class ProfilingJsonParser extends JsonParserDelegate {
+
+    private final JSONPathProfile pathProfile;
+    private JSONPathProfile.PathStats[] containers = new JSONPathProfile.PathStats[16];
+    private boolean[] arrays = new boolean[16];
+    private int depth;
+    private JSONPathProfile.PathStats fieldPath;
+    private JSONPathProfile.PathStats currentPath;
+    private long offset;
+
+    ProfilingJsonParser(JsonParser parser, JSONPathProfile pathProfile) {
+        super(parser);
+        this.pathProfile = pathProfile;
+        this.currentPath = pathProfile.getRoot();
+    }
+
+    /**
+     * @return the path of the last returned token
+     */
+    JSONPathProfile.PathStats getCurrentPath() {
+        return currentPath;
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        JsonToken token = delegate.nextToken();
+        if (token == null) {
+            return null;
+        }
+
+        JSONPathProfile.PathStats path;
+        switch (token) {
+            case START_OBJECT:
+            case START_ARRAY:
+                path = valuePath();
+                if (depth == containers.length) {
+                    containers = Arrays.copyOf(containers, depth * 2);
+                    arrays = Arrays.copyOf(arrays, depth * 2);
+                }
+                containers[depth] = path;
+                arrays[depth] = (token == JsonToken.START_ARRAY);
+                depth++;
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                path = containers[--depth];
+                break;
+            case FIELD_NAME:
+                fieldPath = pathProfile.getChild(containers[depth - 1], delegate.currentName());
+                path = fieldPath;
+                break;
+            default:
+                path = valuePath();
+                break;
+        }
+
+        JsonLocation location = delegate.currentLocation();
+        long tokenEndOffset = (location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset());
+        if (tokenEndOffset >= offset) {
+            path.bytes += tokenEndOffset - offset;
+            offset = tokenEndOffset;
+        }
+        path.tokenCount++;
+        currentPath = path;
+
+        return token;
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+        JsonToken token = nextToken();
+        if (token == JsonToken.FIELD_NAME) {
+            token = nextToken();
+        }
+        return token;
+    }
+
+    @Override
+    public JsonParser skipChildren() throws IOException {
+        JsonToken token = delegate.currentToken();
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            return this;
+        }
+        int skipDepth = 1;
+        while (skipDepth > 0 && (token = nextToken()) != null) {
+            if (token.isStructStart()) {
+                skipDepth++;
+            } else if (token.isStructEnd()) {
+                skipDepth--;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the path of the value that starts with the current token, counting the value
+     */
+    private JSONPathProfile.PathStats valuePath() {
+        JSONPathProfile.PathStats path;
+        if (depth == 0) {
+            path = pathProfile.getRoot();
+        } else if (arrays[depth - 1]) {
+            path = pathProfile.getChild(containers[depth - 1], null);
+        } else {
+            path = fieldPath;
+        }
+        if (depth == 0 || path != containers[depth - 1]) {
+            path.count++;
+        }
+        return path;
+    }
+}
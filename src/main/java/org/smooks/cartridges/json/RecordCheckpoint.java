@@ -0,0 +1,114 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+/**
+ * Position of the last completed top-level JSON record.
+ * <p/>
+ * A top-level record is an element of the root JSON array. The {@link JSONReader} publishes a checkpoint to the
+ * {@link RecordCheckpointListener} after each completed record. Supplying a checkpoint back to the reader (see
+ * {@link JSONReader#RESUME_CHECKPOINT_TYPED_KEY}) makes it skip straight to the checkpoint offset and continue with
+ * the next record, instead of reprocessing the stream from the beginning.
+ * <p/>
+ * The offset is either a byte offset (the JSON stream was read from an {@link java.io.InputStream}) or a character
+ * offset (the JSON stream was read from a {@link java.io.Reader}). The unused offset is <code>-1</code>.
+ */
+public class RecordCheckpoint {
+
+    private final long recordCount;
+    private final long byteOffset;
+    private final long charOffset;
+    private final String context;
+
+    /**
+     * @param recordCount The number of records completed up to this checkpoint.
+     * @param byteOffset  The byte offset directly after the last completed record, or -1 if not available.
+     * @param charOffset  The character offset directly after the last completed record, or -1 if not available.
+     * @param context     The JSON text that reopens the containers enclosing the records, e.g. "[" for the root array.
+     */
+    public RecordCheckpoint(long recordCount, long byteOffset, long charOffset, String context) {
+        if (byteOffset < 0 && charOffset < 0) {
+            throw new IllegalArgumentException("Either 'byteOffset' or 'charOffset' must be defined.");
+        }
+        if (context == null) {
+            throw new IllegalArgumentException("null 'context' arg in method call.");
+        }
+        this.recordCount = recordCount;
+        this.byteOffset = byteOffset;
+        this.charOffset = charOffset;
+        this.context = context;
+    }
+
+    /**
+     * @return the number of records completed up to this checkpoint
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return the byte offset directly after the last completed record, or -1 if the stream was read as characters
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * @return the character offset directly after the last completed record, or -1 if the stream was read as bytes
+     */
+    public long getCharOffset() {
+        return charOffset;
+    }
+
+    /**
+     * @return the JSON text that reopens the containers enclosing the records
+     */
+    public String getContext() {
+        return context;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordCheckpoint{recordCount=" + recordCount + ", byteOffset=" + byteOffset + ", charOffset=" + charOffset + ", context='" + context + "'}";
+    }
+}
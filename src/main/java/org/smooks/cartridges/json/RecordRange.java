@@ -0,0 +1,116 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+/**
+ * A contiguous range of top-level records, as located by a {@link JSONRecordIndex}.
+ * <p/>
+ * Put a range on the {@link org.smooks.api.ExecutionContext} under {@link JSONReader#RECORD_RANGE_TYPED_KEY} to make
+ * the {@link JSONReader} skip straight to the first record of the range and stop after its last record.
+ */
+public class RecordRange {
+
+    private final long fromRecord;
+    private final long toRecord;
+    private final long startOffset;
+    private final long endOffset;
+
+    /**
+     * @param fromRecord  The index of the first record in the range (inclusive).
+     * @param toRecord    The index of the record following the range (exclusive).
+     * @param startOffset The byte offset of the first record in the range.
+     * @param endOffset   The byte offset directly after the last record in the range.
+     */
+    public RecordRange(long fromRecord, long toRecord, long startOffset, long endOffset) {
+        if (fromRecord < 0 || toRecord < fromRecord) {
+            throw new IllegalArgumentException("Invalid record range [" + fromRecord + ", " + toRecord + ").");
+        }
+        if (startOffset < 0 || endOffset < startOffset) {
+            throw new IllegalArgumentException("Invalid record offsets [" + startOffset + ", " + endOffset + ").");
+        }
+        this.fromRecord = fromRecord;
+        this.toRecord = toRecord;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * @return the index of the first record in the range
+     */
+    public long getFromRecord() {
+        return fromRecord;
+    }
+
+    /**
+     * @return the index of the record following the range
+     */
+    public long getToRecord() {
+        return toRecord;
+    }
+
+    /**
+     * @return the byte offset of the first record in the range
+     */
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @return the byte offset directly after the last record in the range
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @return the number of records in the range
+     */
+    public long getRecordCount() {
+        return toRecord - fromRecord;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordRange{fromRecord=" + fromRecord + ", toRecord=" + toRecord + ", startOffset=" + startOffset + ", endOffset=" + endOffset + "}";
+    }
+}
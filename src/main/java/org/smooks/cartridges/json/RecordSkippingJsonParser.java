@@ -0,0 +1,202 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.ContentReference;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the top-level records of a UTF-8 JSON stream one at a time, skipping the records that are malformed.
+ * <p/>
+ * A {@link JSONRecordScanner} finds the record boundaries and captures the bytes of each record. Each record is parsed
+ * once, with a parser over its captured bytes, and its tokens are recorded into a batch that is only replayed when the
+ * whole record turned out to be well-formed, so that no token of a malformed record is returned. The records are
+ * returned as a sequence of root values: the tokens of the root array itself aren't returned.
+ * <p/>
+ * A record that exceeds one of the input limits of the factory is skipped like a malformed record. The maximum
+ * document length applies to the whole stream instead: exceeding it fails the stream.
+ */
+final class RecordSkippingJsonParser extends TokenBatchJsonParser {
+
+    static final int CONTENT_LIMIT = 1024;
+
+    private final JsonFactory jsonFactory;
+    private final InputStream inputStream;
+    private final JSONRecordScanner scanner;
+    private final long offsetBase;
+    private final long recordLimit;
+    private final boolean recordLocations;
+    private final MalformedRecordListener malformedRecordListener;
+    private final EventBatch recordBatch = new EventBatch(64);
+    private long recordIndex;
+    private long recordStartOffset;
+    private boolean endOfRecords;
+    private boolean closed;
+
+    /**
+     * @param jsonFactory             The factory of the record parsers, holding the input limits.
+     * @param inputStream             The JSON stream, positioned at the start of the root array or of the next record.
+     * @param lineDelimited           The records are the lines of a newline delimited JSON stream.
+     * @param offsetBase              The offset of the stream, added to the offsets of the malformed records.
+     * @param firstRecordIndex        The index of the first record of the stream.
+     * @param recordLimit             The index of the record at which parsing stops.
+     * @param recordLocations         Record the location of every token. Costs a {@link JsonLocation} per token.
+     * @param malformedRecordListener Receives the skipped records.
+     */
+    RecordSkippingJsonParser(JsonFactory jsonFactory, InputStream inputStream, boolean lineDelimited, long offsetBase, long firstRecordIndex, long recordLimit, boolean recordLocations,
+                             MalformedRecordListener malformedRecordListener) {
+        super(jsonFactory.getParserFeatures(), recordLocations);
+        this.jsonFactory = jsonFactory;
+        this.inputStream = inputStream;
+        this.scanner = new JSONRecordScanner(inputStream, lineDelimited, true, jsonFactory.streamReadConstraints().getMaxDocumentLength());
+        this.offsetBase = offsetBase;
+        this.recordIndex = firstRecordIndex;
+        this.recordLimit = recordLimit;
+        this.recordLocations = recordLocations;
+        this.malformedRecordListener = malformedRecordListener;
+    }
+
+    @Override
+    EventBatch nextBatch(EventBatch replayed) throws IOException {
+        return (nextRecord() ? recordBatch : null);
+    }
+
+    @Override
+    public JsonLocation getCurrentLocation() {
+        JsonLocation location = super.getCurrentLocation();
+        if (location == JsonLocation.NA) {
+            return location;
+        }
+        return new JsonLocation(ContentReference.unknown(), recordStartOffset + location.getByteOffset(), -1, -1, -1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        inputStream.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Record the tokens of the next well-formed record.
+     *
+     * @return false when there are no more records
+     */
+    private boolean nextRecord() throws IOException {
+        while (!endOfRecords && recordIndex < recordLimit) {
+            try {
+                if (!scanner.next()) {
+                    break;
+                }
+            } catch (EOFException e) {
+                if (scanner.getEndOffset() >= 0 || scanner.getStartOffset() < 0) {
+                    // Not inside a record, so the stream itself is truncated...
+                    throw e;
+                }
+                // The last record isn't terminated...
+                endOfRecords = true;
+                skipRecord(scanner.getStartOffset() + scanner.getRecordLength(), e);
+                break;
+            }
+
+            Exception error = recordRecord(scanner.getRecord(), scanner.getRecordLength());
+            if (error == null) {
+                recordStartOffset = scanner.getStartOffset();
+                recordIndex++;
+                return true;
+            }
+            skipRecord(scanner.getEndOffset(), error);
+        }
+        endOfRecords = true;
+        return false;
+    }
+
+    private void skipRecord(long endOffset, Exception error) {
+        String content = new String(scanner.getRecord(), 0, Math.min(scanner.getRecordLength(), CONTENT_LIMIT), StandardCharsets.UTF_8);
+        malformedRecordListener.onMalformedRecord(new MalformedRecord(recordIndex, offsetBase + scanner.getStartOffset(), offsetBase + endOffset, content, error));
+        recordIndex++;
+    }
+
+    /**
+     * Parse the record into the record batch.
+     *
+     * @return the parse error, or null if the record is well-formed
+     */
+    private Exception recordRecord(byte[] record, int length) {
+        recordBatch.clear();
+        try (JsonParser parser = jsonFactory.createParser(record, 0, length)) {
+            int depth = 0;
+            int rootValueCount = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (depth == 0 && ++rootValueCount > 1) {
+                    throw new JsonParseException(parser, "Unexpected content after the end of the record.");
+                }
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                } else if (token == JsonToken.VALUE_STRING) {
+                    jsonFactory.streamReadConstraints().validateStringLength(parser.getTextLength());
+                }
+                recordBatch.add(token, parser, recordLocations);
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+}
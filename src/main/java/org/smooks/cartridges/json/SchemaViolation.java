@@ -0,0 +1,124 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+/**
+ * A JSON value that doesn't conform to the schema of the {@link JSONReader} (see the <code>schema</code> option).
+ * <p/>
+ * The location is the location of the token at which the violation was detected: the value itself, or the end of the
+ * object or array for a missing required property or too few items. The byte or character offset that isn't available
+ * is <code>-1</code>.
+ */
+public class SchemaViolation {
+
+    private final String pointer;
+    private final String message;
+    private final long lineNumber;
+    private final long columnNumber;
+    private final long byteOffset;
+    private final long charOffset;
+
+    /**
+     * @param pointer      The JSON Pointer of the value, e.g. "/orders/0/amount".
+     * @param message      The description of the violation.
+     * @param lineNumber   The line number of the location, or -1 if not available.
+     * @param columnNumber The column number of the location, or -1 if not available.
+     * @param byteOffset   The byte offset of the location, or -1 if not available.
+     * @param charOffset   The character offset of the location, or -1 if not available.
+     */
+    public SchemaViolation(String pointer, String message, long lineNumber, long columnNumber, long byteOffset, long charOffset) {
+        this.pointer = pointer;
+        this.message = message;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.byteOffset = byteOffset;
+        this.charOffset = charOffset;
+    }
+
+    /**
+     * @return the JSON Pointer of the value
+     */
+    public String getPointer() {
+        return pointer;
+    }
+
+    /**
+     * @return the description of the violation
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the line number of the location, or -1 if not available
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the column number of the location, or -1 if not available
+     */
+    public long getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * @return the byte offset of the location, or -1 if not available
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * @return the character offset of the location, or -1 if not available
+     */
+    public long getCharOffset() {
+        return charOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaViolation{pointer='" + pointer + "', message='" + message + "', lineNumber=" + lineNumber + ", columnNumber=" + columnNumber + ", byteOffset=" + byteOffset + ", charOffset=" + charOffset + "}";
+    }
+}
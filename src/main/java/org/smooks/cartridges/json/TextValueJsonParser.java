@@ -0,0 +1,164 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.core.json.PackageVersion;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Base of the parsers that hold the text of the scalar tokens rather than their values. The number and binary values
+ * are derived from the token text when they are requested.
+ */
+abstract class TextValueJsonParser extends ParserMinimalBase {
+
+    private ObjectCodec codec;
+
+    TextValueJsonParser(int features) {
+        super(features);
+    }
+
+    @Override
+    public boolean hasTextCharacters() {
+        return _currToken == JsonToken.VALUE_STRING || _currToken == JsonToken.VALUE_NUMBER_INT || _currToken == JsonToken.VALUE_NUMBER_FLOAT;
+    }
+
+    @Override
+    public byte[] getBinaryValue(Base64Variant base64Variant) throws IOException {
+        if (_currToken != JsonToken.VALUE_STRING) {
+            _reportError("Current token (" + _currToken + ") not VALUE_STRING, can not access as binary");
+        }
+        return base64Variant.decode(getText());
+    }
+
+    @Override
+    public ObjectCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public void setCodec(ObjectCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public Version version() {
+        return PackageVersion.VERSION;
+    }
+
+    @Override
+    public Number getNumberValue() throws IOException {
+        if (_currToken == JsonToken.VALUE_NUMBER_INT) {
+            BigInteger value = getBigIntegerValue();
+            if (value.bitLength() < 32) {
+                return value.intValue();
+            } else if (value.bitLength() < 64) {
+                return value.longValue();
+            }
+            return value;
+        }
+        return getDoubleValue();
+    }
+
+    @Override
+    public NumberType getNumberType() throws IOException {
+        if (_currToken == JsonToken.VALUE_NUMBER_INT) {
+            int bitLength = getBigIntegerValue().bitLength();
+            return (bitLength < 32 ? NumberType.INT : bitLength < 64 ? NumberType.LONG : NumberType.BIG_INTEGER);
+        } else if (_currToken == JsonToken.VALUE_NUMBER_FLOAT) {
+            return NumberType.DOUBLE;
+        }
+        return null;
+    }
+
+    @Override
+    public int getIntValue() throws IOException {
+        return getNumberValueOfType().intValue();
+    }
+
+    @Override
+    public long getLongValue() throws IOException {
+        return getNumberValueOfType().longValue();
+    }
+
+    @Override
+    public BigInteger getBigIntegerValue() throws IOException {
+        if (_currToken == JsonToken.VALUE_NUMBER_FLOAT) {
+            return getDecimalValue().toBigInteger();
+        }
+        return new BigInteger(numberText());
+    }
+
+    @Override
+    public float getFloatValue() throws IOException {
+        return (float) getDoubleValue();
+    }
+
+    @Override
+    public double getDoubleValue() throws IOException {
+        return Double.parseDouble(numberText());
+    }
+
+    @Override
+    public BigDecimal getDecimalValue() throws IOException {
+        return new BigDecimal(numberText());
+    }
+
+    private Number getNumberValueOfType() throws IOException {
+        return (_currToken == JsonToken.VALUE_NUMBER_INT ? getBigIntegerValue() : getDecimalValue());
+    }
+
+    private String numberText() throws IOException {
+        if (_currToken != JsonToken.VALUE_NUMBER_INT && _currToken != JsonToken.VALUE_NUMBER_FLOAT) {
+            _reportError("Current token (" + _currToken + ") not numeric, can not use numeric value accessors");
+        }
+        return getText();
+    }
+}
@@ -0,0 +1,278 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.ContentReference;
+import com.fasterxml.jackson.core.json.JsonReadContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Replays the tokens that were recorded from a source {@link JsonParser} into {@link EventBatch event batches}.
+ * <p/>
+ * The batches are supplied by the subclass, one at a time, and the token text is handed out straight from the batch
+ * buffers. Token locations are only available when they were recorded.
+ */
+abstract class TokenBatchJsonParser extends TextValueJsonParser {
+
+    private final boolean recordLocations;
+
+    EventBatch batch;
+    private int index;
+    private int current;
+
+    private JsonReadContext parsingContext = JsonReadContext.createRootContext(null);
+
+    /**
+     * @param features        The parser features.
+     * @param recordLocations The locations of the tokens are recorded in the batches.
+     */
+    TokenBatchJsonParser(int features, boolean recordLocations) {
+        super(features);
+        this.recordLocations = recordLocations;
+    }
+
+    /**
+     * @param replayed The batch whose tokens were all replayed, or null before the first batch.
+     * @return the next batch, or null when there are no more tokens
+     */
+    abstract EventBatch nextBatch(EventBatch replayed) throws IOException;
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        while (batch == null || index == batch.size) {
+            EventBatch next = nextBatch(batch);
+            if (next == null) {
+                return (_currToken = null);
+            }
+            batch = next;
+            index = 0;
+        }
+
+        current = index++;
+        JsonToken token = batch.tokens[current];
+        switch (token) {
+            case START_OBJECT:
+                parsingContext = parsingContext.createChildObjectContext(-1, -1);
+                break;
+            case START_ARRAY:
+                parsingContext = parsingContext.createChildArrayContext(-1, -1);
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                parsingContext = parsingContext.clearAndGetParent();
+                break;
+            case FIELD_NAME:
+                parsingContext.setCurrentName(batch.names[current]);
+                break;
+            default:
+                break;
+        }
+        return (_currToken = token);
+    }
+
+    @Override
+    protected void _handleEOF() throws JsonParseException {
+    }
+
+    @Override
+    public String getCurrentName() {
+        if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+            JsonReadContext parent = parsingContext.getParent();
+            if (parent != null) {
+                return parent.getCurrentName();
+            }
+        }
+        return parsingContext.getCurrentName();
+    }
+
+    @Override
+    public void overrideCurrentName(String name) {
+        try {
+            parsingContext.setCurrentName(name);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public JsonStreamContext getParsingContext() {
+        return parsingContext;
+    }
+
+    @Override
+    public JsonLocation getCurrentLocation() {
+        if (batch == null || !recordLocations) {
+            return JsonLocation.NA;
+        }
+        return new JsonLocation(ContentReference.unknown(), batch.byteOffsets[current], batch.charOffsets[current], -1, -1);
+    }
+
+    @Override
+    public JsonLocation getTokenLocation() {
+        return getCurrentLocation();
+    }
+
+    @Override
+    public String getText() {
+        if (_currToken == null) {
+            return null;
+        }
+        switch (_currToken) {
+            case FIELD_NAME:
+                return batch.names[current];
+            case VALUE_STRING:
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return new String(batch.text, batch.textOffsets[current], batch.textLengths[current]);
+            default:
+                return _currToken.asString();
+        }
+    }
+
+    @Override
+    public char[] getTextCharacters() {
+        if (hasTextCharacters()) {
+            return batch.text;
+        } else if (_currToken == JsonToken.FIELD_NAME) {
+            return batch.names[current].toCharArray();
+        }
+        return (_currToken != null ? _currToken.asCharArray() : null);
+    }
+
+    @Override
+    public int getTextLength() {
+        if (hasTextCharacters()) {
+            return batch.textLengths[current];
+        }
+        String text = getText();
+        return (text != null ? text.length() : 0);
+    }
+
+    @Override
+    public int getTextOffset() {
+        return (hasTextCharacters() ? batch.textOffsets[current] : 0);
+    }
+
+    /**
+     * A batch of recorded tokens. The token text of a batch is stored back to back in a single character buffer.
+     */
+    static final class EventBatch {
+
+        private JsonToken[] tokens;
+        private String[] names;
+        private int[] textOffsets;
+        private int[] textLengths;
+        private long[] byteOffsets;
+        private long[] charOffsets;
+        private char[] text = new char[4096];
+        int size;
+        private int textSize;
+        boolean last;
+        Throwable error;
+
+        /**
+         * @param capacity The initial number of tokens of the batch.
+         */
+        EventBatch(int capacity) {
+            tokens = new JsonToken[capacity];
+            names = new String[capacity];
+            textOffsets = new int[capacity];
+            textLengths = new int[capacity];
+            byteOffsets = new long[capacity];
+            charOffsets = new long[capacity];
+        }
+
+        /**
+         * Record the current token of the source parser, growing the batch if it's full.
+         */
+        void add(JsonToken token, JsonParser source, boolean recordLocations) throws IOException {
+            if (size == tokens.length) {
+                int capacity = Math.max(size * 2, 16);
+                tokens = Arrays.copyOf(tokens, capacity);
+                names = Arrays.copyOf(names, capacity);
+                textOffsets = Arrays.copyOf(textOffsets, capacity);
+                textLengths = Arrays.copyOf(textLengths, capacity);
+                byteOffsets = Arrays.copyOf(byteOffsets, capacity);
+                charOffsets = Arrays.copyOf(charOffsets, capacity);
+            }
+
+            int i = size++;
+            tokens[i] = token;
+            if (token == JsonToken.FIELD_NAME) {
+                names[i] = source.getCurrentName();
+            } else if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                appendText(i, source.getTextCharacters(), source.getTextOffset(), source.getTextLength());
+            }
+            if (recordLocations) {
+                JsonLocation location = source.currentLocation();
+                byteOffsets[i] = location.getByteOffset();
+                charOffsets[i] = location.getCharOffset();
+            }
+        }
+
+        void clear() {
+            Arrays.fill(names, 0, size, null);
+            size = 0;
+            textSize = 0;
+            last = false;
+            error = null;
+        }
+
+        private void appendText(int i, char[] chars, int offset, int length) {
+            if (textSize + length > text.length) {
+                text = Arrays.copyOf(text, Math.max(textSize + length, text.length * 2));
+            }
+            System.arraycopy(chars, offset, text, textSize, length);
+            textOffsets[i] = textSize;
+            textLengths[i] = length;
+            textSize += length;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.io.payload.StringResult;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ByteBufferInputStreamTest {
+
+    private static final String INPUT = "\uFEFF[ {\"a\":\"caf\u00e9 \u20ac\",\"b\":[1,2.5e3,true,null]}, {\"c\":{}} ,\"\\u00e9\\n\", 12345678901234567890 ]";
+
+    @Test
+    public void test_read() {
+        ByteBuffer first = ByteBuffer.wrap(new byte[]{9, 1, 2, 3});
+        first.position(1);
+        ByteBuffer second = ByteBuffer.allocateDirect(0);
+        ByteBuffer third = ByteBuffer.allocateDirect(3);
+        third.put(new byte[]{4, 5, 6}).flip();
+        ByteBufferInputStream inputStream = new ByteBufferInputStream(first, second, third);
+
+        assertEquals(6, inputStream.available());
+        assertEquals(1, inputStream.read());
+        inputStream.mark(10);
+        byte[] bytes = new byte[4];
+        assertEquals(2, inputStream.read(bytes, 0, 4));
+        assertEquals(2, bytes[0]);
+        assertEquals(3, bytes[1]);
+        assertEquals(2, inputStream.skip(2));
+        inputStream.reset();
+        assertEquals(2, inputStream.read());
+        assertEquals(3, inputStream.skip(3));
+        assertEquals(6, inputStream.read());
+        assertEquals(-1, inputStream.read());
+        assertEquals(-1, inputStream.read(bytes, 0, 4));
+
+        // The buffers passed in are left untouched...
+        assertEquals(1, first.position());
+        assertEquals(0, third.position());
+    }
+
+    @Test
+    public void test_parse_buffers() throws Exception {
+        byte[] json = INPUT.getBytes(StandardCharsets.UTF_8);
+        String expected = filter(new ByteArrayInputStream(json), null);
+
+        // Split into direct buffers at every possible position, including the middle of multi-byte characters...
+        for (int split = 0; split <= json.length; split++) {
+            List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+            buffers.add(directBuffer(json, 0, split));
+            buffers.add(directBuffer(json, split, json.length - split));
+
+            assertEquals(expected, filter(new UnreadableByteBufferInputStream(buffers), null));
+        }
+
+        ByteBuffer heapBuffer = ByteBuffer.wrap(json);
+        assertEquals(expected, filter(new UnreadableByteBufferInputStream(heapBuffer), null));
+    }
+
+    @Test
+    public void test_parse_range() throws Exception {
+        byte[] json = INPUT.getBytes(StandardCharsets.UTF_8);
+        JSONRecordIndex index = JSONRecordIndex.build(new ByteArrayInputStream(json));
+
+        for (int from = 0; from < index.size(); from++) {
+            RecordRange range = index.getRange(from, index.size());
+            String expected = filter(new ByteArrayInputStream(json), range);
+
+            assertEquals(expected, filter(new ByteBufferInputStream(directBuffer(json, 0, 7), directBuffer(json, 7, json.length - 7)), range));
+        }
+    }
+
+    @Test
+    public void test_parse_messages() throws Exception {
+        List<ByteBuffer> messages = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < 3; i++) {
+            messages.add(directBuffer(("{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8), 0, 8));
+        }
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRootValueSequence(true));
+
+        List<RecordCheckpoint> checkpoints = new ArrayList<RecordCheckpoint>();
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, checkpoints::add);
+        StringResult result = new StringResult();
+        smooks.filterSource(executionContext, new StreamSource(ByteBufferInputStream.ofMessages(messages)), result);
+
+        assertEquals("<json><element><id>0</id></element><element><id>1</id></element><element><id>2</id></element></json>", result.toString());
+        assertEquals(3, checkpoints.size());
+        assertEquals("", checkpoints.get(0).getContext());
+
+        // Resume the batch after its first message...
+        executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.RESUME_CHECKPOINT_TYPED_KEY, checkpoints.get(0));
+        result = new StringResult();
+        smooks.filterSource(executionContext, new StreamSource(ByteBufferInputStream.ofMessages(messages)), result);
+
+        assertEquals("<json><element><id>1</id></element><element><id>2</id></element></json>", result.toString());
+    }
+
+    private static String filter(java.io.InputStream jsonStream, RecordRange range) {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator());
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        if (range != null) {
+            executionContext.put(JSONReader.RECORD_RANGE_TYPED_KEY, range);
+        }
+        StringResult result = new StringResult();
+
+        smooks.filterSource(executionContext, new StreamSource(jsonStream), result);
+
+        return result.toString();
+    }
+
+    private static ByteBuffer directBuffer(byte[] bytes, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        buffer.put(bytes, offset, length).flip();
+        return buffer;
+    }
+
+    /**
+     * Fails when read as a stream, to prove that the reader parses the buffers in place.
+     */
+    private static class UnreadableByteBufferInputStream extends ByteBufferInputStream {
+
+        private UnreadableByteBufferInputStream(ByteBuffer... buffers) {
+            super(buffers);
+        }
+
+        private UnreadableByteBufferInputStream(List<ByteBuffer> buffers) {
+            super(buffers);
+        }
+
+        @Override
+        public int read() {
+            throw new AssertionError("Buffers were copied");
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            throw new AssertionError("Buffers were copied");
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.smooks.Smooks;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures how the throughput of concurrent Smooks executions with the {@link JSONReader} scales with the number of
+ * threads, and records the lock contention of each run with Java Flight Recorder.
+ * <p/>
+ * Each run filters small JSON messages on 1..N threads, for each combination of:
+ * <ul>
+ * <li>platform or virtual threads (virtual threads need Java 21 and are skipped otherwise),</li>
+ * <li>pooled readers (<code>reader.pool.size</code> -1, the readers are reused) or unpooled readers (a new reader per
+ * execution),</li>
+ * <li>a Smooks instance shared by all threads, so that the readers share the {@link JSONReaderProfile} with its
+ * Jackson factory, or a Smooks instance, and so a profile and factory, per thread.</li>
+ * </ul>
+ * The scaling efficiency is the throughput divided by the thread count times the single thread throughput of the same
+ * combination. The lock columns count the <code>jdk.JavaMonitorEnter</code> and <code>jdk.ThreadPark</code> events
+ * (and <code>jdk.VirtualThreadPinned</code> on virtual threads) of the worker threads that took longer than the
+ * threshold, with the class that was contended most.
+ * <p/>
+ * Only runs with the <code>benchmark</code> Maven profile:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=ConcurrentReaderBenchmark -Dbenchmark.maxThreads=64 -Dbenchmark.messagesPerThread=20000</pre>
+ */
+public class ConcurrentReaderBenchmark {
+
+    private static final int MAX_THREADS = Integer.getInteger("benchmark.maxThreads", Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+    private static final int MESSAGES_PER_THREAD = Integer.getInteger("benchmark.messagesPerThread", 1000);
+    private static final int MESSAGE_SIZE_KB = Integer.getInteger("benchmark.messageSizeKb", 2);
+    private static final long LOCK_THRESHOLD_MICROS = Long.getLong("benchmark.lockThresholdMicros", 100);
+
+    private static final String WORKER_THREAD_NAME = "benchmark-worker-";
+
+    private static final String[] LOCK_EVENTS = {"jdk.JavaMonitorEnter", "jdk.ThreadPark", "jdk.VirtualThreadPinned"};
+
+    @Test
+    public void benchmark() throws Exception {
+        byte[] message = StructuralPreScanBenchmark.generateDocument(MESSAGE_SIZE_KB * 1024);
+        Method ofVirtual = getOfVirtualMethod();
+
+        System.out.printf("%d available processors, %d byte messages, %d messages per thread, lock threshold %d us%n",
+                Runtime.getRuntime().availableProcessors(), message.length, MESSAGES_PER_THREAD, LOCK_THRESHOLD_MICROS);
+        System.out.printf("%-8s %-8s %-10s %7s %10s %6s %8s %10s  %s%n", "threads", "readers", "smooks", "count", "msg/s", "eff", "locks", "blocked ms", "most contended");
+        for (boolean virtual : new boolean[]{false, true}) {
+            if (virtual && ofVirtual == null) {
+                System.out.println("virtual threads: not available on Java " + System.getProperty("java.version") + ", skipped");
+                continue;
+            }
+            for (boolean pooled : new boolean[]{true, false}) {
+                for (boolean sharedSmooks : new boolean[]{true, false}) {
+                    run(message, virtual ? ofVirtual : null, pooled, sharedSmooks);
+                }
+            }
+        }
+    }
+
+    private static void run(byte[] message, Method ofVirtual, boolean pooled, boolean sharedSmooks) throws Exception {
+        Smooks[] smooks = new Smooks[MAX_THREADS];
+        for (int i = 0; i < smooks.length; i++) {
+            smooks[i] = (sharedSmooks && i > 0 ? smooks[0] : createSmooks(pooled));
+        }
+
+        // Warm up...
+        for (int i = 0; i < 3; i++) {
+            runThreads(Math.min(MAX_THREADS, 4), smooks, message, ofVirtual);
+        }
+
+        double singleThreadThroughput = 0;
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            int threadCount = threads;
+            LockStats lockStats = new LockStats();
+            long nanos = recordLocks(lockStats, () -> runThreads(threadCount, smooks, message, ofVirtual));
+
+            double throughput = threads * (double) MESSAGES_PER_THREAD / (nanos / 1e9);
+            if (threads == 1) {
+                singleThreadThroughput = throughput;
+            }
+            System.out.printf("%-8s %-8s %-10s %7d %10.0f %6.2f %8d %10.1f  %s%n", (ofVirtual != null ? "virtual" : "platform"), (pooled ? "pooled" : "unpooled"),
+                    (sharedSmooks ? "shared" : "per-thread"), threads, throughput, throughput / (threads * singleThreadThroughput),
+                    lockStats.events, lockStats.blockedNanos / 1e6, lockStats.getMostContended());
+        }
+
+        for (int i = 0; i < smooks.length; i++) {
+            if (i == 0 || !sharedSmooks) {
+                smooks[i].close();
+            }
+        }
+    }
+
+    private static Smooks createSmooks(boolean pooled) throws Exception {
+        String config = "<smooks-resource-list xmlns=\"https://www.smooks.org/xsd/smooks-2.0.xsd\" xmlns:json=\"https://www.smooks.org/xsd/smooks/json-1.3.xsd\">"
+                + "<params><param name=\"reader.pool.size\">" + (pooled ? -1 : 0) + "</param></params>"
+                + "<json:reader/>"
+                + "</smooks-resource-list>";
+        return new Smooks(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Filter the messages on the threads, starting them all at once.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private static long runThreads(int threadCount, Smooks[] smooks, byte[] message, Method ofVirtual) throws Exception {
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Smooks threadSmooks = smooks[i];
+            Runnable task = () -> {
+                try {
+                    startGate.await();
+                    for (int j = 0; j < MESSAGES_PER_THREAD; j++) {
+                        threadSmooks.filterSource(threadSmooks.createExecutionContext(), new StreamSource(new ByteArrayInputStream(message)));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            };
+            String name = WORKER_THREAD_NAME + i;
+            threads.add(ofVirtual != null ? startVirtualThread(ofVirtual, name, task) : startPlatformThread(name, task));
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (failure.get() != null) {
+            throw new AssertionError("Filtering failed.", failure.get());
+        }
+        return nanos;
+    }
+
+    private interface TimedRun {
+        long run() throws Exception;
+    }
+
+    /**
+     * Record the lock events of a run with Java Flight Recorder.
+     */
+    private static long recordLocks(LockStats lockStats, TimedRun timedRun) throws Exception {
+        Path recordingFile = Files.createTempFile("concurrent-reader-benchmark", ".jfr");
+        try {
+            long nanos;
+            Instant start;
+            try (Recording recording = new Recording()) {
+                for (String lockEvent : LOCK_EVENTS) {
+                    recording.enable(lockEvent).withThreshold(Duration.ofNanos(LOCK_THRESHOLD_MICROS * 1000)).withStackTrace();
+                }
+                recording.start();
+                start = Instant.now();
+                nanos = timedRun.run();
+                recording.stop();
+                recording.dump(recordingFile);
+            }
+
+            for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+                // Skip the other threads (e.g. idle pool threads), and the workers waiting for the start gate...
+                if (!isWorkerEvent(event) || event.getStartTime().isBefore(start) || isStartGateWait(event)) {
+                    continue;
+                }
+                lockStats.add(event);
+            }
+            return nanos;
+        } finally {
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+
+    private static boolean isWorkerEvent(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        return thread != null && thread.getJavaName() != null && thread.getJavaName().startsWith(WORKER_THREAD_NAME);
+    }
+
+    private static boolean isStartGateWait(RecordedEvent event) {
+        return event.getStackTrace() != null && event.getStackTrace().getFrames().stream()
+                .anyMatch(frame -> frame.getMethod().getType().getName().equals(CountDownLatch.class.getName()));
+    }
+
+    private static Thread startPlatformThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.start();
+        return thread;
+    }
+
+    private static Thread startVirtualThread(Method ofVirtual, String name, Runnable task) throws Exception {
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        Object builder = builderClass.getMethod("name", String.class).invoke(ofVirtual.invoke(null), name);
+        return (Thread) builderClass.getMethod("start", Runnable.class).invoke(builder, task);
+    }
+
+    /**
+     * @return <code>Thread.ofVirtual()</code>, or null before Java 21
+     */
+    private static Method getOfVirtualMethod() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static class LockStats {
+        private long events;
+        private long blockedNanos;
+        private final Map<String, Long> blockedNanosByClass = new HashMap<String, Long>();
+
+        private void add(RecordedEvent event) {
+            String contendedClass;
+            if (event.hasField("monitorClass")) {
+                contendedClass = getName(event.getClass("monitorClass"));
+            } else if (event.hasField("parkedClass")) {
+                contendedClass = getName(event.getClass("parkedClass"));
+            } else {
+                contendedClass = event.getEventType().getName();
+            }
+            events++;
+            blockedNanos += event.getDuration().toNanos();
+            blockedNanosByClass.merge(contendedClass, event.getDuration().toNanos(), Long::sum);
+        }
+
+        private static String getName(RecordedClass recordedClass) {
+            return (recordedClass != null ? recordedClass.getName() : "(unknown)");
+        }
+
+        private String getMostContended() {
+            return blockedNanosByClass.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(entry -> String.format("%s (%.1f ms)", entry.getKey(), entry.getValue() / 1e6))
+                    .orElse("-");
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.io.payload.StringResult;
+import org.smooks.io.payload.StringSource;
+import org.smooks.support.SmooksUtil;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class EventTapeCacheTest {
+
+    private static final String INPUT = "{\"some key\":[1,\"two\",null,{\"x\":true}]}";
+    private static final String EXPECTED = "<json><some_key><element>1</element><element>two</element><element></element><element><x>true</x></element></some_key></json>";
+
+    @Test
+    public void test_replay() throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setKeyWhitspaceReplacement("_").setEventTapeCacheSize(1024 * 1024));
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        assertEquals(EXPECTED, filter(smooks, executionContext, INPUT));
+        EventTapeCache eventTapeCache = executionContext.get(JSONReader.EVENT_TAPE_CACHE_TYPED_KEY);
+        assertEquals(0, eventTapeCache.getHitCount());
+        assertEquals(1, eventTapeCache.getMissCount());
+        assertEquals(1, eventTapeCache.size());
+
+        executionContext = smooks.createExecutionContext();
+        assertEquals(EXPECTED, filter(smooks, executionContext, INPUT));
+        assertSame(eventTapeCache, executionContext.get(JSONReader.EVENT_TAPE_CACHE_TYPED_KEY));
+        assertEquals(1, eventTapeCache.getHitCount());
+
+        // Same length, different bytes...
+        assertEquals(EXPECTED.replace("two", "TWO"), filter(smooks, smooks.createExecutionContext(), INPUT.replace("two", "TWO")));
+        assertEquals(2, eventTapeCache.getMissCount());
+        assertEquals(2, eventTapeCache.size());
+    }
+
+    @Test
+    public void test_not_cached() throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setKeyWhitspaceReplacement("_").setEventTapeCacheSize(1024 * 1024).setEventTapeCacheMaxDocumentSize(INPUT.length() - 1));
+
+        // Too big...
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        assertEquals(EXPECTED, filter(smooks, executionContext, INPUT));
+        assertEquals(EXPECTED, filter(smooks, executionContext, INPUT));
+        EventTapeCache eventTapeCache = executionContext.get(JSONReader.EVENT_TAPE_CACHE_TYPED_KEY);
+        assertEquals(0, eventTapeCache.getHitCount() + eventTapeCache.getMissCount());
+        assertEquals(0, eventTapeCache.size());
+
+        // Character streams aren't cached...
+        executionContext = smooks.createExecutionContext();
+        StringResult result = new StringResult();
+        smooks.filterSource(executionContext, new StringSource(INPUT), result);
+        assertEquals(EXPECTED, result.getResult());
+        assertNull(executionContext.get(JSONReader.EVENT_TAPE_CACHE_TYPED_KEY));
+    }
+
+    @Test
+    public void test_setters_invalidate_cache() throws Exception {
+        JSONReader reader = new JSONReader();
+        reader.setEventTapeCacheSize(1024 * 1024);
+        reader.initialize();
+        byte[] document = "{\"a\":[1,null]}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("<json><a><element>1</element><element></element></a></json>", parse(reader, document));
+        assertEquals("<json><a><element>1</element><element></element></a></json>", parse(reader, document));
+
+        // The cached events of the document are stale once the output settings change...
+        reader.setRootName("doc");
+        assertEquals("<doc><a><element>1</element><element></element></a></doc>", parse(reader, document));
+        reader.setArrayElementName("item");
+        assertEquals("<doc><a><item>1</item><item></item></a></doc>", parse(reader, document));
+        reader.setNullValueReplacement("null");
+        assertEquals("<doc><a><item>1</item><item>null</item></a></doc>", parse(reader, document));
+        reader.setScalarArrayDelimiter(",");
+        assertEquals("<doc><a>1,null</a></doc>", parse(reader, document));
+        reader.setLimit(0);
+        assertEquals("<doc></doc>", parse(reader, document));
+    }
+
+    @Test
+    public void test_eviction() throws Exception {
+        EventTapeCache eventTapeCache = new EventTapeCache(1024);
+        EventTape eventTape = record("[1]");
+        long entryWeight = 3 + eventTape.getWeight() + 64;
+
+        for (int i = 0; i < 10; i++) {
+            byte[] document = ("[" + i + "]").getBytes(StandardCharsets.UTF_8);
+            eventTapeCache.put(document, document.length, EventTapeCache.hash(document, document.length), eventTape);
+        }
+
+        assertEquals(1024 / entryWeight, eventTapeCache.size());
+        assertEquals(10 - eventTapeCache.size(), eventTapeCache.getEvictionCount());
+        assertEquals(eventTapeCache.size() * entryWeight, eventTapeCache.getWeight());
+
+        // The least recently used documents were evicted...
+        byte[] evicted = "[0]".getBytes(StandardCharsets.UTF_8);
+        byte[] kept = "[9]".getBytes(StandardCharsets.UTF_8);
+        assertNull(eventTapeCache.get(evicted, evicted.length, EventTapeCache.hash(evicted, evicted.length)));
+        assertSame(eventTape, eventTapeCache.get(kept, kept.length, EventTapeCache.hash(kept, kept.length)));
+    }
+
+    @Test
+    public void test_hash_collision() throws Exception {
+        EventTapeCache eventTapeCache = new EventTapeCache(1024 * 1024);
+        byte[] document = "[1]".getBytes(StandardCharsets.UTF_8);
+        byte[] otherDocument = "[2]".getBytes(StandardCharsets.UTF_8);
+
+        eventTapeCache.put(document, document.length, 42, record("[1]"));
+
+        assertNull(eventTapeCache.get(otherDocument, otherDocument.length, 42));
+    }
+
+    private static EventTape record(String json) throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setEventTapeCacheSize(1024 * 1024));
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        filter(smooks, executionContext, json);
+
+        byte[] document = json.getBytes(StandardCharsets.UTF_8);
+        return executionContext.get(JSONReader.EVENT_TAPE_CACHE_TYPED_KEY).get(document, document.length, EventTapeCache.hash(document, document.length));
+    }
+
+    private static String parse(JSONReader reader, byte[] document) throws Exception {
+        StringBuilder output = new StringBuilder();
+        reader.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                output.append('<').append(localName).append('>');
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                output.append("</").append(localName).append('>');
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                output.append(ch, start, length);
+            }
+        });
+        reader.setExecutionContext(new Smooks().createExecutionContext());
+        reader.parse(new InputSource(new ByteArrayInputStream(document)));
+        return output.toString();
+    }
+
+    private static String filter(Smooks smooks, ExecutionContext executionContext, String json) {
+        return SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+    }
+}
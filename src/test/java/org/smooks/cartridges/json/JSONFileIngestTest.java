@@ -0,0 +1,201 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.engine.lookup.GlobalParamsLookup;
+import org.smooks.io.payload.StringResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class JSONFileIngestTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private long totalBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.getRoot().toPath();
+        for (String group : new String[]{"a", "b"}) {
+            Files.createDirectory(directory.resolve(group));
+            for (int i = 1; i <= 5; i++) {
+                write(group + "/" + i + ".json", "{\"group\":\"" + group + "\",\"n\":" + i + "}");
+            }
+        }
+        write("z-bad.json", "{\"group\":");
+        Files.write(directory.resolve("notes.txt"), "not JSON".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_ingest_ordered() throws Exception {
+        Smooks smooks = newSmooks();
+        Map<Path, StringResult> results = new ConcurrentHashMap<Path, StringResult>();
+        List<IngestedFile> reported = Collections.synchronizedList(new ArrayList<IngestedFile>());
+
+        IngestReport report = new JSONFileIngest(smooks)
+                .setParallelism(4)
+                .setOrdered(true)
+                .setResultFactory(file -> results.computeIfAbsent(file, f -> new StringResult()))
+                .setListener((file, progress) -> reported.add(file))
+                .ingest(directory, "*.json");
+
+        assertEquals(11, report.getFileCount());
+        assertEquals(11, report.getCompletedFileCount());
+        assertEquals(1, report.getFailedFileCount());
+        assertEquals(totalBytes, report.getCompletedBytes());
+        assertEquals(1, report.getFailures().size());
+        assertEquals(directory.resolve("z-bad.json"), report.getFailures().get(0).getPath());
+        assertFalse(report.getFailures().get(0).isSuccess());
+
+        assertEquals(11, reported.size());
+        for (int i = 0; i < reported.size(); i++) {
+            assertEquals(i, reported.get(i).getIndex());
+        }
+        assertEquals(directory.resolve("a/1.json"), reported.get(0).getPath());
+        assertEquals("<json><group>b</group><n>3</n></json>", results.get(directory.resolve("b/3.json")).toString());
+
+        // The ingest leaves the reader pool of the Smooks instance alone...
+        assertNull(smooks.getApplicationContext().getRegistry().lookup(new GlobalParamsLookup(smooks.getApplicationContext().getRegistry())).getParameter("reader.pool.size", Object.class));
+    }
+
+    @Test
+    public void test_ingest_relative_glob() throws Exception {
+        IngestReport report = new JSONFileIngest(newSmooks()).setParallelism(2).ingest(directory, "a/*.json");
+
+        assertEquals(5, report.getFileCount());
+        assertEquals(0, report.getFailedFileCount());
+    }
+
+    @Test
+    public void test_ingest_grouped() throws Exception {
+        Map<Path, AtomicInteger> inFlight = new ConcurrentHashMap<Path, AtomicInteger>();
+        Map<Path, Set<String>> threads = new ConcurrentHashMap<Path, Set<String>>();
+        Map<Path, List<Path>> groupOrder = new ConcurrentHashMap<Path, List<Path>>();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        new JSONFileIngest(newSmooks())
+                .setParallelism(3)
+                .setGroupBy(Path::getParent)
+                .setListener(new FileIngestListener() {
+                    @Override
+                    public void onFileStarted(Path file, ExecutionContext executionContext) {
+                        int count = inFlight.computeIfAbsent(file.getParent(), group -> new AtomicInteger()).incrementAndGet();
+                        maxInFlight.accumulateAndGet(count, Math::max);
+                        threads.computeIfAbsent(file.getParent(), group -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+                        groupOrder.computeIfAbsent(file.getParent(), group -> Collections.synchronizedList(new ArrayList<Path>())).add(file);
+                    }
+
+                    @Override
+                    public void onFileCompleted(IngestedFile file, IngestReport progress) {
+                        inFlight.get(file.getPath().getParent()).decrementAndGet();
+                    }
+                })
+                .ingest(directory, "*.json");
+
+        assertEquals(1, maxInFlight.get());
+        assertEquals(1, threads.get(directory.resolve("a")).size());
+        assertEquals(1, threads.get(directory.resolve("b")).size());
+        List<Path> groupA = groupOrder.get(directory.resolve("a"));
+        for (int i = 0; i < groupA.size(); i++) {
+            assertEquals(directory.resolve("a/" + (i + 1) + ".json"), groupA.get(i));
+        }
+    }
+
+    @Test
+    public void test_ingest_fail_fast() throws Exception {
+        Files.move(directory.resolve("z-bad.json"), directory.resolve("0-bad.json"));
+
+        IngestReport report = new JSONFileIngest(newSmooks()).setParallelism(1).setFailFast(true).ingest(directory, "*.json");
+
+        assertEquals(1, report.getCompletedFileCount());
+        assertEquals(1, report.getFailedFileCount());
+        assertEquals(10, report.getRemainingFileCount());
+    }
+
+    @Test
+    public void test_ingest_streamed() throws Exception {
+        List<IngestedFile> reported = Collections.synchronizedList(new ArrayList<IngestedFile>());
+
+        IngestReport report = new JSONFileIngest(newSmooks())
+                .setMaxBufferedFileSize(0)
+                .setListener((file, progress) -> reported.add(file))
+                .ingest(directory, "*.json");
+
+        assertEquals(1, report.getFailedFileCount());
+        assertEquals(totalBytes, report.getCompletedBytes());
+        assertEquals(report.getFileCount(), reported.size());
+    }
+
+    private static Smooks newSmooks() {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator());
+        return smooks;
+    }
+
+    private void write(String file, String json) throws Exception {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Files.write(directory.resolve(file), bytes);
+        totalBytes += bytes.length;
+    }
+}
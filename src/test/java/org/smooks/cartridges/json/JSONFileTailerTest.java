@@ -0,0 +1,175 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
+import org.smooks.io.payload.StringResult;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JSONFileTailerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Smooks smooks;
+    private Path jsonFile;
+
+    @Before
+    public void setUp() throws Exception {
+        smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRootValueSequence(true));
+        jsonFile = temporaryFolder.newFile("records.ndjson").toPath();
+    }
+
+    @Test
+    public void test_poll() throws Exception {
+        append("{\"a\":1}\n{\"a\":2}\n{\"a\":");
+
+        JSONFileTailer tailer = new JSONFileTailer(smooks, jsonFile);
+        assertNull(tailer.getCheckpoint());
+        StringResult result = new StringResult();
+        assertEquals(2, tailer.poll(result));
+        assertEquals("<json><element><a>1</a></element><element><a>2</a></element></json>", result.toString());
+        assertTrue(Files.exists(JSONFileTailer.getSidecarPath(jsonFile)));
+
+        // Nothing new...
+        assertEquals(0, new JSONFileTailer(smooks, jsonFile).poll());
+
+        // The next run only processes the appended lines...
+        append("3}\n\n{\"a\":4}\n");
+        tailer = new JSONFileTailer(smooks, jsonFile);
+        assertEquals(2, tailer.getCheckpoint().getRecordCount());
+        result = new StringResult();
+        assertEquals(2, tailer.poll(result));
+        assertEquals("<json><element><a>3</a></element><element><a>4</a></element></json>", result.toString());
+        assertEquals(4, tailer.getCheckpoint().getRecordCount());
+        assertEquals(Files.size(jsonFile) - 1, tailer.getCheckpoint().getByteOffset());
+    }
+
+    @Test
+    public void test_idle_poll() throws Exception {
+        List<String> visited = new ArrayList<String>();
+        smooks.addVisitor((BeforeVisitor) (element, executionContext) -> visited.add(element.getLocalName()), "json");
+        append("{\"a\":1}\n");
+        JSONFileTailer tailer = new JSONFileTailer(smooks, jsonFile);
+        assertEquals(1, tailer.poll());
+        assertEquals(1, visited.size());
+
+        // Neither the unchanged file nor appended blank lines produce a filtering run...
+        StringResult result = new StringResult();
+        assertEquals(0, tailer.poll(result));
+        append("\n \n");
+        assertEquals(0, tailer.poll(result));
+        assertEquals("", result.toString());
+        assertEquals(1, visited.size());
+
+        append("{\"a\":2}\n");
+        assertEquals(1, tailer.poll(result));
+        assertEquals("<json><element><a>2</a></element></json>", result.toString());
+        assertEquals(2, visited.size());
+    }
+
+    @Test
+    public void test_poll_without_root_value_sequence() throws Exception {
+        Smooks defaultSmooks = new Smooks();
+        defaultSmooks.setReaderConfig(new JSONReaderConfigurator());
+        append("{\"a\":1}\n{\"a\":2}\n");
+        JSONFileTailer tailer = new JSONFileTailer(defaultSmooks, jsonFile);
+        try {
+            tailer.poll();
+            fail("Expected SmooksConfigException");
+        } catch (SmooksConfigException e) {
+            assertTrue(e.getMessage().contains("root value sequences"));
+        }
+        assertNull(tailer.getCheckpoint());
+    }
+
+    @Test
+    public void test_poll_truncated_file() throws Exception {
+        append("{\"a\":1}\n{\"a\":2}\n");
+        JSONFileTailer tailer = new JSONFileTailer(smooks, jsonFile);
+        assertEquals(2, tailer.poll());
+
+        Files.write(jsonFile, "{\"b\":1}\n".getBytes(StandardCharsets.UTF_8));
+        StringResult result = new StringResult();
+        assertEquals(1, tailer.poll(result));
+        assertEquals("<json><element><b>1</b></element></json>", result.toString());
+    }
+
+    @Test
+    public void test_poll_failure() throws Exception {
+        append("{\"a\":1}\n{\"a\":]\n{\"a\":3}\n");
+        JSONFileTailer tailer = new JSONFileTailer(smooks, jsonFile);
+
+        try {
+            tailer.poll();
+            fail("Expected SmooksException");
+        } catch (SmooksException e) {
+            // The completed record isn't processed again...
+            assertEquals(1, tailer.getCheckpoint().getRecordCount());
+            assertEquals(1, new JSONFileTailer(smooks, jsonFile).getCheckpoint().getRecordCount());
+        }
+    }
+
+    private void append(String json) throws Exception {
+        Files.write(jsonFile, json.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,140 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.support.SmooksUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JSONPathProfileTest {
+
+    private static final String INPUT = "{\"orders\": [{\"id\": 1, \"items\": [{\"sku\": \"a\"}, {\"sku\": \"b\"}]}, {\"id\": 2, \"items\": []}], \"meta\": {\"v\": 1}}";
+
+    @Test
+    public void test_profile() {
+        JSONPathProfile pathProfile = new JSONPathProfile(8, 100);
+        profile(new JSONReaderConfigurator(), pathProfile);
+
+        assertProfile(pathProfile);
+        assertTrue(pathProfile.report(100).contains("$.orders[*].items[*].sku"));
+
+        // Pipelined...
+        pathProfile = new JSONPathProfile(8, 100);
+        profile(new JSONReaderConfigurator().setPipelined(true).setPipelineBatchSize(3), pathProfile);
+
+        assertProfile(pathProfile);
+    }
+
+    @Test
+    public void test_profile_limits() {
+        JSONPathProfile pathProfile = new JSONPathProfile(1, 100);
+        profile(new JSONReaderConfigurator(), pathProfile);
+
+        Map<String, JSONPathProfile.PathStats> paths = toMap(pathProfile.getPaths());
+        assertEquals(3, paths.size());
+        assertEquals(1, paths.get("$.orders").getCount());
+        assertEquals(25, paths.get("$.orders").getTokenCount());
+        assertEquals(INPUT.length(), pathProfile.getRoot().getTotalBytes());
+
+        pathProfile = new JSONPathProfile(8, 2);
+        profile(new JSONReaderConfigurator(), pathProfile);
+
+        paths = toMap(pathProfile.getPaths());
+        assertEquals(3, paths.size());
+        assertEquals(INPUT.length(), pathProfile.getRoot().getTotalBytes() + pathProfile.getOther().getTotalBytes());
+
+        // Profiles accumulate...
+        profile(new JSONReaderConfigurator(), pathProfile);
+        assertEquals(2, paths.get("$.orders").getCount());
+        pathProfile.reset();
+        assertEquals(0, pathProfile.getRoot().getTotalTokenCount());
+        assertEquals(1, pathProfile.getPaths().size());
+    }
+
+    private static void assertProfile(JSONPathProfile pathProfile) {
+        Map<String, JSONPathProfile.PathStats> paths = toMap(pathProfile.getPaths());
+
+        assertEquals(1, paths.get("$").getCount());
+        assertEquals(2, paths.get("$.orders[*]").getCount());
+        assertEquals(2, paths.get("$.orders[*].items").getCount());
+        assertEquals(2, paths.get("$.orders[*].items[*]").getCount());
+        assertEquals(2, paths.get("$.orders[*].items[*].sku").getCount());
+        // The field name and the value...
+        assertEquals(4, paths.get("$.orders[*].items[*].sku").getTokenCount());
+        assertEquals(32, pathProfile.getRoot().getTotalTokenCount());
+        assertEquals(INPUT.length(), pathProfile.getRoot().getTotalBytes());
+        assertEquals("$.orders", pathProfile.getPaths().get(1).getPath());
+
+        // <sku>a</sku>
+        assertEquals(6, paths.get("$.orders[*].items[*].sku").getSaxEventCount());
+        assertTrue(pathProfile.getRoot().getTotalSaxEventCount() > 30);
+        assertTrue(pathProfile.getRoot().getTotalHandlerNanos() > 0);
+    }
+
+    private static void profile(JSONReaderConfigurator readerConfigurator, JSONPathProfile pathProfile) {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(readerConfigurator);
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.PATH_PROFILE_TYPED_KEY, pathProfile);
+
+        SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)), smooks);
+    }
+
+    private static Map<String, JSONPathProfile.PathStats> toMap(List<JSONPathProfile.PathStats> paths) {
+        Map<String, JSONPathProfile.PathStats> pathMap = new HashMap<String, JSONPathProfile.PathStats>();
+        for (JSONPathProfile.PathStats path : paths) {
+            pathMap.put(path.getPath(), path);
+        }
+        return pathMap;
+    }
+}
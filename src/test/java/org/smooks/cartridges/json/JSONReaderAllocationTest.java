@@ -0,0 +1,169 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Guards the per-token hot path of the {@link JSONReader} against allocations. Each configuration parses a
+ * representative document and the bytes allocated by the parsing thread are divided by the number of JSON tokens.
+ * Fixed per-document costs (parser, buffers) are amortized over the document, so the budgets only leave room for
+ * them and not for a single object per token.
+ */
+public class JSONReaderAllocationTest {
+
+    private static final double MAX_BYTES_PER_TOKEN = 1.0;
+    private static final int WARM_UP_ITERATIONS = 50;
+    private static final int ITERATIONS = 5;
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+    private static byte[] document;
+    private static long tokenCount;
+
+    @BeforeClass
+    public static void generateDocument() throws Exception {
+        java.lang.management.ThreadMXBean platformThreadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(platformThreadMXBean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) platformThreadMXBean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                    .append(",\"first name\":\"Name ").append(i).append("\"")
+                    .append(",\"2nd\":").append(i * 0.5)
+                    .append(",\"active\":").append(i % 2 == 0)
+                    .append(",\"note\":null")
+                    .append(",\"tags\":[\"a\",\"b\\n").append(i).append("\",\"café\"]")
+                    .append(",\"address\":{\"street\":\"Main Street ").append(i).append("\",\"city\":\"Springfield\"}}");
+        }
+        document = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+
+        try (JsonParser jp = new JsonFactory().createParser(document)) {
+            while (jp.nextToken() != null) {
+                tokenCount++;
+            }
+        }
+    }
+
+    @Test
+    public void test_plain() throws Exception {
+        assertWithinBudget("plain", new JSONReader());
+    }
+
+    @Test
+    public void test_key_map() throws Exception {
+        HashMap<String, String> keyMap = new HashMap<String, String>();
+        keyMap.put("first name", "firstName");
+        keyMap.put("2nd", "second");
+        JSONReader reader = new JSONReader();
+        reader.setKeyMap(keyMap);
+
+        assertWithinBudget("key map", reader);
+    }
+
+    @Test
+    public void test_sanitiser() throws Exception {
+        JSONReader reader = new JSONReader();
+        reader.setKeyWhitspaceReplacement("_");
+        reader.setKeyPrefixOnNumeric("n");
+        reader.setIllegalElementNameCharReplacement("-");
+
+        assertWithinBudget("sanitiser", reader);
+    }
+
+    @Test
+    public void test_indent() throws Exception {
+        JSONReader reader = new JSONReader();
+        reader.setIndent(true);
+
+        assertWithinBudget("indent", reader);
+    }
+
+    private static void assertWithinBudget(String configuration, JSONReader reader) throws Exception {
+        reader.initialize();
+        ExecutionContext executionContext = new Smooks().createExecutionContext();
+        DefaultHandler contentHandler = new DefaultHandler();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            parse(reader, contentHandler, executionContext);
+        }
+
+        long minAllocatedBytes = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            parse(reader, contentHandler, executionContext);
+            minAllocatedBytes = Math.min(minAllocatedBytes, threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore);
+        }
+
+        double bytesPerToken = minAllocatedBytes / (double) tokenCount;
+        assertTrue(String.format("Configuration '%s' allocated %.2f bytes per token (%d bytes for %d tokens), which exceeds the budget of %.2f bytes per token.",
+                configuration, bytesPerToken, minAllocatedBytes, tokenCount, MAX_BYTES_PER_TOKEN), bytesPerToken <= MAX_BYTES_PER_TOKEN);
+    }
+
+    private static void parse(JSONReader reader, DefaultHandler contentHandler, ExecutionContext executionContext) throws Exception {
+        reader.setContentHandler(contentHandler);
+        reader.setExecutionContext(executionContext);
+        reader.parse(new InputSource(new ByteArrayInputStream(document)));
+    }
+}
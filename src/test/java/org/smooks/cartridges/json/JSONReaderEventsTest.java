@@ -0,0 +1,159 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.SmooksException;
+import org.smooks.io.payload.StringResult;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JSONReaderEventsTest {
+
+    private static final String INPUT = "[{\"a\":[1,2]},{\"b\":{\"c\":true}},3]";
+
+    @Test
+    public void test_parse_and_record_events() throws Exception {
+        Smooks smooks = newSmooks();
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("org.smooks.json.Parse");
+            recording.enable("org.smooks.json.Record");
+            recording.start();
+            filter(smooks, INPUT);
+            recording.stop();
+            events = readEvents(recording);
+        }
+
+        List<RecordedEvent> parseEvents = getEvents(events, "org.smooks.json.Parse");
+        assertEquals(1, parseEvents.size());
+        RecordedEvent parseEvent = parseEvents.get(0);
+        assertEquals("UTF-8", parseEvent.getString("encoding"));
+        assertEquals(INPUT.length(), parseEvent.getLong("bytes"));
+        assertEquals(17, parseEvent.getLong("tokenCount"));
+        assertEquals(3, parseEvent.getLong("recordCount"));
+        assertEquals(3, parseEvent.getInt("maxDepth"));
+        assertFalse(parseEvent.getBoolean("cached"));
+        assertFalse(parseEvent.getBoolean("failed"));
+
+        List<RecordedEvent> recordEvents = getEvents(events, "org.smooks.json.Record");
+        assertEquals(3, recordEvents.size());
+        for (int i = 0; i < recordEvents.size(); i++) {
+            assertEquals(i, recordEvents.get(i).getLong("recordIndex"));
+        }
+        assertEquals(INPUT.indexOf("},{") + 1, recordEvents.get(0).getLong("endOffset"));
+        assertEquals(INPUT.length() - 1, recordEvents.get(2).getLong("endOffset"));
+
+        // The slow parse event is enabled with a threshold...
+        assertTrue(getEvents(events, "org.smooks.json.SlowParse").isEmpty());
+    }
+
+    @Test
+    public void test_slow_parse_event() throws Exception {
+        Smooks smooks = newSmooks();
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("org.smooks.json.SlowParse").withThreshold(Duration.ZERO);
+            recording.start();
+            filter(smooks, INPUT);
+            try {
+                filter(smooks, "[{\"a\":1},{\"b\"");
+                fail("Expected SmooksException");
+            } catch (SmooksException e) {
+                // Expected...
+            }
+            recording.stop();
+            events = readEvents(recording);
+        }
+
+        List<RecordedEvent> slowParseEvents = getEvents(events, "org.smooks.json.SlowParse");
+        assertEquals(2, slowParseEvents.size());
+        assertFalse(slowParseEvents.get(0).getBoolean("failed"));
+        assertEquals(3, slowParseEvents.get(0).getLong("recordCount"));
+        assertTrue(slowParseEvents.get(1).getBoolean("failed"));
+        assertEquals(1, slowParseEvents.get(1).getLong("recordCount"));
+        assertTrue(getEvents(events, "org.smooks.json.Parse").isEmpty());
+    }
+
+    private static Smooks newSmooks() {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator());
+        return smooks;
+    }
+
+    private static void filter(Smooks smooks, String json) {
+        smooks.filterSource(new StreamSource(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))), new StringResult());
+    }
+
+    private static List<RecordedEvent> readEvents(Recording recording) throws Exception {
+        Path file = Files.createTempFile("json-reader-events", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> getEvents(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+}
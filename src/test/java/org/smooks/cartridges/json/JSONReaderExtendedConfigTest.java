@@ -42,11 +42,13 @@
  */
 package org.smooks.cartridges.json;
 
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
 import org.custommonkey.xmlunit.XMLUnit;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smooks.Smooks;
+import org.smooks.api.SmooksException;
 import org.smooks.api.ExecutionContext;
 import org.smooks.io.payload.StringResult;
 import org.smooks.support.SmooksUtil;
@@ -56,10 +58,18 @@ import org.xml.sax.SAXException;
 import javax.xml.transform.stream.StreamSource;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.smooks.testkit.Assertions.compareCharStreams;
 
 /**
@@ -124,6 +134,389 @@ public class JSONReaderExtendedConfigTest {
         test_config_file("configured_different_node_names", smooks);
     }
 
+    @Test
+    public void test_pipelined() throws Exception {
+        String[] testNames = {"json_types", "json_map", "json_array", "json_map_array", "json_array_map", "json_map_array_map", "key_replacement"};
+        for (String testName : testNames) {
+            Smooks smooks = new Smooks();
+            Map<String, String> keyMap = new HashMap<String, String>();
+
+            keyMap.put("some key", "someKey");
+            keyMap.put("some&key", "someAndKey");
+
+            // Tiny batches, so that the tokens cross batch boundaries...
+            smooks.setReaderConfig(new JSONReaderConfigurator().setKeyMap(keyMap).setPipelined(true).setPipelineBatchSize(2));
+            test_config_file(testName, smooks);
+        }
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator()
+                .setKeyWhitspaceReplacement("_")
+                .setKeyPrefixOnNumeric("n")
+                .setIllegalElementNameCharReplacement(".")
+                .setNullValueReplacement("##NULL##")
+                .setPipelined(true));
+        test_config_file("several_replacements", smooks);
+    }
+
+    @Test(timeout = 30000)
+    public void test_pipelined_close_with_blocked_producer() {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setLimit(1).setPipelined(true).setPipelineBatchSize(2));
+
+        for (int i = 0; i < 3; i++) {
+            // The producer blocks reading the stream once the first record was handed over...
+            String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new BlockingInputStream("[1,2,".getBytes(StandardCharsets.UTF_8)), smooks);
+            assertEquals("<json><element>1</element></json>", result);
+        }
+    }
+
+    @Test
+    public void test_pipelined_malformed() {
+        String[] malformedJsons = {"[1,2,3,,4]", "{\"a\":1", "[1 2]"};
+        for (String malformedJson : malformedJsons) {
+            Smooks smooks = new Smooks();
+            smooks.setReaderConfig(new JSONReaderConfigurator().setPipelined(true).setPipelineBatchSize(2));
+            try {
+                SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(malformedJson.getBytes(StandardCharsets.UTF_8)), smooks);
+                fail("Expected parse failure for: " + malformedJson);
+            } catch (SmooksException e) {
+                // expected...
+            }
+        }
+    }
+
+    @Test
+    public void test_suppress_empty_values() throws Exception {
+        test_config_file("suppress_empty_values");
+
+        // Programmatic config....
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSuppressEmptyValues(true));
+        test_config_file("suppress_empty_values", smooks);
+    }
+
+    @Test
+    public void test_collapse_scalar_arrays() throws Exception {
+        test_config_file("collapse_scalar_arrays");
+
+        // Programmatic config....
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setScalarArrayDelimiter(","));
+        test_config_file("collapse_scalar_arrays", smooks);
+    }
+
+    @Test
+    public void test_collapse_scalar_arrays_delimiter_in_value() {
+        String json = "{\"a\":[\"a,b\",\"c\"],\"b\":[\"a\",\"b\",\"c\"],\"c\":[1,\"2,3\",4],\"d\":[null]}";
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setScalarArrayDelimiter(",").setNullValueReplacement("x,y"));
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><a><element>a,b</element><element>c</element></a><b>a,b,c</b><c><element>1</element><element>2,3</element><element>4</element></c><d><element>x,y</element></d></json>", result);
+    }
+
+    @Test
+    public void test_suppress_empty_values_and_collapse_scalar_arrays() {
+        String json = "[{\"a\":[null,1,null,2],\"b\":[null],\"c\":[{},[null]],\"d\":{\"e\":[]}},null,[3,[]]]";
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSuppressEmptyValues(true).setScalarArrayDelimiter(" "));
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><element><a>1 2</a></element><element><element>3</element></element></json>", result);
+    }
+
+    @Test
+    public void test_scalar_fields_as_attributes() throws Exception {
+        test_config_file("scalar_fields_as_attributes");
+
+        // Programmatic config....
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setScalarFieldsAsAttributes(true).setKeyWhitspaceReplacement("_"));
+        test_config_file("scalar_fields_as_attributes", smooks);
+    }
+
+    @Test
+    public void test_scalar_fields_as_attributes_suppress_empty_values() {
+        String json = "[{\"a\":null,\"b\":{\"c\":null}},{\"d\":null,\"e\":[{\"f\":\"\"}]}]";
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setScalarFieldsAsAttributes(true).setSuppressEmptyValues(true));
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><element><e><element f=\"\"/></e></element></json>", result);
+    }
+
+    @Test
+    public void test_scalar_fields_as_attributes_duplicate_key() {
+        String json = "{\"a\":1,\"b\":2,\"a\":3,\"c\":4,\"d\":{\"e\":5,\"e\":6}}";
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setScalarFieldsAsAttributes(true));
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json a=\"1\" b=\"2\"><a>3</a><c>4</c><d e=\"5\"><e>6</e></d></json>", result);
+    }
+
+    @Test
+    public void test_raw_json_paths() throws Exception {
+        test_config_file("raw_json");
+
+        // Programmatic config....
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRawJsonPaths("metadata, items/*/payload").setKeyWhitspaceReplacement("_"));
+        test_config_file("raw_json", smooks);
+
+        // Pipelined, so that the raw JSON is copied from the batched tokens...
+        smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRawJsonPaths("metadata, items/*/payload").setKeyWhitspaceReplacement("_").setPipelined(true).setPipelineBatchSize(2));
+        test_config_file("raw_json", smooks);
+    }
+
+    @Test
+    public void test_raw_json_depth() {
+        String json = "[{\"a\":1,\"b\":{\"c\":[1,{\"d\":2}]}},[3,[4]],5]";
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRawJsonDepth(1));
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><element><a>1</a><b>{\"c\":[1,{\"d\":2}]}</b></element><element><element>3</element><element>[4]</element></element><element>5</element></json>", result);
+    }
+
+    @Test
+    public void test_root_value_sequence() throws Exception {
+        test_config_file("root_value_sequence");
+
+        // Programmatic config....
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRootValueSequence(true));
+        test_config_file("root_value_sequence", smooks);
+
+        smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRootValueSequence(true).setPipelined(true).setPipelineBatchSize(2));
+        test_config_file("root_value_sequence", smooks);
+    }
+
+    @Test
+    public void test_skip_malformed_records() throws Exception {
+        test_config_file("skip_malformed_records");
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSkipMalformedRecords(true));
+        List<MalformedRecord> malformedRecords = new ArrayList<MalformedRecord>();
+        List<RecordCheckpoint> checkpoints = new ArrayList<RecordCheckpoint>();
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.MALFORMED_RECORD_LISTENER_TYPED_KEY, malformedRecords::add);
+        executionContext.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, checkpoints::add);
+        byte[] json = StreamUtils.readStream(getClass().getResourceAsStream("/test/skip_malformed_records/input-message.jsn"));
+
+        SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(json), smooks);
+
+        assertEquals(3, malformedRecords.size());
+        assertEquals(1, malformedRecords.get(0).getRecordIndex());
+        assertEquals("{\"id\":2,\"name\":\"b\" \"x\":1}", malformedRecords.get(0).getContent());
+        assertEquals("{\"id\":2,\"name\":\"b\" \"x\":1}", new String(json, (int) malformedRecords.get(0).getStartOffset(), (int) (malformedRecords.get(0).getEndOffset() - malformedRecords.get(0).getStartOffset()), StandardCharsets.UTF_8));
+        assertEquals(2, malformedRecords.get(1).getRecordIndex());
+        assertEquals(4, malformedRecords.get(2).getRecordIndex());
+        assertEquals("tru", malformedRecords.get(2).getContent());
+        assertEquals(3, checkpoints.size());
+        assertEquals(4, checkpoints.get(1).getRecordCount());
+        assertEquals(6, checkpoints.get(2).getRecordCount());
+
+        // Resume after the first record...
+        executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.MALFORMED_RECORD_LISTENER_TYPED_KEY, record -> { });
+        executionContext.put(JSONReader.RESUME_CHECKPOINT_TYPED_KEY, checkpoints.get(0));
+        String result = SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(json), smooks);
+
+        assertEquals("<json><element><id>4</id><tags><element>1</element><element>2</element></tags></element><element>ok</element></json>", result);
+
+        // A truncated last record...
+        malformedRecords.clear();
+        executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.MALFORMED_RECORD_LISTENER_TYPED_KEY, malformedRecords::add);
+        result = SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream("[{\"a\":1},{\"b\":[".getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><element><a>1</a></element></json>", result);
+        assertEquals(1, malformedRecords.size());
+        assertEquals("{\"b\":[", malformedRecords.get(0).getContent());
+    }
+
+    @Test
+    public void test_skip_malformed_records_unterminated_string() {
+        String[][] jsons = {
+                // A record per line...
+                {"[{\"a\":1},\n{\"b\":\"x},\n{\"c\":2}\n]", "<json><element><a>1</a></element><element><c>2</c></element></json>", "1"},
+                // Pretty-printed...
+                {"[\n  {\n    \"a\": \"x,\n    \"b\": 1\n  },\n  {\n    \"c\": 2\n  }\n]\n", "<json><element><c>2</c></element></json>", "1"},
+                // A closing bracket of the malformed record at the start of a line...
+                {"[\n  {\"a\": \"x,\n   \"l\": [1,\n  2\n  ]},\n  {\"c\": 2}\n]", "<json><element><c>2</c></element></json>", "2"},
+        };
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSkipMalformedRecords(true));
+        for (String[] json : jsons) {
+            List<MalformedRecord> malformedRecords = new ArrayList<MalformedRecord>();
+            ExecutionContext executionContext = smooks.createExecutionContext();
+            executionContext.put(JSONReader.MALFORMED_RECORD_LISTENER_TYPED_KEY, malformedRecords::add);
+            String result = SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(json[0].getBytes(StandardCharsets.UTF_8)), smooks);
+
+            assertEquals(json[1], result);
+            assertEquals(Integer.parseInt(json[2]), malformedRecords.size());
+            assertTrue(malformedRecords.get(0).getContent().contains("\"x"));
+        }
+    }
+
+    @Test
+    public void test_skip_malformed_records_root_value_sequence() {
+        String json = "{\"a\":1}\n{\"a\":2,}\n\n[3] [4]\n\"s\"\r\n{\"a\":";
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRootValueSequence(true).setSkipMalformedRecords(true));
+        List<MalformedRecord> malformedRecords = new ArrayList<MalformedRecord>();
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.MALFORMED_RECORD_LISTENER_TYPED_KEY, malformedRecords::add);
+        String result = SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><element><a>1</a></element><element>s</element></json>", result);
+        assertEquals(3, malformedRecords.size());
+        assertEquals("[3] [4]", malformedRecords.get(1).getContent());
+        assertEquals(4, malformedRecords.get(2).getRecordIndex());
+    }
+
+    @Test
+    public void test_input_limits() throws Exception {
+        test_config_file("input_limits");
+
+        StringBuilder longDocument = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            longDocument.append("1,");
+        }
+        longDocument.append("1]");
+        String[][] limitViolations = {
+                {"{\"a\":\"123456\"}", "String value length (6)"},
+                {"{\"a\":\"12\\u0033\u20ac56\"}", "String value length (6)"},
+                {"{\"a\":12345678}", "Number value length (8)"},
+                {"{\"a\":-1.23456e12}", "Number value length (8)"},
+                {"[[[[1]]]]", "Document nesting depth (4)"},
+                {"{\"abcdef\":1}", "Name length (6)"},
+                {longDocument.toString(), "Document length"}
+        };
+        JSONReaderConfigurator[] configurators = {
+                new JSONReaderConfigurator(),
+                new JSONReaderConfigurator().setPipelined(true).setPipelineBatchSize(2),
+        };
+        for (JSONReaderConfigurator configurator : configurators) {
+            Smooks smooks = new Smooks();
+            smooks.setReaderConfig(configurator.setMaxDocumentLength(100).setMaxStringLength(5).setMaxNumberLength(7).setMaxNestingDepth(3).setMaxNameLength(5));
+
+            assertEquals("<json><abcde><element>12345</element><element>-1234567</element><element><element>1</element></element></abcde></json>",
+                    SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream("{\"abcde\":[\"12345\",-1234567,[1]]}".getBytes(StandardCharsets.UTF_8)), smooks));
+            for (String[] limitViolation : limitViolations) {
+                byte[] json = limitViolation[0].getBytes(StandardCharsets.UTF_8);
+                assertLimitExceeded(limitViolation[1], () -> SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(json), smooks));
+                assertLimitExceeded(limitViolation[1], () -> SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteBufferInputStream(ByteBuffer.wrap(json)), smooks));
+                assertLimitExceeded(limitViolation[1], () -> smooks.filterSource(smooks.createExecutionContext(), new StreamSource(new StringReader(limitViolation[0])), new StringResult()));
+            }
+        }
+
+        JSONTransformer transformer = new JSONReaderConfigurator().setMaxNestingDepth(3).toTransformer();
+        assertEquals("[[[1]]]", transformer.transform("[[[1]]]"));
+        assertLimitExceeded("Document nesting depth (4)", () -> transformer.transform("[[[[1]]]]"));
+    }
+
+    @Test
+    public void test_input_limits_skip_malformed_records() {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSkipMalformedRecords(true).setMaxDocumentLength(40).setMaxStringLength(5));
+        List<MalformedRecord> malformedRecords = new ArrayList<MalformedRecord>();
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.MALFORMED_RECORD_LISTENER_TYPED_KEY, malformedRecords::add);
+        String result = SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream("[\"abc\",\"abcdef\",\"ab\"]".getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><element>abc</element><element>ab</element></json>", result);
+        assertEquals(1, malformedRecords.size());
+        assertTrue(malformedRecords.get(0).getError() instanceof StreamConstraintsException);
+
+        // The document length limit fails the whole stream...
+        assertLimitExceeded("Document length (41)", () -> SmooksUtil.filterAndSerialize(smooks.createExecutionContext(),
+                new ByteArrayInputStream("[\"abc\",\"abc\",\"abc\",\"abc\",\"abc\",\"abc\",123]".getBytes(StandardCharsets.UTF_8)), smooks));
+    }
+
+    private interface Filtering {
+        void filter() throws Exception;
+    }
+
+    private void assertLimitExceeded(String expectedMessage, Filtering filtering) {
+        try {
+            filtering.filter();
+            fail("Expected '" + expectedMessage + "' limit failure.");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof StreamConstraintsException)) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw new AssertionError("Expected '" + expectedMessage + "' limit failure.", e);
+            }
+            assertTrue(cause.getMessage(), cause.getMessage().startsWith(expectedMessage));
+        }
+    }
+
+    @Test
+    public void test_record_sampling() throws Exception {
+        test_config_file("record_sampling");
+
+        // Programmatic config....
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSampleRate(0.5).setLimit(2));
+        test_config_file("record_sampling", smooks);
+
+        smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSampleRate(0.5).setLimit(2).setPipelined(true).setPipelineBatchSize(2));
+        test_config_file("record_sampling", smooks);
+
+        // Every third root value, and the skipped records count for the checkpoints...
+        smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setRootValueSequence(true).setSampleRate(1.0 / 3));
+        List<RecordCheckpoint> checkpoints = new ArrayList<RecordCheckpoint>();
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, checkpoints::add);
+        String result = SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream("{\"a\":0}\n[1]\n2\n{\"a\":3}\n{\"a\":[4]}\n5\n\"six\"".getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals("<json><element><a>0</a></element><element><a>3</a></element><element>six</element></json>", result);
+        assertEquals(7, checkpoints.size());
+        assertEquals(7, checkpoints.get(6).getRecordCount());
+    }
+
+    @Test
+    public void test_limit_stops_reading() {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setLimit(1));
+
+        // Anything after the last record isn't read...
+        String result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream("[{\"a\":[1,2]},{\"b\" oops".getBytes(StandardCharsets.UTF_8)), smooks);
+        assertEquals("<json><element><a><element>1</element><element>2</element></a></element></json>", result);
+
+        smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setLimit(0));
+        result = SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream("[{\"a\":1}".getBytes(StandardCharsets.UTF_8)), smooks);
+        assertEquals("<json/>", result);
+    }
+
+    @Test
+    public void test_schema_validation() throws Exception {
+        test_config_file("schema_validation");
+
+        // Programmatic config....
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSchema("/test/schema_validation/schema.json"));
+        test_config_file("schema_validation", smooks);
+    }
+
     @Test
     public void test_indent() throws IOException, SAXException {
         Smooks smooks = new Smooks(getClass().getResourceAsStream("/indent-config.xml"));
@@ -148,13 +541,53 @@ public class JSONReaderExtendedConfigTest {
             LOGGER.debug("Result: " + result);
         }
 
-        assertEquals("/test/" + testName + "/expected.xml", result.getBytes());
+        assertResultEquals("/test/" + testName + "/expected.xml", result.getBytes());
     }
 
-    private void assertEquals(String fileExpected, byte[] actual) throws IOException {
+    private void assertResultEquals(String fileExpected, byte[] actual) throws IOException {
 
         byte[] expected = StreamUtils.readStream(getClass().getResourceAsStream(fileExpected));
 
         assertTrue("Expected XML and result XML are not the same!", compareCharStreams(new ByteArrayInputStream(actual), new ByteArrayInputStream(expected)));
     }
+
+    /**
+     * Serves its bytes, then blocks until it is closed.
+     */
+    private static final class BlockingInputStream extends InputStream {
+
+        private final ByteArrayInputStream bytes;
+        private boolean closed;
+
+        private BlockingInputStream(byte[] bytes) {
+            this.bytes = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1 ? -1 : b[0] & 0xff);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (bytes.available() > 0) {
+                return bytes.read(b, off, len);
+            }
+            while (!closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // Like a socket read, which isn't interruptible...
+                }
+            }
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.engine.injector.Scope;
+import org.smooks.engine.lifecycle.DefaultLifecycleManager;
+import org.smooks.engine.lifecycle.PostConstructLifecyclePhase;
+import org.smooks.support.SmooksUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JSONReaderProfileTest {
+
+    @Test
+    public void test_element_names() {
+        JSONReaderProfile profile = new JSONReaderProfile(Collections.singletonMap("some key", "mapped"), "_", "n", "-", 0, StreamReadConstraints.defaults(), null, null);
+
+        assertEquals("mapped", profile.getElementName("some key"));
+        assertEquals("other_key", profile.getElementName("other key"));
+        assertEquals("n1st", profile.getElementName("1st"));
+        assertEquals("-a-b", profile.getElementName(".a&b"));
+        assertEquals("", profile.getElementName(""));
+        assertSame(profile.getElementName("other key"), profile.getElementName("other key"));
+    }
+
+    @Test
+    public void test_configurator_compiles_profile() {
+        ResourceConfig resourceConfig = new JSONReaderConfigurator().setKeyMap(Collections.singletonMap("a", "b")).setEventTapeCacheSize(1024).toConfig().get(0);
+
+        JSONReaderProfile profile = (JSONReaderProfile) resourceConfig.getParameter(JSONReader.CONFIG_PARAM_PROFILE, Object.class).getValue();
+        assertEquals("b", profile.getElementName("a"));
+        assertEquals(1024, profile.getEventTapeCache().getMaxWeight());
+    }
+
+    @Test
+    public void test_xml_config_shares_profile() throws Exception {
+        String config = "<smooks-resource-list xmlns=\"https://www.smooks.org/xsd/smooks-2.0.xsd\" xmlns:json=\"https://www.smooks.org/xsd/smooks/json-1.3.xsd\">"
+                + "<json:reader keyWhitspaceReplacement=\"_\" eventTapeCacheSize=\"65536\"><json:keyMap><json:key from=\"a\">b</json:key></json:keyMap></json:reader>"
+                + "</smooks-resource-list>";
+        Smooks smooks = new Smooks(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+        String json = "{\"a\":1,\"c d\":2}";
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        assertEquals("<json><b>1</b><c_d>2</c_d></json>", filter(smooks, executionContext, json));
+        EventTapeCache eventTapeCache = executionContext.get(JSONReader.EVENT_TAPE_CACHE_TYPED_KEY);
+
+        executionContext = smooks.createExecutionContext();
+        assertEquals("<json><b>1</b><c_d>2</c_d></json>", filter(smooks, executionContext, json));
+        assertSame(eventTapeCache, executionContext.get(JSONReader.EVENT_TAPE_CACHE_TYPED_KEY));
+        assertEquals(1, eventTapeCache.getHitCount());
+    }
+
+    @Test
+    public void test_reader_without_config() {
+        JSONReader reader = new JSONReader();
+        reader.setKeyPrefixOnNumeric("n");
+        reader.initialize();
+
+        JSONReaderProfile profile = reader.getProfile();
+        assertEquals("n1", profile.getElementName("1"));
+        assertSame(profile, reader.getProfile());
+        assertTrue(reader.getKeyMap().isEmpty());
+
+        // Changing the naming rules compiles a new profile...
+        HashMap<String, String> keyMap = new HashMap<String, String>();
+        keyMap.put("1", "one");
+        reader.setKeyMap(keyMap);
+        assertNotSame(profile, reader.getProfile());
+        assertEquals("one", reader.getProfile().getElementName("1"));
+    }
+
+    @Test
+    public void test_setter_keeps_shared_key_map() {
+        ResourceConfig resourceConfig = new JSONReaderConfigurator().setKeyMap(Collections.singletonMap("a", "renamed")).toConfig().get(0);
+        Smooks smooks = new Smooks();
+        JSONReader reader = new JSONReader();
+        new DefaultLifecycleManager().applyPhase(reader, new PostConstructLifecyclePhase(new Scope(smooks.getApplicationContext().getRegistry(), resourceConfig, reader)));
+        assertEquals("renamed", reader.getProfile().getElementName("a"));
+
+        // ...a profile recompiled by another setter still applies the configured key map.
+        reader.setIndent(true);
+        assertEquals("renamed", reader.getProfile().getElementName("a"));
+
+        // The returned key map is a copy.
+        reader.getKeyMap().put("b", "other");
+        assertEquals("b", reader.getProfile().getElementName("b"));
+    }
+
+    private static String filter(Smooks smooks, ExecutionContext executionContext, String json) {
+        return SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), smooks);
+    }
+}
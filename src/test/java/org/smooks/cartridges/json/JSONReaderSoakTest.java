@@ -0,0 +1,190 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+import org.smooks.FilterSettings;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
+import org.w3c.dom.Element;
+
+import javax.xml.transform.stream.StreamSource;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.LongConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streams large synthetic JSON corpora end-to-end through {@link Smooks} and checks that the heap stays flat and the
+ * throughput stays above a floor, for each {@link SyntheticJsonInputStream.Shape} of record.
+ * <p/>
+ * Only runs with the <code>soak</code> Maven profile, which caps the heap at 512 MB:
+ * <pre>
+ * mvn test -Psoak -Dsoak.corpusSizeMb=4096 -Dsoak.heapCeilingMb=64 -Dsoak.minThroughputMbPerSecond=0.25</pre>
+ * The live heap is sampled (after a full GC) every <code>soak.sampleIntervalMb</code> of input. The test fails if the
+ * live heap grows by more than <code>soak.heapCeilingMb</code> over the baseline taken before the run, i.e. if memory
+ * use depends on the size of the corpus.
+ * <p/>
+ * Most of the time goes into the Smooks SAX NG filter rather than the reader, so the throughput floor depends heavily on
+ * the machine and the record shape. The default floor is a coarse regression guard; tune it for the CI machine.
+ */
+public class JSONReaderSoakTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long CORPUS_SIZE = Long.getLong("soak.corpusSizeMb", 1024) * MB;
+    private static final long SAMPLE_INTERVAL = Long.getLong("soak.sampleIntervalMb", 256) * MB;
+    private static final long HEAP_CEILING = Long.getLong("soak.heapCeilingMb", 64) * MB;
+    private static final double MIN_THROUGHPUT = Double.parseDouble(System.getProperty("soak.minThroughputMbPerSecond", "0.25"));
+
+    @Test
+    public void test_wide_records() throws Exception {
+        soak(SyntheticJsonInputStream.Shape.WIDE);
+    }
+
+    @Test
+    public void test_deep_records() throws Exception {
+        soak(SyntheticJsonInputStream.Shape.DEEP);
+    }
+
+    @Test
+    public void test_array_heavy_records() throws Exception {
+        soak(SyntheticJsonInputStream.Shape.ARRAY_HEAVY);
+    }
+
+    @Test
+    public void test_string_heavy_records() throws Exception {
+        soak(SyntheticJsonInputStream.Shape.STRING_HEAVY);
+    }
+
+    private static void soak(SyntheticJsonInputStream.Shape shape) {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        HeapSampler heapSampler = new HeapSampler(memoryMXBean);
+        SyntheticJsonInputStream jsonStream = new SyntheticJsonInputStream(shape, CORPUS_SIZE, SAMPLE_INTERVAL, heapSampler);
+        ElementCounter elementCounter = new ElementCounter();
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator());
+        smooks.setFilterSettings(FilterSettings.newSaxNgSettings().setDefaultSerializationOn(false));
+        smooks.addVisitor(elementCounter, "*");
+        ExecutionContext executionContext = smooks.createExecutionContext();
+
+        long baselineHeap = heapSampler.sampleLiveHeap();
+        long gcCountBefore = getGcCount();
+        long gcTimeBefore = getGcTime();
+        long start = System.nanoTime();
+        try {
+            smooks.filterSource(executionContext, new StreamSource(jsonStream));
+        } finally {
+            smooks.close();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long gcCount = getGcCount() - gcCountBefore;
+        long gcTime = getGcTime() - gcTimeBefore;
+        heapSampler.sampleLiveHeap();
+
+        double megabytes = jsonStream.getProduced() / (double) MB;
+        double throughput = megabytes / (elapsedNanos / 1e9);
+        long heapGrowth = heapSampler.maxLiveHeap - baselineHeap;
+        System.out.printf("%-12s %8.1f MB in %6.1f s: %7.1f MB/s, %d elements (%.0f/s), live heap growth %.1f MB (%d samples), %d GCs taking %d ms%n",
+                shape, megabytes, elapsedNanos / 1e9, throughput, elementCounter.count, elementCounter.count / (elapsedNanos / 1e9), heapGrowth / (double) MB, heapSampler.sampleCount, gcCount, gcTime);
+
+        assertEquals(jsonStream.getElementCount(), elementCounter.count);
+        assertTrue(String.format("Live heap grew by %.1f MB, which exceeds the ceiling of %d MB.", heapGrowth / (double) MB, HEAP_CEILING / MB), heapGrowth <= HEAP_CEILING);
+        assertTrue(String.format("Throughput of %.1f MB/s is below the minimum of %.1f MB/s.", throughput, MIN_THROUGHPUT), throughput >= MIN_THROUGHPUT);
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean garbageCollectorMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, garbageCollectorMXBean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean garbageCollectorMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, garbageCollectorMXBean.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Samples the heap that is still reachable after a full GC. The GC time is excluded from the throughput only
+     * approximately, so keep the sample interval large compared to the corpus size.
+     */
+    private static class HeapSampler implements LongConsumer {
+        private final MemoryMXBean memoryMXBean;
+        private long maxLiveHeap;
+        private int sampleCount;
+
+        private HeapSampler(MemoryMXBean memoryMXBean) {
+            this.memoryMXBean = memoryMXBean;
+        }
+
+        @Override
+        public void accept(long produced) {
+            sampleLiveHeap();
+        }
+
+        private long sampleLiveHeap() {
+            memoryMXBean.gc();
+            long liveHeap = memoryMXBean.getHeapMemoryUsage().getUsed();
+            maxLiveHeap = Math.max(maxLiveHeap, liveHeap);
+            sampleCount++;
+            return liveHeap;
+        }
+    }
+
+    private static class ElementCounter implements BeforeVisitor {
+        private long count;
+
+        @Override
+        public void visitBefore(Element element, ExecutionContext executionContext) {
+            count++;
+        }
+    }
+}
@@ -42,6 +42,7 @@
  */
 package org.smooks.cartridges.json;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,11 +51,16 @@ import org.smooks.api.ExecutionContext;
 import org.smooks.api.resource.config.ResourceConfig;
 import org.smooks.engine.profile.DefaultProfileSet;
 import org.smooks.engine.resource.config.DefaultResourceConfig;
+import org.smooks.io.payload.StringResult;
+import org.smooks.io.payload.StringSource;
 import org.smooks.support.SmooksUtil;
 import org.smooks.support.StreamUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import static org.junit.Assert.assertTrue;
@@ -117,6 +123,89 @@ public class JSONReaderTest {
         test_config_file("configured_different_node_names");
     }
 
+    @Test
+    public void test_record_checkpoints() throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator());
+
+        String input = "[{\"a\":1},{\"a\":[2]} ,\n \"three\"]";
+        List<RecordCheckpoint> checkpoints = new ArrayList<RecordCheckpoint>();
+
+        ExecutionContext context = smooks.createExecutionContext();
+        context.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, checkpoints::add);
+        SmooksUtil.filterAndSerialize(context, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        Assert.assertEquals(3, checkpoints.size());
+        Assert.assertEquals(1, checkpoints.get(0).getRecordCount());
+        Assert.assertEquals(input.indexOf('}') + 1, checkpoints.get(0).getByteOffset());
+        Assert.assertEquals(-1, checkpoints.get(0).getCharOffset());
+        Assert.assertEquals(input.indexOf("]}") + 2, checkpoints.get(1).getByteOffset());
+        Assert.assertEquals(input.lastIndexOf('"') + 1, checkpoints.get(2).getByteOffset());
+
+        // Resume after the first record...
+        context = smooks.createExecutionContext();
+        context.put(JSONReader.RESUME_CHECKPOINT_TYPED_KEY, checkpoints.get(0));
+        checkpoints.clear();
+        context.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, checkpoints::add);
+        String result = SmooksUtil.filterAndSerialize(context, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        Assert.assertEquals("<json><element><a><element>2</element></a></element><element>three</element></json>", result);
+        Assert.assertEquals(2, checkpoints.size());
+        Assert.assertEquals(2, checkpoints.get(0).getRecordCount());
+        Assert.assertEquals(input.indexOf("]}") + 2, checkpoints.get(0).getByteOffset());
+        Assert.assertEquals(input.lastIndexOf('"') + 1, checkpoints.get(1).getByteOffset());
+    }
+
+    @Test
+    public void test_record_checkpoints_pipelined() throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setPipelined(true).setPipelineBatchSize(3));
+
+        String input = "[{\"a\":1},{\"a\":[2]} ,\n \"three\"]";
+        List<RecordCheckpoint> checkpoints = new ArrayList<RecordCheckpoint>();
+
+        ExecutionContext context = smooks.createExecutionContext();
+        context.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, checkpoints::add);
+        String result = SmooksUtil.filterAndSerialize(context, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        Assert.assertEquals("<json><element><a>1</a></element><element><a><element>2</element></a></element><element>three</element></json>", result);
+        Assert.assertEquals(3, checkpoints.size());
+        Assert.assertEquals(input.indexOf('}') + 1, checkpoints.get(0).getByteOffset());
+        Assert.assertEquals(input.indexOf("]}") + 2, checkpoints.get(1).getByteOffset());
+        Assert.assertEquals(input.lastIndexOf('"') + 1, checkpoints.get(2).getByteOffset());
+
+        // Stop early, with the parsing thread still running ahead...
+        context = smooks.createExecutionContext();
+        context.put(JSONReader.RECORD_RANGE_TYPED_KEY, new RecordRange(0, 1, 1, checkpoints.get(0).getByteOffset()));
+        result = SmooksUtil.filterAndSerialize(context, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        Assert.assertEquals("<json><element><a>1</a></element></json>", result);
+    }
+
+    @Test
+    public void test_record_checkpoints_character_stream() throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator());
+
+        String input = "[\"\u00e9\u00e9\", \"b\", \"c\"]";
+        List<RecordCheckpoint> checkpoints = new ArrayList<RecordCheckpoint>();
+
+        ExecutionContext context = smooks.createExecutionContext();
+        context.put(JSONReader.RECORD_CHECKPOINT_LISTENER_TYPED_KEY, checkpoints::add);
+        smooks.filterSource(context, new StringSource(input), new StringResult());
+
+        Assert.assertEquals(3, checkpoints.size());
+        Assert.assertEquals(-1, checkpoints.get(1).getByteOffset());
+        Assert.assertEquals(input.indexOf("b") + 2, checkpoints.get(1).getCharOffset());
+
+        context = smooks.createExecutionContext();
+        context.put(JSONReader.RESUME_CHECKPOINT_TYPED_KEY, checkpoints.get(1));
+        StringResult result = new StringResult();
+        smooks.filterSource(context, new StringSource(input), result);
+
+        Assert.assertEquals("<json><element>c</element></json>", result.toString());
+    }
+
     private void test_progammed_config(String testNumber) throws Exception {
         Smooks smooks = new Smooks();
         ResourceConfig resourceConfig;
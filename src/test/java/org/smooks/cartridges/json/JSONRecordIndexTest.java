@@ -0,0 +1,153 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.io.payload.StringResult;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class JSONRecordIndexTest {
+
+    private static final String INPUT = "\uFEFF[ {\"a\":\"x]\\\"}\"}, [1,[2]],\n\"s\" , 12.5e3,true,null ]";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_build() throws Exception {
+        JSONRecordIndex index = JSONRecordIndex.build(new ByteArrayInputStream(bytes(INPUT)));
+
+        assertEquals(6, index.size());
+        assertRecord(index, 0, "{\"a\":\"x]\\\"}\"}");
+        assertRecord(index, 1, "[1,[2]]");
+        assertRecord(index, 2, "\"s\"");
+        assertRecord(index, 3, "12.5e3");
+        assertRecord(index, 4, "true");
+        assertRecord(index, 5, "null");
+    }
+
+    @Test
+    public void test_write_read() throws Exception {
+        JSONRecordIndex index = JSONRecordIndex.build(new ByteArrayInputStream(bytes(INPUT)));
+        ByteArrayOutputStream indexStream = new ByteArrayOutputStream();
+        index.write(indexStream);
+
+        JSONRecordIndex readIndex = JSONRecordIndex.read(new ByteArrayInputStream(indexStream.toByteArray()));
+
+        assertEquals(index.size(), readIndex.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.getStartOffset(i), readIndex.getStartOffset(i));
+            assertEquals(index.getEndOffset(i), readIndex.getEndOffset(i));
+        }
+    }
+
+    @Test
+    public void test_split() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"n\":").append(1000 + i).append("}");
+        }
+        json.append("]");
+        JSONRecordIndex index = JSONRecordIndex.build(new ByteArrayInputStream(bytes(json.toString())));
+
+        List<RecordRange> ranges = index.split(4);
+
+        assertEquals(4, ranges.size());
+        long expectedFromRecord = 0;
+        for (RecordRange range : ranges) {
+            assertEquals(expectedFromRecord, range.getFromRecord());
+            assertEquals(25, range.getRecordCount());
+            expectedFromRecord = range.getToRecord();
+        }
+        assertEquals(100, expectedFromRecord);
+        assertEquals(1, index.split(1).size());
+        assertEquals(3, JSONRecordIndex.build(new ByteArrayInputStream(bytes("[1,2,3]"))).split(10).size());
+    }
+
+    @Test
+    public void test_read_range() throws Exception {
+        Path jsonFile = temporaryFolder.newFile("records.json").toPath();
+        Files.write(jsonFile, bytes(INPUT));
+        JSONRecordIndex.build(jsonFile).write(JSONRecordIndex.getSidecarPath(jsonFile));
+        JSONRecordIndex index = JSONRecordIndex.read(JSONRecordIndex.getSidecarPath(jsonFile));
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator());
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.RECORD_RANGE_TYPED_KEY, index.getRange(1, 3));
+        StringResult result = new StringResult();
+
+        try (InputStream jsonStream = new FileInputStream(jsonFile.toFile())) {
+            smooks.filterSource(executionContext, new StreamSource(jsonStream), result);
+        }
+
+        assertEquals("<json><element><element>1</element><element><element>2</element></element></element><element>s</element></json>", result.toString());
+    }
+
+    private static void assertRecord(JSONRecordIndex index, int record, String expected) {
+        byte[] input = bytes(INPUT);
+        int startOffset = (int) index.getStartOffset(record);
+        int endOffset = (int) index.getEndOffset(record);
+
+        assertEquals(expected, new String(input, startOffset, endOffset - startOffset, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
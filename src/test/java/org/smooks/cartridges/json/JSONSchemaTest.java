@@ -0,0 +1,228 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.support.SmooksUtil;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JSONSchemaTest {
+
+    private static final String SCHEMA = "/test/schema_validation/schema.json";
+
+    @Test
+    public void test_violations() {
+        String json = "{\"customer\":\"\",\"orders\":[{\"id\":0,\"amount\":0,\"currency\":\"GBP\",\"sku\":\"abc\",\"extra\":1},{\"amount\":\"x\"},{\"id\":3,\"amount\":1},{\"id\":4.5,\"amount\":1}],\"more\":true}";
+        List<SchemaViolation> violations = new ArrayList<SchemaViolation>();
+
+        String result = filter(new JSONReaderConfigurator().setSchema(SCHEMA), json, violations);
+
+        assertEquals(10, violations.size());
+        assertViolation(violations.get(0), "/customer", "String is shorter than 1 characters.");
+        assertEquals(1, violations.get(0).getLineNumber());
+        assertEquals(json.indexOf("\"\""), violations.get(0).getByteOffset());
+        assertViolation(violations.get(1), "/orders/0/id", "Value 0 is less than the minimum 1.");
+        assertViolation(violations.get(2), "/orders/0/amount", "Value 0 isn't greater than the exclusive minimum 0.");
+        assertViolation(violations.get(3), "/orders/0/currency", "Value 'GBP' isn't one of the enumerated values.");
+        assertViolation(violations.get(4), "/orders/0/sku", "String doesn't match the pattern '^[A-Z]{3}-[0-9]+$'.");
+        assertViolation(violations.get(5), "/orders/0/extra", "Property 'extra' is not allowed.");
+        assertViolation(violations.get(6), "/orders/1/amount", "Expected number but found string.");
+        assertViolation(violations.get(7), "/orders/1", "Required property 'id' is missing.");
+        assertViolation(violations.get(8), "/orders/3", "Array has more than 3 items.");
+        assertViolation(violations.get(9), "/orders/3/id", "Expected integer but found number.");
+
+        // The violations don't stop the filtering...
+        assertTrue(result, result.endsWith("<more>true</more></json>"));
+    }
+
+    @Test
+    public void test_violation_fails_filtering() {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setSchema(SCHEMA));
+
+        try {
+            SmooksUtil.filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(bytes("{\"customer\":\"acme\",\"orders\":[]}")), smooks);
+            fail("Expected SchemaViolationException.");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof SchemaViolationException)) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw new AssertionError("Expected SchemaViolationException.", e);
+            }
+            assertViolation(((SchemaViolationException) cause).getViolation(), "/orders", "Array has fewer than 1 items.");
+            assertTrue(cause.getMessage(), cause.getMessage().startsWith("JSON Schema violation at '/orders': Array has fewer than 1 items."));
+        }
+    }
+
+    @Test
+    public void test_root_value_sequence() {
+        String json = "{\"a\":1}\n{\"b\":2}\n[1]\n{\"a\":\"x\"}";
+        List<SchemaViolation> violations = new ArrayList<SchemaViolation>();
+        JSONReaderConfigurator configurator = new JSONReaderConfigurator().setRootValueSequence(true).setSchema("/test/schema_validation/record-schema.json");
+
+        filter(configurator, json, violations);
+
+        assertEquals(3, violations.size());
+        assertViolation(violations.get(0), "/1", "Required property 'a' is missing.");
+        assertEquals(2, violations.get(0).getLineNumber());
+        assertViolation(violations.get(1), "/2", "Expected object but found array.");
+        assertViolation(violations.get(2), "/3/a", "Expected integer but found string.");
+
+        // Pipelined, the violations are found on the filtering thread...
+        violations.clear();
+        filter(configurator.setPipelined(true).setPipelineBatchSize(2), json, violations);
+
+        assertEquals(3, violations.size());
+        assertViolation(violations.get(2), "/3/a", "Expected integer but found string.");
+        assertTrue(violations.get(2).getByteOffset() > json.lastIndexOf('{'));
+
+        // Records that aren't sampled aren't validated...
+        violations.clear();
+        filter(new JSONReaderConfigurator().setRootValueSequence(true).setSampleRate(0.5).setSchema("/test/schema_validation/record-schema.json"), json, violations);
+
+        assertEquals(1, violations.size());
+        assertViolation(violations.get(0), "/2", "Expected object but found array.");
+    }
+
+    @Test
+    public void test_raw_json() {
+        List<SchemaViolation> violations = new ArrayList<SchemaViolation>();
+
+        String result = filter(new JSONReaderConfigurator().setSchema(SCHEMA).setRawJsonPaths("orders"), "{\"customer\":\"acme\",\"orders\":[{\"id\":1}]}", violations);
+
+        assertEquals("<json><customer>acme</customer><orders>[{\"id\":1}]</orders></json>", result);
+        assertEquals(1, violations.size());
+        assertViolation(violations.get(0), "/orders/0", "Required property 'amount' is missing.");
+    }
+
+    @Test
+    public void test_enum() throws Exception {
+        JSONSchema schema = JSONSchema.compile("{\"items\":{\"enum\":[1,\"1\",true,null,2.50]}}");
+        List<SchemaViolation> violations = new ArrayList<SchemaViolation>();
+        JSONSchemaValidator validator = new JSONSchemaValidator(schema, false, false, violations::add, 0);
+
+        try (JsonParser jp = new JsonFactory().createParser("[1.0,\"1\",true,null,2.5,1e0,2,\"2\",false]")) {
+            JsonToken t;
+            while ((t = jp.nextToken()) != null) {
+                validator.validate(jp, t);
+            }
+        }
+
+        assertEquals(3, violations.size());
+        assertViolation(violations.get(0), "/6", "Value 2 isn't one of the enumerated values.");
+        assertViolation(violations.get(1), "/7", "Value '2' isn't one of the enumerated values.");
+        assertViolation(violations.get(2), "/8", "Value false isn't one of the enumerated values.");
+    }
+
+    @Test
+    public void test_big_numbers() throws Exception {
+        JSONSchema schema = JSONSchema.compile("{\"items\":{\"type\":\"integer\",\"maximum\":9007199254740992,\"exclusiveMinimum\":-123456789012345678901234567890}}");
+        List<SchemaViolation> violations = new ArrayList<SchemaViolation>();
+        JSONSchemaValidator validator = new JSONSchemaValidator(schema, false, false, violations::add, 0);
+
+        // The same doubles as their neighbours, but not the same numbers...
+        try (JsonParser jp = new JsonFactory().createParser("[9007199254740992,9007199254740993,-123456789012345678901234567890,-123456789012345678901234567889,1.0000000000000001,100000000000000000000.0]")) {
+            JsonToken t;
+            while ((t = jp.nextToken()) != null) {
+                validator.validate(jp, t);
+            }
+        }
+
+        assertEquals(4, violations.size());
+        assertViolation(violations.get(0), "/1", "Value 9007199254740993 is greater than the maximum 9007199254740992.");
+        assertViolation(violations.get(1), "/2", "Value -123456789012345678901234567890 isn't greater than the exclusive minimum -123456789012345678901234567890.");
+        assertViolation(violations.get(2), "/4", "Expected integer but found number.");
+        assertViolation(violations.get(3), "/5", "Value 100000000000000000000.0 is greater than the maximum 9007199254740992.");
+    }
+
+    @Test
+    public void test_invalid_schema() throws Exception {
+        assertInvalidSchema("{\"type\":\"text\"}", "Invalid JSON Schema at '/type': unknown type 'text'.");
+        assertInvalidSchema("{\"properties\":{\"a\":{\"items\":[{}]}}}", "Invalid JSON Schema at '/properties/a/items': tuple validation isn't supported.");
+        assertInvalidSchema("{\"maxItems\":-1}", "Invalid JSON Schema at '/maxItems': expected a non-negative integer.");
+        assertInvalidSchema("{\"pattern\":\"[\"}", "Invalid JSON Schema at '/pattern': Unclosed character class.");
+        assertInvalidSchema("[]", "Invalid JSON Schema at '': a schema must be an object or a boolean.");
+    }
+
+    private static String filter(JSONReaderConfigurator configurator, String json, List<SchemaViolation> violations) {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(configurator);
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        executionContext.put(JSONReader.SCHEMA_VIOLATION_LISTENER_TYPED_KEY, violations::add);
+
+        return SmooksUtil.filterAndSerialize(executionContext, new ByteArrayInputStream(bytes(json)), smooks);
+    }
+
+    private static void assertViolation(SchemaViolation violation, String expectedPointer, String expectedMessage) {
+        assertEquals(violation.toString(), expectedPointer, violation.getPointer());
+        assertEquals(violation.toString(), expectedMessage, violation.getMessage());
+    }
+
+    private static void assertInvalidSchema(String schema, String expectedMessage) throws Exception {
+        try {
+            JSONSchema.compile(schema);
+            fail("Expected invalid schema " + schema);
+        } catch (IllegalArgumentException e) {
+            assertEquals(expectedMessage, e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
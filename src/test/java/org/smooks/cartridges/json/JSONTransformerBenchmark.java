@@ -0,0 +1,103 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.io.payload.StringResult;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares renaming and dropping keys with the {@link JSONTransformer} against the same key map applied by the
+ * {@link JSONReader} in a Smooks filter, with the result serialized.
+ * <p/>
+ * Only runs with the <code>benchmark</code> Maven profile:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=JSONTransformerBenchmark -Dbenchmark.documentSizeMb=64</pre>
+ */
+public class JSONTransformerBenchmark {
+
+    private static final int DOCUMENT_SIZE_MB = Integer.getInteger("benchmark.documentSizeMb", 16);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 5);
+
+    @Test
+    public void benchmark() throws Exception {
+        byte[] document = StructuralPreScanBenchmark.generateDocument(DOCUMENT_SIZE_MB * 1024 * 1024);
+        Map<String, String> keyMap = new HashMap<String, String>();
+        keyMap.put("name", "customerName");
+        keyMap.put("balance", "accountBalance");
+
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setKeyMap(keyMap));
+        JSONTransformer transformer = new JSONReaderConfigurator().setKeyMap(keyMap).toTransformer().setExcludedPaths("element/tags");
+
+        run("smooks filter", document, () -> smooks.filterSource(new StreamSource(new ByteArrayInputStream(document)), new StringResult()));
+        run("transformer", document, () -> transformer.transform(new ByteArrayInputStream(document), new ByteArrayOutputStream(document.length)));
+    }
+
+    private static void run(String name, byte[] document, Transform transform) throws Exception {
+        // Warm up...
+        for (int i = 0; i < 2; i++) {
+            transform.run();
+        }
+
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            transform.run();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        double megabytes = document.length / (1024.0 * 1024.0);
+        System.out.printf("%-20s %8.1f MB/s (%.1f MB, best of %d)%n", name, megabytes / (bestNanos / 1e9), megabytes, ITERATIONS);
+    }
+
+    private interface Transform {
+        void run() throws Exception;
+    }
+}
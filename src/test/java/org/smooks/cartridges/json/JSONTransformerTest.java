@@ -0,0 +1,119 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class JSONTransformerTest {
+
+    @Test
+    public void test_transform() throws Exception {
+        Map<String, String> keyMap = new HashMap<String, String>();
+        keyMap.put("id", "identifier");
+        JSONTransformer transformer = new JSONReaderConfigurator().setKeyMap(keyMap).setKeyWhitspaceReplacement("_").toTransformer()
+                .setExcludedPaths("element/payload, element/audit/*");
+
+        String json = "[{\"id\": 1, \"first name\": \"a\\\"b\\u00e9\", \"price\": 1.50, \"big\": 12345678901234567890, \"ok\": true, \"none\": null, "
+                + "\"payload\": {\"x\": [1, 2]}, \"audit\": {\"user\": \"u\", \"at\": 3}, \"tags\": [\"t\", {}]}, 7]";
+
+        assertEquals("[{\"identifier\":1,\"first_name\":\"a\\\"b\u00e9\",\"price\":1.50,\"big\":12345678901234567890,\"ok\":true,\"none\":null,"
+                + "\"audit\":{},\"tags\":[\"t\",{}]},7]", transformer.transform(json));
+    }
+
+    @Test
+    public void test_transform_suppress_empty_values() throws Exception {
+        JSONTransformer transformer = new JSONReaderConfigurator().setSuppressEmptyValues(true).toTransformer()
+                .setExcludedPaths("b/c");
+
+        assertEquals("{\"a\":1,\"e\":[[2]]}", transformer.transform("{\"a\": 1, \"b\": {\"c\": 5, \"d\": null}, \"e\": [[], [2], {\"f\": []}], \"g\": {}}"));
+        assertEquals("{}", transformer.transform("{\"a\": null}"));
+    }
+
+    @Test
+    public void test_transform_null_value_replacement() throws Exception {
+        JSONTransformer transformer = new JSONReaderConfigurator().toTransformer().setNullValueReplacement("n/a");
+
+        assertEquals("{\"a\":\"n/a\",\"b\":[\"n/a\"]}", transformer.transform("{\"a\": null, \"b\": [null]}"));
+    }
+
+    @Test
+    public void test_transform_configured_null_value_replacement() throws Exception {
+        ByteArrayOutputStream jsonOutput = new ByteArrayOutputStream();
+        new JSONReaderConfigurator().setNullValueReplacement("##NULL##").toTransformer()
+                .transform(new ByteArrayInputStream("{\"a\":null}".getBytes(StandardCharsets.UTF_8)), jsonOutput);
+        assertEquals("{\"a\":\"##NULL##\"}", new String(jsonOutput.toByteArray(), StandardCharsets.UTF_8));
+
+        // The default replacement keeps nulls...
+        jsonOutput = new ByteArrayOutputStream();
+        new JSONReaderConfigurator().toTransformer().transform(new ByteArrayInputStream("{\"a\":null}".getBytes(StandardCharsets.UTF_8)), jsonOutput);
+        assertEquals("{\"a\":null}", new String(jsonOutput.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_transform_root_value_sequence() throws Exception {
+        JSONTransformer transformer = new JSONReaderConfigurator().setRootValueSequence(true).toTransformer().setExcludedPaths("b");
+        ByteArrayOutputStream jsonOutput = new ByteArrayOutputStream();
+
+        transformer.transform(new ByteArrayInputStream("{\"a\":1,\"b\":2}\n{\"a\":3}\n\"s\"\n".getBytes(StandardCharsets.UTF_8)), jsonOutput);
+
+        assertEquals("{\"a\":1}\n{\"a\":3}\n\"s\"\n", new String(jsonOutput.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_transform_encoding() throws Exception {
+        JSONTransformer transformer = new JSONReaderConfigurator().setEncoding(StandardCharsets.ISO_8859_1).toTransformer();
+        ByteArrayOutputStream jsonOutput = new ByteArrayOutputStream();
+
+        transformer.transform(new ByteArrayInputStream("{\"caf\u00e9\": \"cr\u00e8me\"}".getBytes(StandardCharsets.ISO_8859_1)), jsonOutput);
+
+        assertEquals("{\"caf\u00e9\":\"cr\u00e8me\"}", new String(jsonOutput.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
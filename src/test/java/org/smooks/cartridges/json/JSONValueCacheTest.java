@@ -0,0 +1,169 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
+import org.smooks.io.payload.StringResult;
+import org.smooks.io.payload.StringSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JSONValueCacheTest {
+
+    private static final String INPUT = "[{\"id\":\"a1\",\"status\":\"OK\"},{\"id\":\"a2\",\"status\":\"OK\"},{\"id\":\"a3\",\"status\":\"FAILED\"},{\"id\":\"a4\",\"status\":\"OK\"}]";
+
+    @Test
+    public void test_canonical_attribute_values() throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setScalarFieldsAsAttributes(true).setValueCacheSize(4096));
+        List<String> statuses = new ArrayList<String>();
+        smooks.addVisitor((BeforeVisitor) (element, executionContext) -> statuses.add(element.getAttribute("status")), "json/element");
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        StringResult result = new StringResult();
+        smooks.filterSource(executionContext, new StringSource(INPUT), result);
+
+        assertEquals("<json><element id=\"a1\" status=\"OK\"/><element id=\"a2\" status=\"OK\"/><element id=\"a3\" status=\"FAILED\"/><element id=\"a4\" status=\"OK\"/></json>", result.getResult());
+        assertEquals(4, statuses.size());
+        assertSame(statuses.get(0), statuses.get(1));
+        assertSame(statuses.get(0), statuses.get(3));
+        JSONValueCache valueCache = executionContext.get(JSONReader.VALUE_CACHE_TYPED_KEY);
+        assertEquals(6, valueCache.getMissCount());
+        assertEquals(2, valueCache.getHitCount());
+
+        // The cache is shared by the readers of the configuration...
+        executionContext = smooks.createExecutionContext();
+        smooks.filterSource(executionContext, new StringSource(INPUT), new StringResult());
+        assertSame(valueCache, executionContext.get(JSONReader.VALUE_CACHE_TYPED_KEY));
+        assertSame(statuses.get(0), statuses.get(4));
+        assertEquals(10, valueCache.getHitCount());
+    }
+
+    @Test
+    public void test_disabled() throws Exception {
+        Smooks smooks = new Smooks();
+        smooks.setReaderConfig(new JSONReaderConfigurator().setScalarFieldsAsAttributes(true));
+        List<String> statuses = new ArrayList<String>();
+        smooks.addVisitor((BeforeVisitor) (element, executionContext) -> statuses.add(element.getAttribute("status")), "json/element");
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        smooks.filterSource(executionContext, new StringSource(INPUT), new StringResult());
+
+        assertEquals("OK", statuses.get(1));
+        assertNotSame(statuses.get(0), statuses.get(1));
+        assertNull(executionContext.get(JSONReader.VALUE_CACHE_TYPED_KEY));
+    }
+
+    @Test
+    public void test_requires_scalar_fields_as_attributes() {
+        JSONReader reader = new JSONReader();
+        reader.setValueCacheSize(4096);
+        try {
+            reader.initialize();
+            fail("Expected a value cache without scalarFieldsAsAttributes to be rejected.");
+        } catch (SmooksConfigException e) {
+            assertTrue(e.getMessage().contains("scalarFieldsAsAttributes"));
+        }
+
+        reader.setScalarFieldsAsAttributes(true);
+        reader.initialize();
+        assertNotNull(reader.getProfile().getValueCache());
+    }
+
+    @Test
+    public void test_bypass() {
+        JSONValueCache valueCache = new JSONValueCache(1024, 4, 2);
+
+        // Too long...
+        char[] longValue = "too long".toCharArray();
+        assertNotSame(valueCache.get("x", longValue, 0, longValue.length), valueCache.get("x", longValue, 0, longValue.length));
+        assertEquals(2, valueCache.getBypassCount());
+
+        // High cardinality...
+        for (int i = 0; i < 3; i++) {
+            char[] id = ("id" + i).toCharArray();
+            valueCache.get("id", id, 0, id.length);
+        }
+        char[] id = "id0".toCharArray();
+        assertNotSame(valueCache.get("id", id, 0, id.length), valueCache.get("id", id, 0, id.length));
+        assertEquals(Collections.singleton("id"), valueCache.getHighCardinalityFields());
+        assertEquals(3, valueCache.getMissCount());
+
+        // Other fields are still cached...
+        char[] status = "id0".toCharArray();
+        assertSame(valueCache.get("status", status, 1, 2), valueCache.get("status", status, 1, 2));
+        assertSame(valueCache.get("status", status, 1, 2), valueCache.get("d0"));
+    }
+
+    @Test
+    public void test_eviction() {
+        JSONValueCache valueCache = new JSONValueCache(3, 32, 0);
+        assertEquals(4, valueCache.getCapacity());
+
+        for (int i = 0; i < 100; i++) {
+            valueCache.get("value" + i);
+        }
+
+        assertEquals(100, valueCache.getMissCount());
+        assertEquals(100 - valueCache.getCapacity(), valueCache.getEvictionCount());
+        String value = new String("value99");
+        assertNotSame(value, valueCache.get(value));
+
+        valueCache.clear();
+        assertSame(value, valueCache.get(value));
+    }
+}
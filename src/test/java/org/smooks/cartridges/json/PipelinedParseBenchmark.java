@@ -0,0 +1,142 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import org.junit.Test;
+import org.smooks.Smooks;
+import org.smooks.api.ExecutionContext;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the throughput of the single threaded reader with the pipelined reader, with a content handler that does
+ * a configurable amount of work per SAX event.
+ * <p/>
+ * Only runs with the <code>benchmark</code> Maven profile:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=PipelinedParseBenchmark -Dbenchmark.documentSizeMb=64 -Dbenchmark.workPerEvent=200</pre>
+ */
+public class PipelinedParseBenchmark {
+
+    private static final int DOCUMENT_SIZE_MB = Integer.getInteger("benchmark.documentSizeMb", 16);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 5);
+    private static final int WORK_PER_EVENT = Integer.getInteger("benchmark.workPerEvent", 100);
+
+    @Test
+    public void benchmark() throws Exception {
+        byte[] document = StructuralPreScanBenchmark.generateDocument(DOCUMENT_SIZE_MB * 1024 * 1024);
+        ExecutionContext executionContext = new Smooks().createExecutionContext();
+
+        System.out.printf("%d available processors, %d work units per SAX event%n", Runtime.getRuntime().availableProcessors(), WORK_PER_EVENT);
+        long singleThreadedChecksum = run("single threaded", false, document, executionContext);
+        long pipelinedChecksum = run("pipelined", true, document, executionContext);
+
+        assertEquals(singleThreadedChecksum, pipelinedChecksum);
+    }
+
+    private static long run(String name, boolean pipelined, byte[] document, ExecutionContext executionContext) throws Exception {
+        JSONReader reader = new JSONReader();
+        reader.setPipelined(pipelined);
+        reader.initialize();
+        WorkingHandler handler = new WorkingHandler();
+
+        // Warm up...
+        for (int i = 0; i < 2; i++) {
+            parse(reader, handler, document, executionContext);
+        }
+
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            handler.checksum = 0;
+            long start = System.nanoTime();
+            parse(reader, handler, document, executionContext);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        double megabytes = document.length / (1024.0 * 1024.0);
+        System.out.printf("%-20s %8.1f MB/s (%.1f MB, best of %d)%n", name, megabytes / (bestNanos / 1e9), megabytes, ITERATIONS);
+
+        return handler.checksum;
+    }
+
+    private static void parse(JSONReader reader, WorkingHandler handler, byte[] document, ExecutionContext executionContext) throws Exception {
+        reader.setContentHandler(handler);
+        reader.setExecutionContext(executionContext);
+        reader.parse(new InputSource(new ByteArrayInputStream(document)));
+    }
+
+    /**
+     * Stands in for expensive visitors by hashing every SAX event a number of times.
+     */
+    private static class WorkingHandler extends DefaultHandler {
+        private long checksum;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            work(localName.hashCode());
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            work(localName.hashCode());
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            work(length > 0 ? ch[start] : 0);
+        }
+
+        private void work(long seed) {
+            long hash = seed;
+            for (int i = 0; i < WORK_PER_EVENT; i++) {
+                hash = hash * 6364136223846793005L + 1442695040888963407L;
+            }
+            checksum += hash;
+        }
+    }
+}
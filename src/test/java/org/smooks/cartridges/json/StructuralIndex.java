@@ -0,0 +1,215 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Stage one of the {@link StructuralJsonParser}: the positions of the structural characters (<code>{ } [ ] : ,</code>)
+ * and of the quotes delimiting the strings in a UTF-8 JSON document.
+ * <p/>
+ * The input is classified in blocks of 64 bytes with SWAR ("SIMD within a register") bit arithmetic on
+ * <code>long</code> words: each character class becomes a 64-bit mask with one bit per byte of the block, escaped
+ * characters are found with carry propagation over the backslash mask, the bytes inside strings with a prefix XOR over
+ * the quote mask, and only the structural bits outside strings are extracted.
+ */
+final class StructuralIndex {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long LOWER_CASE_BIT = 0x2020202020202020L;
+    private static final long CONTROL_CHAR_BIAS = 0x6060606060606060L;
+    private static final long MOVE_MASK_MULTIPLIER = 0x0102040810204080L;
+    private static final long ODD_BITS = 0xAAAAAAAAAAAAAAAAL;
+
+    private static final long QUOTES = ONES * '"';
+    private static final long BACKSLASHES = ONES * '\\';
+    private static final long OPENING_BRACES = ONES * '{';
+    private static final long CLOSING_BRACES = ONES * '}';
+    private static final long COLONS = ONES * ':';
+    private static final long COMMAS = ONES * ',';
+
+    private final int[] positions;
+    private final int size;
+    private final int firstInvalidStringCharPosition;
+
+    private StructuralIndex(int[] positions, int size, int firstInvalidStringCharPosition) {
+        this.positions = positions;
+        this.size = size;
+        this.firstInvalidStringCharPosition = firstInvalidStringCharPosition;
+    }
+
+    /**
+     * Index the first <code>length</code> bytes of the input.
+     */
+    static StructuralIndex build(byte[] input, int length) {
+        int[] positions = new int[Math.max(BLOCK_SIZE, length / 4)];
+        int size = 0;
+        int firstInvalidStringCharPosition = -1;
+        long previousInString = 0;
+        long previousEscaped = 0;
+
+        ByteBuffer block = ByteBuffer.wrap(input).order(ByteOrder.LITTLE_ENDIAN);
+        int blockOffset = 0;
+        int blocksLength = length & ~(BLOCK_SIZE - 1);
+        while (blockOffset < length) {
+            if (blockOffset == blocksLength) {
+                // Pad the last, partial block with whitespace...
+                byte[] lastBlock = new byte[BLOCK_SIZE];
+                Arrays.fill(lastBlock, (byte) ' ');
+                System.arraycopy(input, blockOffset, lastBlock, 0, length - blockOffset);
+                block = ByteBuffer.wrap(lastBlock).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            int wordOffset = (blockOffset == blocksLength ? 0 : blockOffset);
+
+            long quotes = 0;
+            long backslashes = 0;
+            long structurals = 0;
+            long controlChars = 0;
+            for (int k = 0; k < 8; k++) {
+                long word = block.getLong(wordOffset + (k << 3));
+                int shift = k << 3;
+                long lowerCaseWord = word | LOWER_CASE_BIT;
+
+                quotes |= moveMask(matches(word, QUOTES)) << shift;
+                // '[' and ']' are matched through their lower case variants '{' and '}'...
+                structurals |= moveMask(matches(lowerCaseWord, OPENING_BRACES) | matches(lowerCaseWord, CLOSING_BRACES)
+                        | matches(word, COLONS) | matches(word, COMMAS)) << shift;
+
+                long backslashWord = matches(word, BACKSLASHES);
+                if (backslashWord != 0) {
+                    backslashes |= moveMask(backslashWord) << shift;
+                }
+                long controlCharWord = ~(((word & LOW_SEVEN_BITS) + CONTROL_CHAR_BIAS) | word) & HIGH_BITS;
+                if (controlCharWord != 0) {
+                    controlChars |= moveMask(controlCharWord) << shift;
+                }
+            }
+
+            long escaped;
+            if (backslashes == 0) {
+                escaped = previousEscaped;
+                previousEscaped = 0;
+            } else {
+                // Backslash runs of odd length escape the character following them...
+                long potentialEscapes = backslashes & ~previousEscaped;
+                long maybeEscaped = potentialEscapes << 1;
+                long escapesAndTerminals = ((maybeEscaped | ODD_BITS) - potentialEscapes) ^ ODD_BITS;
+                escaped = escapesAndTerminals ^ (backslashes | previousEscaped);
+                previousEscaped = (escapesAndTerminals & backslashes) >>> 63;
+            }
+
+            quotes &= ~escaped;
+            // Bytes inside a string, including the opening quote and excluding the closing quote...
+            long insideString = prefixXor(quotes) ^ previousInString;
+            previousInString = insideString >> 63;
+
+            long invalidChars = controlChars & insideString;
+            if (invalidChars != 0 && firstInvalidStringCharPosition == -1) {
+                firstInvalidStringCharPosition = blockOffset + Long.numberOfTrailingZeros(invalidChars);
+            }
+
+            long bits = (structurals & ~insideString) | quotes;
+            if (size + BLOCK_SIZE > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            while (bits != 0) {
+                positions[size++] = blockOffset + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+
+            blockOffset += BLOCK_SIZE;
+        }
+
+        return new StructuralIndex(positions, size, firstInvalidStringCharPosition);
+    }
+
+    /**
+     * @return a word with the high bit set in each byte of the input word that equals the byte repeated in
+     * <code>pattern</code>
+     */
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x | LOW_SEVEN_BITS);
+    }
+
+    /**
+     * Gather the high bits of the eight bytes of a word into an 8-bit mask (bit <code>n</code> for byte <code>n</code>).
+     */
+    private static long moveMask(long highBits) {
+        return ((highBits >>> 7) * MOVE_MASK_MULTIPLIER) >>> 56;
+    }
+
+    /**
+     * @return a mask in which bit <code>n</code> is the XOR of bits <code>0..n</code> of the input mask
+     */
+    private static long prefixXor(long mask) {
+        mask ^= mask << 1;
+        mask ^= mask << 2;
+        mask ^= mask << 4;
+        mask ^= mask << 8;
+        mask ^= mask << 16;
+        mask ^= mask << 32;
+        return mask;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int position(int index) {
+        return positions[index];
+    }
+
+    /**
+     * @return the position of the first unescaped control character inside a string, or -1 if there is none
+     */
+    int getFirstInvalidStringCharPosition() {
+        return firstInvalidStringCharPosition;
+    }
+}
@@ -0,0 +1,654 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.io.ContentReference;
+import com.fasterxml.jackson.core.json.JsonReadContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Two-stage JSON parser for UTF-8 documents that are held in memory as a whole.
+ * <p/>
+ * Stage one builds a {@link StructuralIndex} of the document. Stage two walks the index: whitespace, scalar and
+ * string boundaries are taken from the index instead of being discovered byte by byte, and string contents are only
+ * decoded when the text of a token is requested.
+ * The parser exposes the Jackson {@link JsonParser} streaming API, so that {@link StructuralPreScanBenchmark} can
+ * compare it with a Jackson parser on the same document. It isn't part of the reader.
+ * <p/>
+ * The {@link StreamReadConstraints} are enforced as the document is read and as each token is reached, before any
+ * oversized text is decoded.
+ */
+final class StructuralJsonParser extends TextValueJsonParser {
+
+    private static final int EXPECT_VALUE = 0;
+    private static final int EXPECT_VALUE_OR_END = 1;
+    private static final int EXPECT_NAME = 2;
+    private static final int EXPECT_NAME_OR_END = 3;
+    private static final int EXPECT_COLON = 4;
+    private static final int EXPECT_COMMA_OR_END = 5;
+
+    private static final int NAME_CACHE_SIZE = 512;
+
+    private final byte[] input;
+    private final int length;
+    private final StructuralIndex structuralIndex;
+    private final StreamReadConstraints streamReadConstraints;
+    private int structural;
+    private int position;
+    private int tokenStart;
+    private int expect = EXPECT_VALUE;
+    private boolean closed;
+
+    private JsonReadContext parsingContext = JsonReadContext.createRootContext(null);
+
+    private int textStart;
+    private int textEnd;
+    private char[] textBuffer = new char[256];
+    private int textLength = -1;
+    private String currentName;
+
+    private final byte[][] nameCacheKeys = new byte[NAME_CACHE_SIZE][];
+    private final String[] nameCacheValues = new String[NAME_CACHE_SIZE];
+
+    StructuralJsonParser(byte[] input, int length, StreamReadConstraints streamReadConstraints) {
+        super(JsonParser.Feature.collectDefaults());
+        this.input = input;
+        this.length = length;
+        this.streamReadConstraints = streamReadConstraints;
+        if (length >= 3 && (input[0] & 0xFF) == 0xEF && (input[1] & 0xFF) == 0xBB && (input[2] & 0xFF) == 0xBF) {
+            position = 3;
+        }
+        this.structuralIndex = StructuralIndex.build(input, length);
+    }
+
+    /**
+     * Read the stream to its end and create a parser for its contents. The maximum document length is checked as the
+     * stream is read, so that an oversized document is rejected before it is buffered.
+     */
+    static StructuralJsonParser create(InputStream inputStream, StreamReadConstraints streamReadConstraints) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int length = 0;
+        int count;
+        while ((count = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += count;
+            streamReadConstraints.validateDocumentLength(length);
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return new StructuralJsonParser(buffer, length, streamReadConstraints);
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        if (closed) {
+            return null;
+        }
+
+        while (true) {
+            int nextStructural = (structural < structuralIndex.size() ? structuralIndex.position(structural) : length);
+            int scalarStart = skipWhitespace(position, nextStructural);
+
+            if (scalarStart < nextStructural) {
+                int scalarEnd = nextStructural;
+                while (isWhitespace(input[scalarEnd - 1])) {
+                    scalarEnd--;
+                }
+                tokenStart = scalarStart;
+                startValue();
+                JsonToken token = parseScalar(scalarStart, scalarEnd);
+                position = scalarEnd;
+                endValue();
+                return (_currToken = token);
+            }
+
+            if (nextStructural == length) {
+                position = length;
+                tokenStart = length;
+                if (!parsingContext.inRoot()) {
+                    _reportInvalidEOF(": expected close marker for " + (parsingContext.inObject() ? "Object" : "Array"), null);
+                }
+                if (expect != EXPECT_VALUE) {
+                    _reportInvalidEOF();
+                }
+                return (_currToken = null);
+            }
+
+            int c = input[nextStructural];
+            structural++;
+            position = nextStructural + 1;
+            tokenStart = nextStructural;
+
+            switch (c) {
+                case '{':
+                    startValue();
+                    streamReadConstraints.validateNestingDepth(parsingContext.getNestingDepth() + 1);
+                    parsingContext = parsingContext.createChildObjectContext(-1, -1);
+                    expect = EXPECT_NAME_OR_END;
+                    return (_currToken = JsonToken.START_OBJECT);
+                case '[':
+                    startValue();
+                    streamReadConstraints.validateNestingDepth(parsingContext.getNestingDepth() + 1);
+                    parsingContext = parsingContext.createChildArrayContext(-1, -1);
+                    expect = EXPECT_VALUE_OR_END;
+                    return (_currToken = JsonToken.START_ARRAY);
+                case '}':
+                    if (!parsingContext.inObject() || (expect != EXPECT_COMMA_OR_END && expect != EXPECT_NAME_OR_END)) {
+                        _reportUnexpectedChar(c, "was not expecting end of Object");
+                    }
+                    parsingContext = parsingContext.clearAndGetParent();
+                    endValue();
+                    return (_currToken = JsonToken.END_OBJECT);
+                case ']':
+                    if (!parsingContext.inArray() || (expect != EXPECT_COMMA_OR_END && expect != EXPECT_VALUE_OR_END)) {
+                        _reportUnexpectedChar(c, "was not expecting end of Array");
+                    }
+                    parsingContext = parsingContext.clearAndGetParent();
+                    endValue();
+                    return (_currToken = JsonToken.END_ARRAY);
+                case ',':
+                    if (expect != EXPECT_COMMA_OR_END) {
+                        _reportUnexpectedChar(c, "was expecting " + describeExpected());
+                    }
+                    expect = (parsingContext.inObject() ? EXPECT_NAME : EXPECT_VALUE);
+                    break;
+                case ':':
+                    if (expect != EXPECT_COLON) {
+                        _reportUnexpectedChar(c, "was expecting " + describeExpected());
+                    }
+                    expect = EXPECT_VALUE;
+                    break;
+                default:
+                    // Opening quote. The closing quote is the next structural...
+                    if (structural == structuralIndex.size()) {
+                        _reportInvalidEOF(": was expecting closing quote for a string value", JsonToken.VALUE_STRING);
+                    }
+                    textStart = position;
+                    textEnd = structuralIndex.position(structural++);
+                    position = textEnd + 1;
+                    textLength = -1;
+
+                    int invalidCharPosition = structuralIndex.getFirstInvalidStringCharPosition();
+                    if (invalidCharPosition >= textStart && invalidCharPosition < textEnd) {
+                        _reportError("Illegal unquoted character (CTRL-CHAR, code " + input[invalidCharPosition] + ") at offset " + invalidCharPosition
+                                + ": has to be escaped using backslash to be included in string value");
+                    }
+
+                    if (expect == EXPECT_NAME || expect == EXPECT_NAME_OR_END) {
+                        if (textEnd - textStart > streamReadConstraints.getMaxNameLength()) {
+                            streamReadConstraints.validateNameLength(countTextCharacters());
+                        }
+                        currentName = parseName();
+                        parsingContext.setCurrentName(currentName);
+                        expect = EXPECT_COLON;
+                        return (_currToken = JsonToken.FIELD_NAME);
+                    }
+                    if (textEnd - textStart > streamReadConstraints.getMaxStringLength()) {
+                        streamReadConstraints.validateStringLength(countTextCharacters());
+                    }
+                    startValue();
+                    endValue();
+                    return (_currToken = JsonToken.VALUE_STRING);
+            }
+        }
+    }
+
+    private void startValue() throws IOException {
+        if (expect != EXPECT_VALUE && expect != EXPECT_VALUE_OR_END) {
+            _reportUnexpectedChar(input[tokenStart] & 0xFF, "was expecting " + describeExpected());
+        }
+        parsingContext.expectComma();
+    }
+
+    private void endValue() {
+        expect = (parsingContext.inRoot() ? EXPECT_VALUE : EXPECT_COMMA_OR_END);
+    }
+
+    private String describeExpected() {
+        switch (expect) {
+            case EXPECT_NAME:
+            case EXPECT_NAME_OR_END:
+                return "double-quote to start field name";
+            case EXPECT_COLON:
+                return "a colon to separate field name and value";
+            case EXPECT_COMMA_OR_END:
+                return "comma to separate " + (parsingContext.inObject() ? "Object entries" : "Array entries");
+            default:
+                return "a value";
+        }
+    }
+
+    private JsonToken parseScalar(int start, int end) throws IOException {
+        int c = input[start];
+        if (c == 't' && matchesLiteral(start, end, "true")) {
+            return JsonToken.VALUE_TRUE;
+        } else if (c == 'f' && matchesLiteral(start, end, "false")) {
+            return JsonToken.VALUE_FALSE;
+        } else if (c == 'n' && matchesLiteral(start, end, "null")) {
+            return JsonToken.VALUE_NULL;
+        }
+
+        // Number: -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+        int i = start;
+        if (i < end && input[i] == '-') {
+            i++;
+        }
+        int integerStart = i;
+        while (i < end && isDigit(input[i])) {
+            i++;
+        }
+        if (i == integerStart || (input[integerStart] == '0' && i - integerStart > 1)) {
+            reportInvalidScalar(start, end);
+        }
+        int digitCount = i - integerStart;
+        boolean isFloat = false;
+        if (i < end && input[i] == '.') {
+            isFloat = true;
+            int fractionStart = ++i;
+            while (i < end && isDigit(input[i])) {
+                i++;
+            }
+            if (i == fractionStart) {
+                reportInvalidScalar(start, end);
+            }
+            digitCount += i - fractionStart;
+        }
+        if (i < end && (input[i] == 'e' || input[i] == 'E')) {
+            isFloat = true;
+            i++;
+            if (i < end && (input[i] == '+' || input[i] == '-')) {
+                i++;
+            }
+            int exponentStart = i;
+            while (i < end && isDigit(input[i])) {
+                i++;
+            }
+            if (i == exponentStart) {
+                reportInvalidScalar(start, end);
+            }
+            digitCount += i - exponentStart;
+        }
+        if (i != end) {
+            reportInvalidScalar(start, end);
+        }
+
+        // Like Jackson, only the digits count towards the number length...
+        if (isFloat) {
+            streamReadConstraints.validateFPLength(digitCount);
+        } else {
+            streamReadConstraints.validateIntegerLength(digitCount);
+        }
+
+        textStart = start;
+        textEnd = end;
+        textLength = -1;
+
+        return (isFloat ? JsonToken.VALUE_NUMBER_FLOAT : JsonToken.VALUE_NUMBER_INT);
+    }
+
+    private boolean matchesLiteral(int start, int end, String literal) {
+        if (end - start != literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (input[start + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reportInvalidScalar(int start, int end) throws IOException {
+        _reportError("Unrecognized token '" + new String(input, start, Math.min(end - start, 256), StandardCharsets.UTF_8) + "' at offset " + start
+                + ": was expecting (JSON String, Number, Array, Object or token 'null', 'true' or 'false')");
+    }
+
+    /**
+     * Decode the current field name, reusing the String of a previously decoded name with the same bytes.
+     */
+    private String parseName() throws IOException {
+        int hash = 0;
+        for (int i = textStart; i < textEnd; i++) {
+            hash = 31 * hash + input[i];
+        }
+
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        byte[] cachedKey = nameCacheKeys[slot];
+        if (cachedKey != null && cachedKey.length == textEnd - textStart && rangeEquals(cachedKey, textStart)) {
+            return nameCacheValues[slot];
+        }
+
+        String name = decodeText();
+        nameCacheKeys[slot] = Arrays.copyOfRange(input, textStart, textEnd);
+        nameCacheValues[slot] = name;
+
+        return name;
+    }
+
+    private boolean rangeEquals(byte[] key, int start) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != input[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the text of the current string or number token
+     */
+    private String decodeText() throws IOException {
+        if (textLength < 0 && isPlainAscii()) {
+            // No escapes and no multi-byte characters, so the bytes are the characters...
+            return new String(input, textStart, textEnd - textStart, StandardCharsets.ISO_8859_1);
+        }
+        decodeTextCharacters();
+        return new String(textBuffer, 0, textLength);
+    }
+
+    /**
+     * Count the characters of the current string token without decoding it. Only needed when the byte length of the
+     * token exceeds a limit, as a token never has more characters than bytes.
+     */
+    private int countTextCharacters() {
+        int count = 0;
+        int i = textStart;
+        while (i < textEnd) {
+            int b = input[i];
+            if (b == '\\') {
+                i += (i + 1 < textEnd && input[i + 1] == 'u' ? 6 : 2);
+                count++;
+            } else {
+                i++;
+                if ((b & 0xC0) != 0x80) {
+                    // Four byte sequences are decoded to a surrogate pair...
+                    count += ((b & 0xF8) == 0xF0 ? 2 : 1);
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean isPlainAscii() {
+        for (int i = textStart; i < textEnd; i++) {
+            byte b = input[i];
+            if (b < 0 || b == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the UTF-8 bytes and escapes of the current string or number token into the text buffer.
+     */
+    private void decodeTextCharacters() throws IOException {
+        if (textLength >= 0) {
+            return;
+        }
+        ensureTextCapacity(textEnd - textStart);
+
+        char[] text = textBuffer;
+        int out = 0;
+        int i = textStart;
+        while (i < textEnd) {
+            int b = input[i++];
+            if (b >= 0 && b != '\\') {
+                text[out++] = (char) b;
+            } else if (b == '\\') {
+                int escaped = input[i++];
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        text[out++] = (char) escaped;
+                        break;
+                    case 'b':
+                        text[out++] = '\b';
+                        break;
+                    case 'f':
+                        text[out++] = '\f';
+                        break;
+                    case 'n':
+                        text[out++] = '\n';
+                        break;
+                    case 'r':
+                        text[out++] = '\r';
+                        break;
+                    case 't':
+                        text[out++] = '\t';
+                        break;
+                    case 'u':
+                        if (i + 4 > textEnd) {
+                            _reportError("Truncated unicode escape at offset " + (i - 2));
+                        }
+                        int value = 0;
+                        for (int j = 0; j < 4; j++) {
+                            int digit = Character.digit(input[i++], 16);
+                            if (digit < 0) {
+                                _reportError("Unexpected character (" + (char) input[i - 1] + ") in unicode escape at offset " + (i - 1) + ": expected a hex-digit");
+                            }
+                            value = (value << 4) | digit;
+                        }
+                        text[out++] = (char) value;
+                        break;
+                    default:
+                        _reportError("Unrecognized character escape '" + (char) escaped + "' at offset " + (i - 1));
+                }
+            } else {
+                // Multi-byte UTF-8 sequence...
+                b &= 0xFF;
+                int codePoint;
+                int continuationBytes;
+                if ((b & 0xE0) == 0xC0) {
+                    codePoint = b & 0x1F;
+                    continuationBytes = 1;
+                } else if ((b & 0xF0) == 0xE0) {
+                    codePoint = b & 0x0F;
+                    continuationBytes = 2;
+                } else if ((b & 0xF8) == 0xF0) {
+                    codePoint = b & 0x07;
+                    continuationBytes = 3;
+                } else {
+                    _reportError("Invalid UTF-8 start byte 0x" + Integer.toHexString(b) + " at offset " + (i - 1));
+                    return;
+                }
+                if (i + continuationBytes > textEnd) {
+                    _reportError("Truncated UTF-8 character at offset " + (i - 1));
+                }
+                for (int j = 0; j < continuationBytes; j++) {
+                    int continuation = input[i++] & 0xFF;
+                    if ((continuation & 0xC0) != 0x80) {
+                        _reportError("Invalid UTF-8 middle byte 0x" + Integer.toHexString(continuation) + " at offset " + (i - 1));
+                    }
+                    codePoint = (codePoint << 6) | (continuation & 0x3F);
+                }
+                if (codePoint >= 0x10000) {
+                    text[out++] = Character.highSurrogate(codePoint);
+                    text[out++] = Character.lowSurrogate(codePoint);
+                } else {
+                    text[out++] = (char) codePoint;
+                }
+            }
+        }
+
+        textLength = out;
+    }
+
+    private int skipWhitespace(int from, int to) {
+        int i = from;
+        while (i < to && isWhitespace(input[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private void ensureTextCapacity(int capacity) {
+        if (textBuffer.length < capacity) {
+            textBuffer = new char[Math.max(capacity, textBuffer.length * 2)];
+        }
+    }
+
+    @Override
+    protected void _handleEOF() throws JsonParseException {
+        if (!parsingContext.inRoot()) {
+            _reportInvalidEOF(": expected close marker for " + (parsingContext.inObject() ? "Object" : "Array"), null);
+        }
+    }
+
+    @Override
+    public String getCurrentName() {
+        if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+            JsonReadContext parent = parsingContext.getParent();
+            if (parent != null) {
+                return parent.getCurrentName();
+            }
+        }
+        return parsingContext.getCurrentName();
+    }
+
+    @Override
+    public void overrideCurrentName(String name) {
+        try {
+            parsingContext.setCurrentName(name);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public JsonStreamContext getParsingContext() {
+        return parsingContext;
+    }
+
+    @Override
+    public StreamReadConstraints streamReadConstraints() {
+        return streamReadConstraints;
+    }
+
+    @Override
+    public JsonLocation getCurrentLocation() {
+        return new JsonLocation(ContentReference.unknown(), position, -1L, -1, -1);
+    }
+
+    @Override
+    public JsonLocation getTokenLocation() {
+        return new JsonLocation(ContentReference.unknown(), tokenStart, -1L, -1, -1);
+    }
+
+    @Override
+    public String getText() throws IOException {
+        if (_currToken == null) {
+            return null;
+        }
+        switch (_currToken) {
+            case FIELD_NAME:
+                return currentName;
+            case VALUE_STRING:
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return decodeText();
+            default:
+                return _currToken.asString();
+        }
+    }
+
+    @Override
+    public char[] getTextCharacters() throws IOException {
+        if (_currToken == JsonToken.FIELD_NAME) {
+            ensureTextCapacity(currentName.length());
+            currentName.getChars(0, currentName.length(), textBuffer, 0);
+            textLength = -1;
+            return textBuffer;
+        } else if (hasTextCharacters()) {
+            decodeTextCharacters();
+            return textBuffer;
+        }
+        return (_currToken != null ? _currToken.asCharArray() : null);
+    }
+
+    @Override
+    public int getTextLength() throws IOException {
+        if (_currToken == JsonToken.FIELD_NAME) {
+            return currentName.length();
+        } else if (hasTextCharacters()) {
+            decodeTextCharacters();
+            return textLength;
+        }
+        String text = getText();
+        return (text != null ? text.length() : 0);
+    }
+
+    @Override
+    public int getTextOffset() {
+        return 0;
+    }
+}
@@ -0,0 +1,151 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import org.junit.Test;
+import org.smooks.support.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StructuralJsonParserTest {
+
+    @Test
+    public void test_tokens() throws Exception {
+        String[] testNames = {"json_types", "json_map", "json_array", "json_map_array", "json_array_map", "json_map_array_map", "key_replacement", "several_replacements", "raw_json", "root_value_sequence", "record_sampling", "schema_validation"};
+        for (String testName : testNames) {
+            byte[] json = StreamUtils.readStream(getClass().getResourceAsStream("/test/" + testName + "/input-message.jsn"));
+            assertEquals(testName, jacksonTokens(json), structuralTokens(json, StreamReadConstraints.defaults()));
+        }
+    }
+
+    @Test
+    public void test_strings() throws Exception {
+        byte[] json = "\uFEFF[\"a\\\"b\\\\\", \"\\u00e9\\/\\t\", \"\u00e9\u20ac\uD83D\uDE00\", {\"k\\u0021\" : [ -0.5e+3 , 0, 10 ]} , {}, [ ]]".getBytes(StandardCharsets.UTF_8);
+
+        List<String> tokens = structuralTokens(json, StreamReadConstraints.defaults());
+        assertTrue(tokens.contains("VALUE_STRING:\u00e9\u20ac\uD83D\uDE00"));
+        assertEquals(jacksonTokens(json), tokens);
+    }
+
+    @Test
+    public void test_malformed() throws Exception {
+        String[] malformedJsons = {"[1,,2]", "{\"a\" 1}", "[1 2]", "{\"a\":1", "[\"a]", "[tru]", "[01]", "{1:2}", "[1,]"};
+        for (String malformedJson : malformedJsons) {
+            try {
+                structuralTokens(malformedJson.getBytes(StandardCharsets.UTF_8), StreamReadConstraints.defaults());
+                fail("Expected parse failure for: " + malformedJson);
+            } catch (JsonParseException e) {
+                // expected...
+            }
+        }
+    }
+
+    @Test
+    public void test_input_limits() throws Exception {
+        StringBuilder longDocument = new StringBuilder("[");
+        for (int i = 0; i < 60; i++) {
+            longDocument.append("1,");
+        }
+        longDocument.append("1]");
+        String[][] limitViolations = {
+                {"{\"a\":\"123456\"}", "String value length (6)"},
+                {"{\"a\":\"12\\u0033\u20ac56\"}", "String value length (6)"},
+                {"{\"a\":12345678}", "Number value length (8)"},
+                {"{\"a\":-1.23456e12}", "Number value length (8)"},
+                {"[[[[1]]]]", "Document nesting depth (4)"},
+                {"{\"abcdef\":1}", "Name length (6)"},
+                {longDocument.toString(), "Document length"}
+        };
+        StreamReadConstraints streamReadConstraints = JSONReaderProfile.createStreamReadConstraints(100, 5, 7, 3, 5);
+
+        byte[] json = "{\"abcde\":[\"12345\",-1234567,[1]]}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(jacksonTokens(json), structuralTokens(json, streamReadConstraints));
+        for (String[] limitViolation : limitViolations) {
+            try {
+                structuralTokens(limitViolation[0].getBytes(StandardCharsets.UTF_8), streamReadConstraints);
+                fail("Expected '" + limitViolation[1] + "' limit failure.");
+            } catch (StreamConstraintsException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith(limitViolation[1]));
+            }
+        }
+    }
+
+    private static List<String> jacksonTokens(byte[] json) throws IOException {
+        try (JsonParser jp = new JsonFactory().createParser(json)) {
+            return tokens(jp);
+        }
+    }
+
+    private static List<String> structuralTokens(byte[] json, StreamReadConstraints streamReadConstraints) throws IOException {
+        try (JsonParser jp = StructuralJsonParser.create(new ByteArrayInputStream(json), streamReadConstraints)) {
+            return tokens(jp);
+        }
+    }
+
+    private static List<String> tokens(JsonParser jp) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        JsonToken t;
+        while ((t = jp.nextToken()) != null) {
+            if (t.isScalarValue() || t == JsonToken.FIELD_NAME) {
+                tokens.add(t + ":" + jp.getText() + (t.isNumeric() ? ":" + jp.getNumberValue() : ""));
+            } else {
+                tokens.add(t.toString());
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,143 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the throughput of the Jackson parser with the two-stage {@link StructuralJsonParser}, reading every token
+ * and the text of every scalar.
+ * <p/>
+ * The structural pre-scan parser lives with the benchmark sources only. It isn't shipped until it beats Jackson.
+ * <p/>
+ * Only runs with the <code>benchmark</code> Maven profile:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=StructuralPreScanBenchmark -Dbenchmark.documentSizeMb=256</pre>
+ */
+public class StructuralPreScanBenchmark {
+
+    private static final int DOCUMENT_SIZE_MB = Integer.getInteger("benchmark.documentSizeMb", 64);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 5);
+
+    @Test
+    public void benchmark() throws Exception {
+        byte[] document = generateDocument(DOCUMENT_SIZE_MB * 1024 * 1024);
+        JsonFactory jsonFactory = new JsonFactory();
+
+        long jacksonTokens = run("jackson", () -> jsonFactory.createParser(document), document.length);
+        long preScanTokens = run("structural pre-scan", () -> StructuralJsonParser.create(new ByteArrayInputStream(document), StreamReadConstraints.defaults()), document.length);
+
+        assertEquals(jacksonTokens, preScanTokens);
+    }
+
+    private static long run(String name, ParserFactory parserFactory, int documentLength) throws Exception {
+        // Warm up...
+        for (int i = 0; i < 2; i++) {
+            parse(parserFactory);
+        }
+
+        long tokens = 0;
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            tokens = parse(parserFactory);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        double megabytes = documentLength / (1024.0 * 1024.0);
+        System.out.printf("%-20s %8.1f MB/s (%.1f MB, best of %d, %d tokens)%n", name, megabytes / (bestNanos / 1e9), megabytes, ITERATIONS, tokens);
+
+        return tokens;
+    }
+
+    private static long parse(ParserFactory parserFactory) throws IOException {
+        long tokens = 0;
+        try (JsonParser jp = parserFactory.create()) {
+            JsonToken t;
+            while ((t = jp.nextToken()) != null) {
+                if (t.isScalarValue()) {
+                    jp.getTextLength();
+                }
+                tokens++;
+            }
+        }
+        return tokens;
+    }
+
+    static byte[] generateDocument(int size) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(size + 1024);
+        json.append('[');
+        int record = 0;
+        while (json.length() < size) {
+            if (record++ > 0) {
+                json.append(",\n");
+            }
+            json.append("{\"id\": ").append(record)
+                    .append(", \"name\": \"customer ").append(Long.toHexString(random.nextLong())).append('"')
+                    .append(", \"active\": ").append(random.nextBoolean())
+                    .append(", \"balance\": ").append(random.nextInt(1000000) / 100.0)
+                    .append(", \"note\": ").append(random.nextInt(4) == 0 ? "null" : "\"caf\\u00e9 \\\"quoted\\\" text\"")
+                    .append(", \"tags\": [\"a\", \"b\", \"c\"]")
+                    .append(", \"address\": {\"street\": \"Main Street ").append(random.nextInt(1000)).append("\", \"country\": \"NL\"}}");
+        }
+        json.append(']');
+
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private interface ParserFactory {
+        JsonParser create() throws IOException;
+    }
+}
@@ -0,0 +1,301 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-json-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ *
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ *
+ * ======================================================================
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * ======================================================================
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.json;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongConsumer;
+
+/**
+ * Generates a synthetic JSON array of records on the fly, so that multi-GB corpora can be streamed without holding
+ * them in memory or on disk.
+ */
+class SyntheticJsonInputStream extends InputStream {
+
+    enum Shape {
+        /**
+         * Records with {@link #WIDE_FIELD_COUNT} scalar fields.
+         */
+        WIDE,
+        /**
+         * Records nesting {@link #DEEP_DEPTH} objects.
+         */
+        DEEP,
+        /**
+         * Records with a long array of numbers and a matrix of arrays.
+         */
+        ARRAY_HEAVY,
+        /**
+         * Records with long strings containing escapes and multi-byte characters.
+         */
+        STRING_HEAVY
+    }
+
+    static final int WIDE_FIELD_COUNT = 200;
+    static final int DEEP_DEPTH = 64;
+    static final int ARRAY_LENGTH = 1000;
+    static final int MATRIX_ROWS = 20;
+    static final int MATRIX_COLUMNS = 20;
+    static final int STRING_LENGTH = 4096;
+
+    private static final byte[] E_ACUTE = {(byte) 0xC3, (byte) 0xA9};
+
+    private final Shape shape;
+    private final long size;
+    private final long progressInterval;
+    private final LongConsumer progressListener;
+    private final Random random = new Random(42);
+
+    private byte[] buffer = new byte[64 * 1024];
+    private int position;
+    private int limit;
+    private long produced;
+    private long nextProgress;
+    private long recordCount;
+    private boolean ended;
+
+    /**
+     * @param shape            The shape of the records.
+     * @param size             The size of the corpus in bytes. The last record is completed, so the corpus can be
+     *                         slightly bigger.
+     * @param progressInterval The number of bytes between calls of the progress listener.
+     * @param progressListener Called with the number of bytes produced so far, or null.
+     */
+    SyntheticJsonInputStream(Shape shape, long size, long progressInterval, LongConsumer progressListener) {
+        this.shape = shape;
+        this.size = size;
+        this.progressInterval = progressInterval;
+        this.progressListener = progressListener;
+        this.nextProgress = progressInterval;
+    }
+
+    /**
+     * @return the number of elements the {@link JSONReader} produces for the records generated so far, including the
+     * root element
+     */
+    long getElementCount() {
+        long elementsPerRecord;
+        switch (shape) {
+            case WIDE:
+                elementsPerRecord = 1 + WIDE_FIELD_COUNT;
+                break;
+            case DEEP:
+                elementsPerRecord = 1 + DEEP_DEPTH + 1;
+                break;
+            case ARRAY_HEAVY:
+                elementsPerRecord = 1 + (1 + ARRAY_LENGTH) + (1 + MATRIX_ROWS + MATRIX_ROWS * MATRIX_COLUMNS);
+                break;
+            default:
+                elementsPerRecord = 1 + 2;
+                break;
+        }
+        return 1 + recordCount * elementsPerRecord;
+    }
+
+    /**
+     * @return the number of bytes produced so far
+     */
+    long getProduced() {
+        return produced;
+    }
+
+    @Override
+    public int read() {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int count = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    private boolean fill() {
+        if (ended) {
+            return false;
+        }
+        position = 0;
+        limit = 0;
+
+        if (produced == 0) {
+            append('[');
+        }
+        while (limit < 32 * 1024 && produced + limit < size) {
+            if (recordCount > 0) {
+                append(',');
+                append('\n');
+            }
+            appendRecord();
+            recordCount++;
+        }
+        if (produced + limit >= size) {
+            append(']');
+            ended = true;
+        }
+
+        produced += limit;
+        if (progressListener != null && produced >= nextProgress) {
+            progressListener.accept(produced);
+            nextProgress = produced + progressInterval;
+        }
+        return true;
+    }
+
+    private void appendRecord() {
+        switch (shape) {
+            case WIDE:
+                append('{');
+                for (int i = 0; i < WIDE_FIELD_COUNT; i++) {
+                    if (i > 0) {
+                        append(',');
+                    }
+                    append("\"field_");
+                    append(i);
+                    append("\":");
+                    switch (i % 4) {
+                        case 0:
+                            append(random.nextInt());
+                            break;
+                        case 1:
+                            append('"');
+                            append(Long.toHexString(random.nextLong()));
+                            append('"');
+                            break;
+                        case 2:
+                            append(random.nextBoolean() ? "true" : "false");
+                            break;
+                        default:
+                            append(random.nextInt(100000));
+                            append(".25");
+                            break;
+                    }
+                }
+                append('}');
+                break;
+            case DEEP:
+                for (int i = 0; i < DEEP_DEPTH; i++) {
+                    append("{\"level\":");
+                }
+                append("{\"value\":");
+                append(random.nextInt());
+                append('}');
+                for (int i = 0; i < DEEP_DEPTH; i++) {
+                    append('}');
+                }
+                break;
+            case ARRAY_HEAVY:
+                append("{\"values\":[");
+                for (int i = 0; i < ARRAY_LENGTH; i++) {
+                    if (i > 0) {
+                        append(',');
+                    }
+                    append(random.nextInt(1000000));
+                }
+                append("],\"matrix\":[");
+                for (int row = 0; row < MATRIX_ROWS; row++) {
+                    append(row > 0 ? ",[" : "[");
+                    for (int column = 0; column < MATRIX_COLUMNS; column++) {
+                        if (column > 0) {
+                            append(',');
+                        }
+                        append(random.nextInt(100));
+                    }
+                    append(']');
+                }
+                append("]}");
+                break;
+            default:
+                append("{\"text\":\"");
+                for (int i = 0; i < STRING_LENGTH / 64; i++) {
+                    append("Lorem ipsum \\\"dolor\\\" sit amet, caf");
+                    append(E_ACUTE);
+                    append(" \\u00e9 consectetur\\n\\t");
+                    append(Long.toHexString(random.nextLong()));
+                }
+                append("\",\"note\":\"");
+                append(Long.toHexString(random.nextLong()));
+                append("\"}");
+                break;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (limit + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(limit + count, buffer.length * 2));
+        }
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buffer[limit++] = (byte) c;
+    }
+
+    private void append(String ascii) {
+        ensureCapacity(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer[limit++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, limit, bytes.length);
+        limit += bytes.length;
+    }
+
+    private void append(long value) {
+        append(Long.toString(value));
+    }
+}